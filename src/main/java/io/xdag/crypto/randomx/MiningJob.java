@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * An immutable unit of mining work: a block template, where its nonce lives, the target to meet and the
+ * RandomX key (seed) the template must be hashed with.
+ * <p>
+ * Byte arrays are copied on construction and on access, so a job can be published to worker threads
+ * without further synchronization.
+ */
+public final class MiningJob {
+
+    /** Default nonce width in bytes. */
+    public static final int DEFAULT_NONCE_WIDTH = 4;
+
+    /** Identifier of the job, reported back with every result found for it. */
+    @Getter
+    private final String jobId;
+
+    private final byte[] template;
+
+    /** Offset of the nonce within the template. */
+    @Getter
+    private final int nonceOffset;
+
+    /** Width of the nonce in bytes, between 1 and 8, written little-endian. */
+    @Getter
+    private final int nonceWidth;
+
+    /** The target hashes must meet. */
+    @Getter
+    private final RandomXTarget target;
+
+    private final byte[] seed;
+
+    /**
+     * Creates a mining job.
+     *
+     * @param jobId       Identifier of the job.
+     * @param template    The block template.
+     * @param nonceOffset Offset of the nonce within the template.
+     * @param nonceWidth  Width of the nonce in bytes; 0 selects {@value #DEFAULT_NONCE_WIDTH}.
+     * @param target      The target hashes must meet.
+     * @param seed        The RandomX key for this job, or null to keep mining with the current key.
+     * @throws IllegalArgumentException if a required field is missing or the nonce does not fit in the template.
+     */
+    @Builder
+    public MiningJob(String jobId, byte[] template, int nonceOffset, int nonceWidth, RandomXTarget target, byte[] seed) {
+        if (jobId == null) {
+            throw new IllegalArgumentException("Job id cannot be null.");
+        }
+        if (template == null || target == null) {
+            throw new IllegalArgumentException("Template and target cannot be null.");
+        }
+        int width = nonceWidth == 0 ? DEFAULT_NONCE_WIDTH : nonceWidth;
+        if (width < 1 || width > Long.BYTES || nonceOffset < 0 || nonceOffset > template.length - width) {
+            throw new IllegalArgumentException("Nonce at offset " + nonceOffset + " with width " + width
+                    + " does not fit in a template of " + template.length + " bytes.");
+        }
+        if (seed != null && seed.length == 0) {
+            throw new IllegalArgumentException("Seed cannot be empty.");
+        }
+        this.jobId = jobId;
+        this.template = template.clone();
+        this.nonceOffset = nonceOffset;
+        this.nonceWidth = width;
+        this.target = target;
+        this.seed = seed != null ? seed.clone() : null;
+    }
+
+    /**
+     * @return A copy of the block template.
+     */
+    public byte[] getTemplate() {
+        return template.clone();
+    }
+
+    /**
+     * @return A copy of the RandomX key for this job, or null if the job uses the current key.
+     */
+    public byte[] getSeed() {
+        return seed != null ? seed.clone() : null;
+    }
+
+    /** Direct access for the mining engine, which never modifies the array. */
+    byte[] template() {
+        return template;
+    }
+
+    /** Direct access for the mining engine, which never modifies the array. */
+    byte[] seed() {
+        return seed;
+    }
+
+    /**
+     * @return Number of distinct nonces, or 0 if the nonce is 8 bytes wide (2^64 nonces).
+     */
+    long nonceSpace() {
+        return nonceWidth == Long.BYTES ? 0 : 1L << (nonceWidth * 8);
+    }
+
+    /**
+     * @param otherSeed A RandomX key.
+     * @return true if this job carries a seed that differs from {@code otherSeed}.
+     */
+    boolean requiresSeed(byte[] otherSeed) {
+        return seed != null && !Arrays.equals(seed, otherSeed);
+    }
+
+    @Override
+    public String toString() {
+        return "MiningJob(jobId=" + jobId + ", templateLength=" + template.length + ", nonceOffset=" + nonceOffset
+                + ", nonceWidth=" + nonceWidth + ", target=" + target
+                + ", seed=" + (seed != null ? HexFormat.of().formatHex(seed) : "current") + ")";
+    }
+}
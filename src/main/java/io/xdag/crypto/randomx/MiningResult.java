@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Getter;
+
+import java.util.HexFormat;
+
+/**
+ * A winning nonce found by a miner, together with the hash it produced.
+ */
+@Getter
+public final class MiningResult {
+
+    /** Identifier of the job the nonce was found for, or null if it was not found through a {@link MiningJob}. */
+    private final String jobId;
+
+    /** The nonce that produced a hash meeting the target. */
+    private final long nonce;
+
+    /** The 32-byte RandomX hash of the block template with {@link #nonce} applied. */
+    private final byte[] hash;
+
+    /**
+     * Creates a mining result.
+     *
+     * @param nonce The winning nonce.
+     * @param hash  The 32-byte hash produced by the nonce.
+     */
+    public MiningResult(long nonce, byte[] hash) {
+        this(null, nonce, hash);
+    }
+
+    /**
+     * Creates a mining result for a job.
+     *
+     * @param jobId Identifier of the job the nonce was found for.
+     * @param nonce The winning nonce.
+     * @param hash  The 32-byte hash produced by the nonce.
+     */
+    public MiningResult(String jobId, long nonce, byte[] hash) {
+        this.jobId = jobId;
+        this.nonce = nonce;
+        this.hash = hash;
+    }
+
+    @Override
+    public String toString() {
+        return "MiningResult(jobId=" + jobId + ", nonce=" + Long.toUnsignedString(nonce) + ", hash=" + HexFormat.of().formatHex(hash) + ")";
+    }
+}
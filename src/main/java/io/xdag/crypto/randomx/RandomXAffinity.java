@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.SystemUtils;
+
+import java.util.BitSet;
+
+/**
+ * Best-effort CPU affinity for the calling thread.
+ * <p>
+ * The JVM has no API for pinning threads, so on Linux this calls {@code sched_setaffinity(2)} from libc
+ * through JNA. On other platforms, or if the call fails, binding is skipped and reported as unsuccessful;
+ * callers treat affinity purely as a performance hint.
+ */
+@Slf4j
+final class RandomXAffinity {
+
+    /** Size in bytes of the CPU mask passed to the kernel (room for 1024 CPUs, matching glibc's cpu_set_t). */
+    private static final int CPU_SET_BYTES = 128;
+
+    private interface CLibrary extends Library {
+        int sched_setaffinity(int pid, NativeLong cpuSetSize, byte[] mask);
+    }
+
+    private static final CLibrary LIBC = loadLibc();
+
+    private RandomXAffinity() {}
+
+    private static CLibrary loadLibc() {
+        if (!SystemUtils.IS_OS_LINUX) {
+            return null;
+        }
+        try {
+            return Native.load("c", CLibrary.class);
+        } catch (UnsatisfiedLinkError e) {
+            log.warn("Could not load libc for CPU affinity support: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return true if thread affinity can be set on this platform.
+     */
+    static boolean isSupported() {
+        return LIBC != null;
+    }
+
+    /**
+     * Restricts the calling thread to the given CPUs.
+     *
+     * @param cpus Indices of the CPUs the thread may run on.
+     * @return true if the affinity was applied.
+     */
+    static boolean bindCurrentThread(BitSet cpus) {
+        if (LIBC == null || cpus == null || cpus.isEmpty() || cpus.length() > CPU_SET_BYTES * 8) {
+            return false;
+        }
+        byte[] mask = new byte[CPU_SET_BYTES];
+        for (int cpu = cpus.nextSetBit(0); cpu >= 0; cpu = cpus.nextSetBit(cpu + 1)) {
+            mask[cpu / 8] |= (byte) (1 << (cpu % 8));
+        }
+        int rc = LIBC.sched_setaffinity(0, new NativeLong(CPU_SET_BYTES), mask);
+        if (rc != 0) {
+            log.debug("sched_setaffinity failed for thread {} with CPUs {}: errno {}",
+                    Thread.currentThread().getName(), cpus, Native.getLastError());
+            return false;
+        }
+        log.debug("Thread {} bound to CPUs {}", Thread.currentThread().getName(), cpus);
+        return true;
+    }
+
+    /**
+     * Restricts the calling thread to a single CPU.
+     *
+     * @param cpu Index of the CPU.
+     * @return true if the affinity was applied.
+     */
+    static boolean bindCurrentThread(int cpu) {
+        BitSet cpus = new BitSet();
+        cpus.set(cpu);
+        return bindCurrentThread(cpus);
+    }
+}
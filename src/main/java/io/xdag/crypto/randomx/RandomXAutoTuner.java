@@ -0,0 +1,437 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import com.sun.jna.NativeLong;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Picks RandomX flags by measurement rather than by what the CPU advertises.
+ * <p>
+ * {@link RandomXUtils#getRecommendedFlags()} reports what {@code randomx_get_flags()} detects, which says nothing
+ * about whether JIT, hardware AES, an Argon2 variant or large pages are actually fastest on the host. On first
+ * run the tuner micro-benchmarks the candidates in three stages:
+ * <ol>
+ *   <li>Argon2 implementation (AVX2, SSSE3 or portable), by cache initialization time;</li>
+ *   <li>JIT, SECURE and HARD_AES combinations, by light-mode hashing rate, with dataset initialization rate as
+ *       the tie-breaker (unless the native memory budget leaves no room for a dataset). Combinations that fail to allocate (e.g. JIT without SECURE on W^X platforms) are
+ *       dropped, which replaces any per-OS special casing;</li>
+ *   <li>LARGE_PAGES, kept if large pages can be allocated and hashing is not measurably slower, since the
+ *       larger gain from huge pages comes from the dataset, which is too big to sample here.</li>
+ * </ol>
+ * The winner is persisted in a properties file keyed by CPU model, architecture and native library fingerprint,
+ * and later starts on the same host and library reuse it without benchmarking. {@link RandomXFlag#FULL_MEM} is
+ * never part of the result; callers add it for mining.
+ */
+@Slf4j
+public final class RandomXAutoTuner {
+
+    /** Default location of the tuning file. */
+    public static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".randomx", "tuning.properties");
+
+    /** Default time spent hashing per candidate. */
+    public static final long DEFAULT_SAMPLE_MILLIS = 2000;
+
+    /** Default number of dataset items initialized per candidate. */
+    public static final long DEFAULT_DATASET_ITEMS = 65536;
+
+    /** Relative slowdown below which LARGE_PAGES is still kept, to absorb measurement noise. */
+    static final double LARGE_PAGES_TOLERANCE = 0.02;
+
+    /** Relative hashing-rate difference within which the dataset initialization rate decides. */
+    static final double HASH_RATE_TIE = 0.03;
+
+    private static final byte[] BENCHMARK_KEY = "RandomX auto-tuner key".getBytes(StandardCharsets.UTF_8);
+
+    private static final Set<RandomXFlag> ARGON2_FLAGS =
+            EnumSet.of(RandomXFlag.ARGON2, RandomXFlag.ARGON2_SSSE3, RandomXFlag.ARGON2_AVX2);
+
+    private final Path file;
+    private final long sampleMillis;
+    private final long datasetItems;
+
+    /** Measurements of the winning flags from the last benchmark, or null if the result was loaded. */
+    @Getter
+    private Measurement lastMeasurement;
+
+    /**
+     * Creates a tuner.
+     *
+     * @param file         Tuning file; defaults to {@link #DEFAULT_FILE}.
+     * @param sampleMillis Time spent hashing per candidate; defaults to {@link #DEFAULT_SAMPLE_MILLIS}.
+     * @param datasetItems Dataset items initialized per candidate; defaults to {@link #DEFAULT_DATASET_ITEMS}.
+     */
+    @Builder
+    public RandomXAutoTuner(Path file, long sampleMillis, long datasetItems) {
+        this.file = file != null ? file : DEFAULT_FILE;
+        this.sampleMillis = sampleMillis > 0 ? sampleMillis : DEFAULT_SAMPLE_MILLIS;
+        this.datasetItems = datasetItems > 0 ? datasetItems : DEFAULT_DATASET_ITEMS;
+    }
+
+    /**
+     * Returns the tuned flags for this host, benchmarking and persisting them if no stored result matches.
+     *
+     * @return The flags, without {@link RandomXFlag#FULL_MEM}.
+     */
+    public synchronized Set<RandomXFlag> tune() {
+        Set<RandomXFlag> stored = load();
+        if (stored != null) {
+            log.info("Using tuned RandomX flags from {}: {}", file, stored);
+            return stored;
+        }
+        Set<RandomXFlag> flags = benchmark();
+        try {
+            save(flags, lastMeasurement);
+        } catch (IOException e) {
+            log.warn("Could not save tuned RandomX flags to {}: {}", file, e.toString());
+        }
+        return flags;
+    }
+
+    /**
+     * Runs the benchmark regardless of any stored result, without saving it.
+     *
+     * @return The fastest flags, without {@link RandomXFlag#FULL_MEM}.
+     */
+    public Set<RandomXFlag> benchmark() {
+        Set<RandomXFlag> nativeFlags = RandomXFlag.fromValue(RandomXUtils.getNativeFlags());
+        Set<RandomXFlag> base = EnumSet.copyOf(RandomXUtils.getRecommendedFlags());
+        base.removeAll(ARGON2_FLAGS);
+        base.removeAll(EnumSet.of(RandomXFlag.FULL_MEM, RandomXFlag.LARGE_PAGES, RandomXFlag.JIT,
+                RandomXFlag.SECURE, RandomXFlag.HARD_AES));
+        base.add(RandomXFlag.DEFAULT);
+        log.info("Auto-tuning RandomX flags. Native flags: {}", nativeFlags);
+
+        // Stage 1: Argon2 implementation.
+        List<Set<RandomXFlag>> argonCandidates = new ArrayList<>();
+        argonCandidates.add(base);
+        for (RandomXFlag argon : List.of(RandomXFlag.ARGON2_SSSE3, RandomXFlag.ARGON2_AVX2)) {
+            if (nativeFlags.contains(argon)) {
+                argonCandidates.add(with(base, argon));
+            }
+        }
+        Set<RandomXFlag> best = base;
+        long bestCacheNanos = Long.MAX_VALUE;
+        for (Set<RandomXFlag> candidate : argonCandidates) {
+            long nanos = measureCacheInit(candidate);
+            log.info("Cache init with {}: {} ms", candidate, nanos < 0 ? "unsupported" : nanos / 1_000_000);
+            if (nanos >= 0 && nanos < bestCacheNanos) {
+                best = candidate;
+                bestCacheNanos = nanos;
+            }
+        }
+
+        // Stage 2: JIT, SECURE and HARD_AES.
+        List<Set<RandomXFlag>> computeCandidates = new ArrayList<>();
+        for (boolean aes : nativeFlags.contains(RandomXFlag.HARD_AES) ? new boolean[] {false, true} : new boolean[] {false}) {
+            Set<RandomXFlag> candidate = aes ? with(best, RandomXFlag.HARD_AES) : best;
+            computeCandidates.add(candidate);
+            if (nativeFlags.contains(RandomXFlag.JIT)) {
+                computeCandidates.add(with(candidate, RandomXFlag.JIT));
+                computeCandidates.add(with(with(candidate, RandomXFlag.JIT), RandomXFlag.SECURE));
+            }
+        }
+        Measurement bestMeasurement = null;
+        Set<RandomXFlag> argonFlags = best;
+        // Dataset items only depend on the cache, so one dataset serves every candidate.
+        RandomXDataset dataset = allocateDataset(base);
+        try {
+            for (Set<RandomXFlag> candidate : computeCandidates) {
+                Measurement measurement = measure(candidate, dataset);
+                log.info("Candidate {}: {}", candidate, measurement != null ? measurement : "unsupported");
+                if (measurement != null && (bestMeasurement == null || measurement.isBetterThan(bestMeasurement))) {
+                    best = candidate;
+                    bestMeasurement = measurement;
+                }
+            }
+            if (bestMeasurement == null) {
+                throw new IllegalStateException("No RandomX flag combination could be benchmarked from " + argonFlags);
+            }
+
+            // Stage 3: large pages.
+            Set<RandomXFlag> largePages = with(best, RandomXFlag.LARGE_PAGES);
+            Measurement largePagesMeasurement = measure(largePages, dataset);
+            log.info("Candidate {}: {}", largePages, largePagesMeasurement != null ? largePagesMeasurement : "unsupported");
+            if (largePagesMeasurement != null
+                    && largePagesMeasurement.hashesPerSecond >= bestMeasurement.hashesPerSecond * (1 - LARGE_PAGES_TOLERANCE)) {
+                best = largePages;
+                bestMeasurement = largePagesMeasurement;
+            }
+        } finally {
+            if (dataset != null) {
+                dataset.close();
+            }
+        }
+
+        lastMeasurement = bestMeasurement.withCacheInitNanos(bestCacheNanos);
+        log.info("Tuned RandomX flags: {} ({})", best, lastMeasurement);
+        return best;
+    }
+
+    /**
+     * Reads the stored result for this host and library.
+     *
+     * @return The stored flags, or null if there is none or it cannot be parsed.
+     */
+    Set<RandomXFlag> load() {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Could not read tuning file {}: {}", file, e.toString());
+            return null;
+        }
+        String value = properties.getProperty(hostId() + ".flags");
+        if (value == null) {
+            return null;
+        }
+        try {
+            Set<RandomXFlag> flags = EnumSet.noneOf(RandomXFlag.class);
+            for (String name : value.split(",")) {
+                flags.add(RandomXFlag.valueOf(name.trim()));
+            }
+            return flags;
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed tuning entry '{}' in {}.", value, file);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result for this host and library, keeping entries for other hosts, and atomically
+     * replaces the tuning file.
+     */
+    private void save(Set<RandomXFlag> flags, Measurement measurement) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            // First entry.
+        }
+        String id = hostId();
+        properties.setProperty(id + ".cpu", cpuModel());
+        properties.setProperty(id + ".flags", flags.stream().map(Enum::name).collect(Collectors.joining(",")));
+        if (measurement != null) {
+            properties.setProperty(id + ".hashesPerSecond", String.format("%.1f", measurement.hashesPerSecond));
+            properties.setProperty(id + ".datasetItemsPerSecond", String.format("%.0f", measurement.datasetItemsPerSecond));
+            properties.setProperty(id + ".cacheInitMillis", Long.toString(measurement.cacheInitNanos / 1_000_000));
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, "RandomX auto-tuning results, keyed by host and native library");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("Saved tuned RandomX flags to {}.", file);
+    }
+
+    /**
+     * Identifies the host and native library a result applies to.
+     *
+     * @return Hex SHA-256 of the CPU model, architecture and library fingerprint.
+     */
+    static String hostId() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((cpuModel() + '\n' + System.getProperty("os.arch") + '\n').getBytes(StandardCharsets.UTF_8));
+            digest.update(RandomXLibraryLoader.getLibraryFingerprint());
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return The CPU model name from {@code /proc/cpuinfo} or the environment, or a generic description.
+     */
+    static String cpuModel() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/cpuinfo"))) {
+                if (line.startsWith("model name")) {
+                    return line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+        } catch (IOException e) {
+            // Not Linux.
+        }
+        String identifier = System.getenv("PROCESSOR_IDENTIFIER");
+        return identifier != null ? identifier
+                : System.getProperty("os.name") + " " + System.getProperty("os.arch") + " x" + Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return Nanoseconds for the faster of two cache initializations, or -1 if the flags are unsupported.
+     */
+    private static long measureCacheInit(Set<RandomXFlag> flags) {
+        try (RandomXCache cache = new RandomXCache(flags)) {
+            long best = Long.MAX_VALUE;
+            byte[] key = BENCHMARK_KEY.clone();
+            for (int i = 0; i < 2; i++) {
+                // librandomx skips re-initialization with an unchanged key, so vary it.
+                key[0] = (byte) i;
+                long start = System.nanoTime();
+                cache.init(key);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        } catch (IllegalStateException e) {
+            // The native memory budget, not the flags, prevented the measurement.
+            throw e;
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Allocates the dataset shared by all candidates' initialization benchmarks.
+     *
+     * @return The dataset, or null if the native memory budget leaves no room for one, in which case the
+     *         dataset initialization rate is not measured.
+     */
+    private static RandomXDataset allocateDataset(Set<RandomXFlag> flags) {
+        try {
+            return new RandomXDataset(flags);
+        } catch (IllegalStateException e) {
+            log.warn("Not measuring dataset initialization: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Measures light-mode hashing and single-threaded dataset initialization with the given flags.
+     *
+     * @param dataset Dataset to initialize the first items of, or null to skip that measurement.
+     * @return The measurement, or null if the flags are unsupported.
+     * @throws IllegalStateException if the native memory budget does not allow the cache or VM.
+     */
+    private Measurement measure(Set<RandomXFlag> flags, RandomXDataset dataset) {
+        try (RandomXCache cache = new RandomXCache(flags)) {
+            cache.init(BENCHMARK_KEY);
+
+            double datasetRate = 0;
+            if (dataset != null) {
+                long start = System.nanoTime();
+                RandomXNative.randomx_init_dataset(dataset.getDatasetPointer(), cache.getCachePointer(),
+                        new NativeLong(0), new NativeLong(datasetItems));
+                datasetRate = datasetItems * 1e9 / Math.max(1, System.nanoTime() - start);
+            }
+
+            double hashRate;
+            try (RandomXVM vm = new RandomXVM(flags, cache, null)) {
+                byte[] input = new byte[76];
+                byte[] output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+                vm.calculateHash(input, 0, input.length, output, 0); // Warm up.
+                long hashes = 0;
+                long start = System.nanoTime();
+                long deadline = start + sampleMillis * 1_000_000;
+                long now;
+                do {
+                    input[0] = (byte) hashes;
+                    input[1] = (byte) (hashes >>> 8);
+                    vm.calculateHash(input, 0, input.length, output, 0);
+                    hashes++;
+                    now = System.nanoTime();
+                } while (now < deadline);
+                hashRate = hashes * 1e9 / (now - start);
+            }
+            return new Measurement(hashRate, datasetRate, 0);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.debug("Flags {} unsupported: {}", flags, e.toString());
+            return null;
+        }
+    }
+
+    private static Set<RandomXFlag> with(Set<RandomXFlag> flags, RandomXFlag flag) {
+        Set<RandomXFlag> result = EnumSet.copyOf(flags);
+        result.add(flag);
+        return result;
+    }
+
+    /**
+     * Benchmark figures for one flag combination.
+     */
+    @Getter
+    public static final class Measurement {
+        /** Light-mode hashes per second on one thread. */
+        private final double hashesPerSecond;
+        /** Dataset items initialized per second on one thread. */
+        private final double datasetItemsPerSecond;
+        /** Cache initialization time of the chosen Argon2 implementation. */
+        private final long cacheInitNanos;
+
+        Measurement(double hashesPerSecond, double datasetItemsPerSecond, long cacheInitNanos) {
+            this.hashesPerSecond = hashesPerSecond;
+            this.datasetItemsPerSecond = datasetItemsPerSecond;
+            this.cacheInitNanos = cacheInitNanos;
+        }
+
+        Measurement withCacheInitNanos(long nanos) {
+            return new Measurement(hashesPerSecond, datasetItemsPerSecond, nanos);
+        }
+
+        boolean isBetterThan(Measurement other) {
+            double ratio = hashesPerSecond / other.hashesPerSecond;
+            if (Math.abs(ratio - 1) <= HASH_RATE_TIE) {
+                return datasetItemsPerSecond > other.datasetItemsPerSecond;
+            }
+            return ratio > 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f H/s, %.0f dataset items/s, cache init %d ms",
+                    hashesPerSecond, datasetItemsPerSecond, cacheInitNanos / 1_000_000);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Closeable;
+import java.lang.ref.Reference;
 import java.util.Set;
 
 /**
@@ -37,7 +38,12 @@ import java.util.Set;
  */
 @Slf4j
 public class RandomXCache implements Closeable {
-    private final Pointer cachePointer;
+    /**
+     * Native memory used by one cache (256 MiB of Argon2 arena).
+     */
+    public static final long MEMORY_BYTES = 256L * 1024 * 1024;
+
+    private final RandomXNativeHandle handle;
     @Getter
     private final Set<RandomXFlag> flags;
 
@@ -46,19 +52,24 @@ public class RandomXCache implements Closeable {
      *
      * @param flags Flags used to initialize the cache.
      * @throws RuntimeException if cache allocation fails.
+     * @throws IllegalStateException if the native memory budget does not allow the allocation.
      */
     public RandomXCache(Set<RandomXFlag> flags) {
         this.flags = flags;
         int combinedFlags = RandomXFlag.toValue(flags);
         log.debug("Allocating RandomX cache with flags: {} ({})", flags, combinedFlags);
+        RandomXNativeMemory.Reservation reservation = RandomXNativeMemory.reserve(RandomXMetricsListener.Resource.CACHE, MEMORY_BYTES);
         // Use RandomXNative for allocation
-        this.cachePointer = RandomXNative.randomx_alloc_cache(combinedFlags);
-        if (this.cachePointer == null) {
+        Pointer cachePointer = RandomXNative.randomx_alloc_cache(combinedFlags);
+        if (cachePointer == null) {
+            reservation.release();
             String errorMsg = String.format("Failed to allocate RandomX cache with flags: %s (%d)", flags, combinedFlags);
             log.error(errorMsg);
             throw new RuntimeException(errorMsg);
         }
-        log.info("RandomX cache allocated successfully at pointer: {}", Pointer.nativeValue(this.cachePointer));
+        this.handle = new RandomXNativeHandle(this, RandomXMetricsListener.Resource.CACHE, cachePointer,
+                RandomXNative::randomx_release_cache, reservation);
+        log.info("RandomX cache allocated successfully at pointer: {}", Pointer.nativeValue(cachePointer));
     }
 
     /**
@@ -66,12 +77,10 @@ public class RandomXCache implements Closeable {
      *
      * @param key Key (seed) used to initialize the cache.
      * @throws RuntimeException if cache initialization fails.
-     * @throws IllegalStateException if the cache is not allocated.
+     * @throws IllegalStateException if the cache is closed.
      */
     public void init(byte[] key) {
-        if (cachePointer == null) {
-            throw new IllegalStateException("Cache is not allocated.");
-        }
+        Pointer cachePointer = handle.get("Cache");
         if (key == null || key.length == 0) {
             throw new IllegalArgumentException("Key cannot be null or empty for cache initialization.");
         }
@@ -81,12 +90,14 @@ public class RandomXCache implements Closeable {
         try {
             keyPointer.write(0, key, 0, key.length);
             log.debug("Initializing RandomX cache with key of length: {}", key.length);
+            long start = System.nanoTime();
             // Use RandomXNative for initialization
             RandomXNative.randomx_init_cache(
-                    this.cachePointer,
+                    cachePointer,
                     keyPointer,
                     key.length
             );
+            RandomXMetrics.listener().cacheInitialized(System.nanoTime() - start);
             log.info("RandomX cache initialized successfully.");
         } catch (Exception e) {
             log.error("Failed to initialize RandomX cache", e);
@@ -94,6 +105,8 @@ public class RandomXCache implements Closeable {
             close(); // Release cachePointer
             throw new RuntimeException("Failed to initialize RandomX cache", e);
         } finally {
+            // Keep this cache reachable, so the leak safety net cannot free it during the native call.
+            Reference.reachabilityFence(this);
             // Memory objects do not need to be manually released; JNA's GC will handle it,
             // but nullifying the reference immediately might help GC reclaim it faster.
             keyPointer = null; // Help GC
@@ -104,30 +117,29 @@ public class RandomXCache implements Closeable {
      * Gets the pointer to the underlying native RandomX cache structure.
      *
      * @return Pointer to the native cache.
-     * @throws IllegalStateException if the cache is not allocated.
+     * @throws IllegalStateException if the cache is closed.
      */
     public Pointer getCachePointer() {
-        if (cachePointer == null) {
-            throw new IllegalStateException("Cache is not allocated.");
-        }
-        return cachePointer;
+        return handle.get("Cache");
+    }
+
+    /**
+     * @return true once {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return handle.isClosed();
     }
 
     /**
      * Releases the resources occupied by the native RandomX cache.
      * This method should be called after finishing with the cache to prevent memory leaks.
+     * It is idempotent; after it, using the cache throws {@link IllegalStateException}.
      */
     @Override
     public void close() {
-        if (cachePointer != null) {
-            log.debug("Releasing RandomX cache at pointer: {}", Pointer.nativeValue(cachePointer));
-            try {
-                // Use RandomXNative for release
-                RandomXNative.randomx_release_cache(cachePointer);
-                log.info("RandomX cache released successfully");
-            } catch (Throwable t) {
-                log.error("Error occurred while releasing RandomX cache. Pointer: {}", Pointer.nativeValue(cachePointer), t);
-            }
+        log.debug("Releasing RandomX cache at pointer: {}", Pointer.nativeValue(handle.peek()));
+        if (handle.close()) {
+            log.info("RandomX cache released successfully");
         }
     }
 }
\ No newline at end of file
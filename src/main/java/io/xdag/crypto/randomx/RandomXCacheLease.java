@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A borrowed reference to an initialized {@link RandomXCache} managed by another component.
+ * <p>
+ * While the lease is open the cache stays allocated, even if its owner evicts it. Closing the lease
+ * hands the reference back; the cache itself must never be closed by the holder of a lease.
+ */
+public final class RandomXCacheLease implements AutoCloseable {
+
+    /** The leased cache. Valid until this lease is closed. */
+    @Getter
+    private final RandomXCache cache;
+
+    private final byte[] seed;
+
+    /** The seed height the cache's key was taken from, or -1 if not applicable. */
+    @Getter
+    private final long seedHeight;
+
+    private final Runnable onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    RandomXCacheLease(RandomXCache cache, byte[] seed, long seedHeight, Runnable onClose) {
+        this.cache = cache;
+        this.seed = seed;
+        this.seedHeight = seedHeight;
+        this.onClose = onClose;
+    }
+
+    /**
+     * @return A copy of the key the cache was initialized with.
+     */
+    public byte[] getSeed() {
+        return seed.clone();
+    }
+
+    /**
+     * Returns the cache to its owner. Idempotent.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A small on-disk record of the keys whose caches were recently in use, so that a restarted node can bring
+ * those caches back before it needs them.
+ * <p>
+ * librandomx offers no way to export or import the memory of an initialized cache: {@code randomx_init_cache}
+ * always re-runs Argon2 and regenerates the superscalar programs from the key. The store therefore persists the
+ * key itself (with its digest and the flags it was used with) rather than the 256 MiB cache image, and
+ * {@link RandomXEpochManager#restore()} re-initializes the recorded caches in parallel, off the critical path.
+ * <p>
+ * Each key is one small file named after its SHA-256 digest. Files that fail their integrity check are deleted;
+ * beyond {@code maxEntries} the least recently used files are evicted. This class is thread-safe.
+ */
+@Slf4j
+public class RandomXCacheStore {
+
+    private static final int MAGIC = 0x53435852; // "RXCS" in little-endian byte order
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".seed";
+
+    /** Directory holding the key files. */
+    @Getter
+    private final Path directory;
+
+    /** Maximum number of keys kept. */
+    @Getter
+    private final int maxEntries;
+
+    private long lastStamp;
+
+    /**
+     * Creates a store, creating the directory if needed.
+     *
+     * @param directory  Directory holding the key files.
+     * @param maxEntries Maximum number of keys kept; values below 1 default to {@value RandomXEpochManager#DEFAULT_MAX_CACHES}.
+     * @throws IOException if the directory cannot be created.
+     */
+    public RandomXCacheStore(Path directory, int maxEntries) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory cannot be null.");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxEntries = maxEntries > 0 ? maxEntries : RandomXEpochManager.DEFAULT_MAX_CACHES;
+    }
+
+    /**
+     * Records that the cache for a key was initialized with the given flags, marking it most recently used,
+     * and evicts the least recently used keys beyond the limit.
+     *
+     * @param seed  The key.
+     * @param flags The flags the cache was allocated with.
+     * @throws IOException if the key file cannot be written.
+     */
+    public synchronized void record(byte[] seed, Set<RandomXFlag> flags) throws IOException {
+        if (seed == null || seed.length == 0) {
+            throw new IllegalArgumentException("Seed cannot be null or empty.");
+        }
+        byte[] digest = RandomXUtils.sha256(seed);
+        long stamp = Math.max(System.currentTimeMillis(), lastStamp + 1);
+        lastStamp = stamp;
+
+        ByteBuffer buffer = ByteBuffer.allocate(24 + seed.length + digest.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(RandomXFlag.toValue(flags)).putLong(stamp).putInt(seed.length);
+        buffer.put(seed).put(digest);
+
+        Path file = directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        List<Record> records = readAll();
+        for (int i = maxEntries; i < records.size(); i++) {
+            log.debug("Evicting RandomX cache store entry {}.", records.get(i).file.getFileName());
+            Files.deleteIfExists(records.get(i).file);
+        }
+    }
+
+    /**
+     * Returns the recorded keys that were used with the given flags, most recently used first.
+     * Corrupted entries are deleted and skipped.
+     *
+     * @param flags The flags the caches will be allocated with.
+     * @return The keys, newest first, at most {@code maxEntries}.
+     * @throws IOException if the directory cannot be listed.
+     */
+    public synchronized List<byte[]> recentSeeds(Set<RandomXFlag> flags) throws IOException {
+        int value = RandomXFlag.toValue(flags);
+        List<byte[]> seeds = new ArrayList<>();
+        for (Record record : readAll()) {
+            if (record.flags == value && seeds.size() < maxEntries) {
+                seeds.add(record.seed);
+            }
+        }
+        return seeds;
+    }
+
+    /** Reads every valid entry, newest first, deleting invalid ones. */
+    private List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                Record record = read(file);
+                if (record != null) {
+                    records.add(record);
+                } else {
+                    log.warn("Deleting invalid RandomX cache store entry {}.", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        records.sort(Comparator.comparingLong((Record record) -> record.stamp).reversed());
+        lastStamp = Math.max(lastStamp, records.isEmpty() ? 0 : records.get(0).stamp);
+        return records;
+    }
+
+    private static Record read(Path file) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 24 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int flags = buffer.getInt();
+            long stamp = buffer.getLong();
+            int length = buffer.getInt();
+            if (length <= 0 || buffer.remaining() != length + 32) {
+                return null;
+            }
+            byte[] seed = new byte[length];
+            byte[] digest = new byte[32];
+            buffer.get(seed).get(digest);
+            if (!Arrays.equals(digest, RandomXUtils.sha256(seed))
+                    || !file.getFileName().toString().equals(HexFormat.of().formatHex(digest) + SUFFIX)) {
+                return null;
+            }
+            return new Record(file, flags, stamp, seed);
+        } catch (IOException e) {
+            log.warn("Failed to read RandomX cache store entry {}.", file, e);
+            return null;
+        }
+    }
+
+    private static final class Record {
+        final Path file;
+        final int flags;
+        final long stamp;
+        final byte[] seed;
+
+        Record(Path file, int flags, long stamp, byte[] seed) {
+            this.file = file;
+            this.flags = flags;
+            this.stamp = stamp;
+            this.seed = seed;
+        }
+    }
+}
@@ -26,16 +26,18 @@ package io.xdag.crypto.randomx;
 import com.sun.jna.NativeLong;
 import com.sun.jna.Pointer;
 
+import java.lang.ref.Reference;
 import java.util.Set;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -48,19 +50,44 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class RandomXDataset implements AutoCloseable {
 
+    /** Size in bytes of one dataset item. */
+    public static final int ITEM_SIZE = 64;
+
+    /** Number of items a worker initializes per claimed chunk. */
+    static final long INIT_CHUNK_ITEMS = 32768;
+
+    /** Thread count used by {@link #init(RandomXCache)}: half of the available processors. */
+    public static final int DEFAULT_INIT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /** Shared pool of daemon threads used when no executor is supplied; idle threads exit after a minute. */
+    private static final ExecutorService INIT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setName("RandomX-Dataset-Init-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /**
-     * Pointer to the allocated RandomX dataset memory.
+     * Owner of the allocated RandomX dataset memory.
      */
-    private final Pointer datasetPointer;
+    private final RandomXNativeHandle handle;
 
     @Getter
     private final Set<RandomXFlag> flags; // Store flags used for allocation
 
+    /** The initialization in progress or last started, if any; guarded by {@code this}. */
+    private InitTask initTask;
+
     /**
      * Constructs a new RandomXDataset and allocates memory for it.
      *
      * @param flags Set of RandomXFlag values used to configure the dataset behavior.
      * @throws RuntimeException if dataset allocation fails.
+     * @throws IllegalStateException if the native memory budget does not allow the allocation.
      */
     public RandomXDataset(Set<RandomXFlag> flags) {
         if (flags == null || flags.isEmpty()) {
@@ -70,129 +97,208 @@ public class RandomXDataset implements AutoCloseable {
         int combinedFlags = RandomXFlag.toValue(flags);
         log.debug("Allocating RandomX dataset with flags: {} ({})", flags, combinedFlags);
 
+        RandomXNativeMemory.Reservation reservation =
+                RandomXNativeMemory.reserve(RandomXMetricsListener.Resource.DATASET, getItemCount() * ITEM_SIZE);
         // Use RandomXNative for allocation
-        this.datasetPointer = RandomXNative.randomx_alloc_dataset(combinedFlags);
+        Pointer datasetPointer = RandomXNative.randomx_alloc_dataset(combinedFlags);
 
         if (datasetPointer == null) {
+            reservation.release();
             String errorMsg = String.format("Failed to allocate RandomX dataset with flags: %s (%d)", flags, combinedFlags);
             log.error(errorMsg);
             throw new RuntimeException(errorMsg); // Use RuntimeException
         }
+        this.handle = new RandomXNativeHandle(this, RandomXMetricsListener.Resource.DATASET, datasetPointer,
+                RandomXNative::randomx_release_dataset, reservation);
 
         log.info("RandomX dataset allocated successfully at pointer: {} with flags: {}", Pointer.nativeValue(datasetPointer), flags);
     }
 
     /**
-     * Initializes the dataset using multiple threads.
-     * The initialization work is divided among threads based on available CPU cores.
+     * Initializes the dataset using multiple threads and blocks until it is complete.
+     * Uses {@link #DEFAULT_INIT_THREADS} threads of the shared initialization executor.
      *
      * @param cache The RandomXCache instance required for dataset initialization.
      * @throws RuntimeException if initialization is interrupted or fails.
      * @throws IllegalStateException if the dataset is not allocated.
      */
     public void init(RandomXCache cache) {
-        if (datasetPointer == null) {
-            throw new IllegalStateException("Dataset is not allocated.");
+        CompletableFuture<RandomXDataset> future = initAsync(cache, null, DEFAULT_INIT_THREADS, null);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            cancelInit();
+            Thread.currentThread().interrupt(); // Preserve interrupt status
+            log.error("Dataset initialization interrupted.", e);
+            throw new RuntimeException("Dataset initialization interrupted", e);
+        } catch (ExecutionException e) {
+            log.error("Dataset initialization failed.", e.getCause());
+            throw new RuntimeException("Dataset initialization failed", e.getCause());
         }
+    }
+
+    /**
+     * Starts initializing the dataset in the background.
+     * <p>
+     * The item range is split into chunks of {@value #INIT_CHUNK_ITEMS} items that {@code threadCount} workers claim
+     * one at a time, so a slow or busy core never holds up completion with a large fixed share of the work.
+     * Cancelling the returned future stops the workers after their current chunk; the dataset contents are then
+     * incomplete and it must be initialized again before use. Starting a new initialization, e.g. because the key
+     * changed again, cancels any initialization still in progress and waits for its workers to stop first.
+     *
+     * @param cache       The initialized cache to derive the dataset from. Must stay open until the future completes.
+     * @param executor    Executor running the workers, or null for a shared pool of daemon threads.
+     * @param threadCount Number of workers; values below 1 default to the number of available processors.
+     *                    See {@link #threadsForCpuShare(double)} for sizing by CPU budget.
+     * @param listener    Receives progress after every chunk, or null.
+     * @return A future completing with this dataset once every item is initialized.
+     * @throws IllegalStateException if the dataset is closed.
+     */
+    public CompletableFuture<RandomXDataset> initAsync(RandomXCache cache, Executor executor, int threadCount,
+                                                      InitProgressListener listener) {
+        handle.get("Dataset");
         if (cache == null || cache.getCachePointer() == null) {
             throw new IllegalArgumentException("Valid cache instance with allocated cache pointer is required for dataset initialization.");
         }
 
-        long startTime = System.nanoTime();
-
         // Get total items count using RandomXNative
-        long totalItems = RandomXNative.randomx_dataset_item_count().longValue();
+        long totalItems = getItemCount();
         if (totalItems <= 0) {
-             log.warn("RandomX dataset item count is zero or negative ({}). Skipping initialization.", totalItems);
-             return; // No items to initialize
+            log.warn("RandomX dataset item count is zero or negative ({}). Skipping initialization.", totalItems);
+            return CompletableFuture.completedFuture(this); // No items to initialize
         }
+        int workers = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        Executor target = executor != null ? executor : INIT_EXECUTOR;
 
-        // Calculate optimal thread count (using half of available processors by default)
-        int availableProcessors = Runtime.getRuntime().availableProcessors();
-        int initThreadCount = Math.max(1, availableProcessors / 2);
-        log.info("Initializing dataset ({} items) using {} threads.", totalItems, initThreadCount);
-
-        // Create thread pool with custom thread factory for naming
-        ExecutorService executor = Executors.newFixedThreadPool(initThreadCount, new ThreadFactory() {
-            private final AtomicInteger threadNumber = new AtomicInteger(1);
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread thread = new Thread(r);
-                thread.setName("RandomX-Dataset-Init-" + threadNumber.getAndIncrement());
-                thread.setDaemon(true);
-                return thread;
+        InitTask task;
+        synchronized (this) {
+            cancelInit();
+            task = new InitTask(cache, totalItems, workers, listener);
+            initTask = task;
+        }
+        log.info("Initializing dataset ({} items) using {} threads.", totalItems, workers);
+        for (int i = 0; i < workers; i++) {
+            try {
+                target.execute(task::work);
+            } catch (RejectedExecutionException e) {
+                task.result.completeExceptionally(e);
+                task.workerFinished();
             }
-        });
+        }
+        return task.result;
+    }
 
-        try {
-            // Calculate items per thread and handle remainder
-            long itemsPerThread = totalItems / initThreadCount;
-            long remainder = totalItems % initThreadCount;
-            List<Future<?>> futures = new ArrayList<>(initThreadCount);
-            long currentItemStart = 0;
-
-            // Submit initialization tasks for each thread
-            for (int i = 0; i < initThreadCount; i++) {
-                long itemCount = itemsPerThread + (i < remainder ? 1 : 0); // Distribute remainder evenly
-                if (itemCount == 0) continue; // Skip threads with no work
-
-                final long start = currentItemStart;
-                final long count = itemCount;
-                final Pointer cachePtr = cache.getCachePointer(); // Pass cache pointer explicitly
-
-                futures.add(executor.submit(() -> {
-                    String threadName = Thread.currentThread().getName();
-                    try {
-                        log.debug("{} starting initialization for items [{}, {})", threadName, start, start + count);
-                        // Use RandomXNative for dataset initialization
-                        RandomXNative.randomx_init_dataset(
-                                datasetPointer,
-                                cachePtr,
-                                new NativeLong(start),
-                                new NativeLong(count)
-                        );
-                        log.debug("{} finished initialization for items [{}, {})", threadName, start, start + count);
-                    } catch (Exception e) {
-                        log.error("{} failed during initialization for items [{}, {}). Error: {}",
-                                     threadName, start, start + count, e.getMessage(), e);
-                        // Propagate exception to be caught by future.get()
-                        throw new RuntimeException("Dataset initialization failed in thread " + threadName, e);
-                    }
-                }));
-                currentItemStart += itemCount;
+    /**
+     * Cancels an initialization started by {@link #initAsync} and waits for its workers to stop.
+     * Does nothing if no initialization is in progress.
+     */
+    public synchronized void cancelInit() {
+        InitTask task = initTask;
+        if (task != null) {
+            if (task.result.cancel(false)) {
+                log.info("Dataset initialization cancelled after {} of {} items.", task.completedItems.get(), task.totalItems);
             }
+            task.stopped.join();
+            initTask = null;
+        }
+    }
 
-            // Wait for all threads to complete and check for exceptions
-            for (Future<?> future : futures) {
-                try {
-                    future.get(); // Throws ExecutionException if the task threw an exception
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt(); // Preserve interrupt status
-                    log.error("Dataset initialization interrupted.", e);
-                    throw new RuntimeException("Dataset initialization interrupted", e);
-                } catch (ExecutionException e) {
-                    log.error("Dataset initialization failed.", e.getCause());
-                    // Unwrap the original exception thrown by the task
-                    throw new RuntimeException("Dataset initialization failed", e.getCause());
+    /**
+     * Converts a share of the machine's processors into an initialization thread count.
+     *
+     * @param share Fraction of available processors to use, in (0, 1].
+     * @return The thread count, at least 1.
+     */
+    public static int threadsForCpuShare(double share) {
+        if (!(share > 0 && share <= 1)) {
+            throw new IllegalArgumentException("CPU share must be in (0, 1].");
+        }
+        return Math.max(1, (int) Math.round(Runtime.getRuntime().availableProcessors() * share));
+    }
+
+    /**
+     * Receives dataset initialization progress.
+     */
+    @FunctionalInterface
+    public interface InitProgressListener {
+        /**
+         * Called from a worker thread after each completed chunk.
+         *
+         * @param completedItems Items initialized so far.
+         * @param totalItems     Items in the dataset.
+         * @param etaMillis      Estimated milliseconds until completion.
+         */
+        void onProgress(long completedItems, long totalItems, long etaMillis);
+    }
+
+    /**
+     * One initialization run: workers claim chunks from a shared cursor until the range is exhausted,
+     * the result is cancelled, or a chunk fails.
+     */
+    private final class InitTask {
+        final RandomXCache cache;
+        final long totalItems;
+        final InitProgressListener listener;
+        final CompletableFuture<RandomXDataset> result = new CompletableFuture<>();
+        final CompletableFuture<Void> stopped = new CompletableFuture<>();
+        final AtomicLong cursor = new AtomicLong();
+        final AtomicLong completedItems = new AtomicLong();
+        final AtomicInteger activeWorkers;
+        final long startTime = System.nanoTime();
+
+        InitTask(RandomXCache cache, long totalItems, int workers, InitProgressListener listener) {
+            this.cache = cache;
+            this.totalItems = totalItems;
+            this.listener = listener;
+            this.activeWorkers = new AtomicInteger(workers);
+        }
+
+        void work() {
+            try {
+                while (!result.isDone()) {
+                    long start = cursor.getAndAdd(INIT_CHUNK_ITEMS);
+                    if (start >= totalItems) {
+                        break;
+                    }
+                    long count = Math.min(INIT_CHUNK_ITEMS, totalItems - start);
+                    // Use RandomXNative for dataset initialization
+                    // close() cancels and waits for the workers before freeing, so the pointer stays valid here.
+                    RandomXNative.randomx_init_dataset(handle.peek(), cache.getCachePointer(), new NativeLong(start), new NativeLong(count));
+                    // Keep the cache reachable while workers read it, so the leak safety net cannot free it
+                    // if the caller drops its reference during initialization.
+                    Reference.reachabilityFence(cache);
+                    report(completedItems.addAndGet(count));
                 }
+            } catch (Throwable t) {
+                log.error("{} failed during dataset initialization.", Thread.currentThread().getName(), t);
+                result.completeExceptionally(t);
+            } finally {
+                workerFinished();
             }
+        }
 
-            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
-            log.info("Dataset initialization completed successfully in {} ms.", durationMillis);
+        void workerFinished() {
+            if (activeWorkers.decrementAndGet() == 0) {
+                if (completedItems.get() == totalItems && result.complete(RandomXDataset.this)) {
+                    long durationNanos = System.nanoTime() - startTime;
+                    RandomXMetrics.listener().datasetInitialized(durationNanos);
+                    long durationMillis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+                    log.info("Dataset initialization completed successfully in {} ms.", durationMillis);
+                }
+                stopped.complete(null);
+            }
+        }
 
-        } finally {
-            // Shutdown executor service gracefully
-            executor.shutdown();
+        private void report(long completed) {
+            if (listener == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startTime;
+            long eta = TimeUnit.NANOSECONDS.toMillis((long) ((double) elapsed / completed * (totalItems - completed)));
             try {
-                // Wait a reasonable time for tasks to finish
-                if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-                    log.warn("Executor did not terminate in 60 seconds. Forcing shutdown.");
-                    executor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                log.error("Interrupted while waiting for executor termination.", e);
-                executor.shutdownNow();
-                Thread.currentThread().interrupt(); // Preserve interrupt status
+                listener.onProgress(completed, totalItems, eta);
+            } catch (RuntimeException e) {
+                log.warn("Dataset initialization progress listener failed.", e);
             }
         }
     }
@@ -201,30 +307,47 @@ public class RandomXDataset implements AutoCloseable {
      * Gets the pointer to the allocated dataset memory.
      *
      * @return Pointer to the dataset memory.
-     * @throws IllegalStateException if the dataset is not allocated.
+     * @throws IllegalStateException if the dataset is closed.
      */
     public Pointer getDatasetPointer() {
-        if (datasetPointer == null) {
-            throw new IllegalStateException("Dataset is not allocated.");
-        }
-        return datasetPointer;
+        return handle.get("Dataset");
+    }
+
+    /**
+     * @return true once {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return handle.isClosed();
+    }
+
+    /**
+     * Gets the pointer to the dataset's item memory, as opposed to the native dataset handle.
+     *
+     * @return Pointer to {@link #getItemCount()} items of {@link #ITEM_SIZE} bytes.
+     * @throws IllegalStateException if the dataset is closed.
+     */
+    Pointer getMemory() {
+        return RandomXNative.randomx_get_dataset_memory(getDatasetPointer());
+    }
+
+    /**
+     * @return The number of items in a full dataset.
+     */
+    public static long getItemCount() {
+        return RandomXNative.randomx_dataset_item_count().longValue();
     }
 
   /**
      * Releases the allocated dataset memory.
-     * This method is called automatically when using try-with-resources.
+     * This method is called automatically when using try-with-resources. It is idempotent; after it,
+     * using the dataset throws {@link IllegalStateException}.
      */
     @Override
     public void close() {
-        if (datasetPointer != null) {
-            log.debug("Releasing RandomX dataset at pointer: {}", Pointer.nativeValue(datasetPointer));
-            try {
-                // Use RandomXNative for release
-                RandomXNative.randomx_release_dataset(datasetPointer);
-                log.info("RandomX dataset released successfully.");
-            } catch (Throwable t) {
-                log.error("Error occurred while releasing RandomX dataset. Pointer: {}", Pointer.nativeValue(datasetPointer), t);
-            }
+        cancelInit();
+        log.debug("Releasing RandomX dataset at pointer: {}", Pointer.nativeValue(handle.peek()));
+        if (handle.close()) {
+            log.info("RandomX dataset released successfully.");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists initialized datasets to disk so that a restart can skip the full dataset computation.
+ * <p>
+ * A snapshot file consists of a fixed {@value #HEADER_SIZE}-byte little-endian header followed by the raw dataset
+ * items. The header records a magic value, the format version, a reserved zero field, the item count, a SHA-256
+ * digest of the key and a SHA-256 fingerprint of the native library. Flags are not recorded since none of them
+ * changes the dataset contents, so toggling JIT or large pages keeps a snapshot valid. A file is only accepted if
+ * every header field matches and a random sample of items (always including the first and last) re-derived from
+ * the cache matches the file contents; anything else is rejected so the caller can rebuild.
+ * <p>
+ * The native dataset memory is owned by librandomx and cannot be backed by a file mapping, so loading maps the
+ * file read-only in chunks and copies each chunk straight into the dataset memory without a heap round trip.
+ */
+@Slf4j
+public final class RandomXDatasetSnapshot {
+
+    /** Size in bytes of the snapshot header. */
+    static final int HEADER_SIZE = 128;
+
+    /** Number of items re-derived from the cache when loading a snapshot. */
+    static final int DEFAULT_SAMPLE_COUNT = 256;
+
+    private static final long MAGIC = 0x50414e5344585852L; // "RXXDSNAP" in little-endian byte order
+    private static final int FORMAT_VERSION = 1;
+    private static final long CHUNK_SIZE = 256L * 1024 * 1024;
+
+    private RandomXDatasetSnapshot() {
+    }
+
+    /**
+     * Writes an initialized dataset to a snapshot file. The file is written under a temporary name
+     * and atomically moved into place, so readers never observe a partial snapshot.
+     *
+     * @param dataset An initialized dataset.
+     * @param key     The key of the cache the dataset was initialized from.
+     * @param file    Destination file; replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void save(RandomXDataset dataset, byte[] key, Path file) throws IOException {
+        if (dataset == null || key == null || file == null) {
+            throw new IllegalArgumentException("Dataset, key and file cannot be null.");
+        }
+        long start = System.nanoTime();
+        long itemCount = RandomXDataset.getItemCount();
+        long size = itemCount * RandomXDataset.ITEM_SIZE;
+        Pointer memory = dataset.getMemory();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(channel, header(itemCount, key));
+                for (long offset = 0; offset < size; offset += CHUNK_SIZE) {
+                    writeFully(channel, memory.getByteBuffer(offset, Math.min(CHUNK_SIZE, size - offset)));
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("RandomX dataset snapshot written to {} ({} bytes) in {} ms.", file, HEADER_SIZE + size,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Loads a snapshot into an allocated dataset using {@value #DEFAULT_SAMPLE_COUNT} sampled items for verification.
+     *
+     * @see #load(RandomXDataset, RandomXCache, byte[], Path, int)
+     */
+    public static boolean load(RandomXDataset dataset, RandomXCache cache, byte[] key, Path file) {
+        return load(dataset, cache, key, file, DEFAULT_SAMPLE_COUNT);
+    }
+
+    /**
+     * Loads a snapshot into an allocated dataset and verifies it.
+     * <p>
+     * Verification re-derives {@code sampleCount} items from the cache in place and compares them with the
+     * loaded contents. A missing, unreadable, mismatched or corrupted file is reported by returning false,
+     * in which case the dataset contents are unspecified and it must be initialized normally.
+     *
+     * @param dataset     An allocated dataset.
+     * @param cache       The cache initialized with {@code key}.
+     * @param key         The key the dataset must correspond to.
+     * @param file        The snapshot file.
+     * @param sampleCount Number of items to verify; the first and last item are always verified.
+     * @return true if the snapshot was loaded and verified.
+     */
+    public static boolean load(RandomXDataset dataset, RandomXCache cache, byte[] key, Path file, int sampleCount) {
+        if (dataset == null || cache == null || key == null || file == null) {
+            throw new IllegalArgumentException("Dataset, cache, key and file cannot be null.");
+        }
+        long start = System.nanoTime();
+        long itemCount = RandomXDataset.getItemCount();
+        long size = itemCount * RandomXDataset.ITEM_SIZE;
+        Pointer memory = dataset.getMemory();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(channel, header) || !header.flip().equals(header(itemCount, key))) {
+                log.warn("Rejecting RandomX dataset snapshot {}: header does not match key or library.", file);
+                return false;
+            }
+            if (channel.size() != HEADER_SIZE + size) {
+                log.warn("Rejecting RandomX dataset snapshot {}: expected {} bytes, found {}.", file, HEADER_SIZE + size, channel.size());
+                return false;
+            }
+            for (long offset = 0; offset < size; offset += CHUNK_SIZE) {
+                long length = Math.min(CHUNK_SIZE, size - offset);
+                memory.getByteBuffer(offset, length).put(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset, length));
+            }
+        } catch (NoSuchFileException e) {
+            log.info("No RandomX dataset snapshot at {}.", file);
+            return false;
+        } catch (IOException e) {
+            log.warn("Failed to read RandomX dataset snapshot {}.", file, e);
+            return false;
+        }
+
+        if (!verifySamples(dataset, cache, itemCount, sampleCount)) {
+            log.warn("Rejecting RandomX dataset snapshot {}: sampled items do not match the cache.", file);
+            return false;
+        }
+        log.info("RandomX dataset loaded from snapshot {} in {} ms.", file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return true;
+    }
+
+    /**
+     * Allocates a dataset and fills it from a snapshot, or initializes it from the cache and writes a new
+     * snapshot if the existing one is missing or rejected. A failure to write the snapshot is logged and
+     * does not fail the call.
+     *
+     * @param flags Flags used to allocate the dataset.
+     * @param cache The cache initialized with {@code key}.
+     * @param key   The cache key.
+     * @param file  The snapshot file.
+     * @return An initialized dataset owned by the caller.
+     */
+    public static RandomXDataset loadOrInit(Set<RandomXFlag> flags, RandomXCache cache, byte[] key, Path file) {
+        RandomXDataset dataset = new RandomXDataset(flags);
+        try {
+            if (!load(dataset, cache, key, file)) {
+                dataset.init(cache);
+                try {
+                    save(dataset, key, file);
+                } catch (IOException e) {
+                    log.warn("Failed to write RandomX dataset snapshot {}.", file, e);
+                }
+            }
+            return dataset;
+        } catch (RuntimeException e) {
+            dataset.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Re-derives sampled items from the cache in place and compares them with the loaded contents.
+     * Items that are verified are left holding the freshly derived (correct) values.
+     */
+    private static boolean verifySamples(RandomXDataset dataset, RandomXCache cache, long itemCount, int sampleCount) {
+        Pointer memory = dataset.getMemory();
+        byte[] loaded = new byte[RandomXDataset.ITEM_SIZE];
+        byte[] derived = new byte[RandomXDataset.ITEM_SIZE];
+        int samples = Math.max(2, sampleCount);
+        for (int i = 0; i < samples; i++) {
+            long item = i == 0 ? 0 : i == 1 ? itemCount - 1 : ThreadLocalRandom.current().nextLong(itemCount);
+            long offset = item * RandomXDataset.ITEM_SIZE;
+            memory.read(offset, loaded, 0, loaded.length);
+            RandomXNative.randomx_init_dataset(dataset.getDatasetPointer(), cache.getCachePointer(),
+                    new NativeLong(item), new NativeLong(1));
+            memory.read(offset, derived, 0, derived.length);
+            if (!Arrays.equals(loaded, derived)) {
+                log.debug("Dataset snapshot item {} does not match the cache.", item);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer header(long itemCount, byte[] key) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.putInt(0); // Reserved.
+        header.putLong(itemCount);
+        header.putLong(RandomXDataset.ITEM_SIZE);
+        header.put(RandomXUtils.sha256(key));
+        header.put(RandomXLibraryLoader.getLibraryFingerprint());
+        return header.rewind();
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
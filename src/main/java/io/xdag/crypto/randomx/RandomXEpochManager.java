@@ -0,0 +1,286 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+
+/**
+ * Maps block heights to RandomX keys and keeps the caches of recently used keys initialized.
+ * <p>
+ * The key for a block is the hash of a seed block chosen with the Monero/XDAG scheduling: the seed height
+ * changes every {@code epochLength} blocks and takes effect {@code epochLag} blocks later, see
+ * {@link #seedHeight(long)}. The manager holds a small LRU of initialized caches (by default current,
+ * previous and next epoch), so verifying slightly older blocks or following a reorg across an epoch boundary
+ * never re-runs cache initialization. {@link #setChainHeight(long)} prefetches the next epoch's cache on a
+ * background thread as soon as its seed block exists.
+ * <p>
+ * Caches are handed out as {@link RandomXCacheLease}s; an evicted cache is released only once every lease on
+ * it has been closed. With a {@link RandomXCacheStore} the manager records every key it initializes, and
+ * {@link #restore()} brings the recorded caches back after a restart. This class is thread-safe.
+ */
+@Slf4j
+public class RandomXEpochManager implements AutoCloseable {
+
+    /** Default number of initialized caches kept: current, previous and next epoch. */
+    static final int DEFAULT_MAX_CACHES = 3;
+
+    /** Number of blocks per key epoch. */
+    @Getter
+    private final long epochLength;
+
+    /** Number of blocks after a seed height before its key takes effect. */
+    @Getter
+    private final long epochLag;
+
+    /** Flags used to allocate caches. */
+    @Getter
+    private final Set<RandomXFlag> flags;
+
+    /** Maximum number of initialized caches kept. */
+    @Getter
+    private final int maxCaches;
+
+    private final LongFunction<byte[]> seedProvider;
+
+    /** Records initialized keys for {@link #restore()}; may be null. */
+    private final RandomXCacheStore store;
+
+    /** Initialized caches by key, least recently used evicted first. */
+    private final RandomXKeyLru<RandomXCache> caches;
+
+    /**
+     * Creates an epoch manager.
+     *
+     * @param epochLength  Number of blocks per key epoch; must be positive.
+     * @param epochLag     Number of blocks after a seed height before its key takes effect; must not be negative.
+     * @param seedProvider Returns the seed (block hash) at a given seed height.
+     * @param flags        Flags used to allocate caches.
+     * @param maxCaches    Number of initialized caches kept; values below 1 default to {@value #DEFAULT_MAX_CACHES}.
+     * @param store        Store recording initialized keys for {@link #restore()}, or null.
+     */
+    @Builder
+    public RandomXEpochManager(long epochLength, long epochLag, LongFunction<byte[]> seedProvider,
+                               Set<RandomXFlag> flags, int maxCaches, RandomXCacheStore store) {
+        if (epochLength <= 0 || epochLag < 0) {
+            throw new IllegalArgumentException("Epoch length must be positive and epoch lag must not be negative.");
+        }
+        if (seedProvider == null) {
+            throw new IllegalArgumentException("Seed provider cannot be null.");
+        }
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+        this.epochLength = epochLength;
+        this.epochLag = epochLag;
+        this.seedProvider = seedProvider;
+        this.flags = flags;
+        this.maxCaches = maxCaches > 0 ? maxCaches : DEFAULT_MAX_CACHES;
+        this.store = store;
+        this.caches = new RandomXKeyLru<>("RandomX epoch manager", this.maxCaches, this::initCache, RandomXCache::close);
+    }
+
+    /**
+     * Returns the height of the seed block whose hash is the RandomX key for a block at {@code height}.
+     * Blocks in the first {@code epochLength + epochLag} heights use seed height 0; afterwards the seed
+     * height is {@code height - epochLag - 1} rounded down to a multiple of {@code epochLength}.
+     *
+     * @param height A block height.
+     * @return The corresponding seed height.
+     */
+    public long seedHeight(long height) {
+        if (height <= epochLength + epochLag) {
+            return 0;
+        }
+        return (height - epochLag - 1) / epochLength * epochLength;
+    }
+
+    /**
+     * Returns the RandomX key for a block at {@code height}.
+     *
+     * @param height A block height.
+     * @return The seed hash.
+     * @throws IllegalStateException if the seed provider has no seed for the seed height.
+     */
+    public byte[] seed(long height) {
+        return seedAt(seedHeight(height));
+    }
+
+    private byte[] seedAt(long seedHeight) {
+        byte[] seed = seedProvider.apply(seedHeight);
+        if (seed == null || seed.length == 0) {
+            throw new IllegalStateException("No seed available at seed height " + seedHeight + ".");
+        }
+        return seed;
+    }
+
+    /**
+     * Leases the initialized cache for the key of a block at {@code height}, initializing it on the calling
+     * thread if it is not already cached. Concurrent requests for the same key share one initialization.
+     *
+     * @param height A block height.
+     * @return A lease on the cache; close it when done hashing.
+     * @throws IllegalStateException if the manager is closed or no seed is available.
+     */
+    public RandomXCacheLease acquire(long height) {
+        long seedHeight = seedHeight(height);
+        return acquire(seedAt(seedHeight), seedHeight);
+    }
+
+    /**
+     * Leases the initialized cache for a key, initializing it on the calling thread if it is not already cached.
+     *
+     * @param seed       The key.
+     * @param seedHeight The seed height the key was taken from, or -1 if not applicable.
+     * @return A lease on the cache; close it when done hashing.
+     * @throws IllegalStateException if the manager is closed.
+     */
+    RandomXCacheLease acquire(byte[] seed, long seedHeight) {
+        RandomXKeyLru.Entry<RandomXCache> entry = caches.retain(seed);
+        return new RandomXCacheLease(entry.value(), entry.seed, seedHeight, entry::release);
+    }
+
+    /**
+     * Records the current chain height and, once the seed block of the next epoch exists, starts initializing
+     * that epoch's cache in the background so the epoch switch does not stall verification.
+     *
+     * @param height The current chain height.
+     * @return A future completing when the next epoch's cache is ready, or a completed future if there is
+     *         nothing to prefetch yet.
+     */
+    public CompletableFuture<Void> setChainHeight(long height) {
+        long nextSeedHeight = seedHeight(height) + epochLength;
+        if (height < nextSeedHeight) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return prefetch(seedAt(nextSeedHeight));
+    }
+
+    /**
+     * Starts initializing the cache for a key in the background unless it is already cached.
+     *
+     * @param seed The key.
+     * @return A future completing when the cache is ready.
+     */
+    public CompletableFuture<Void> prefetch(byte[] seed) {
+        return caches.prefetch(seed, task -> {
+            log.info("Prefetching RandomX cache for seed {}.", HexFormat.of().formatHex(seed));
+            Thread thread = new Thread(task, "RandomX-Cache-Prefetch");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Re-initializes, in parallel and in the background, the caches of the keys most recently recorded in the
+     * store, so that after a restart the current and previous epochs are ready before the first verification.
+     *
+     * @return A future completing when all restored caches are ready; already completed without a store.
+     */
+    public CompletableFuture<Void> restore() {
+        if (store == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<byte[]> seeds;
+        try {
+            seeds = store.recentSeeds(flags);
+        } catch (IOException e) {
+            log.warn("Failed to read RandomX cache store {}.", store.getDirectory(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+        // Oldest first, so the most recently used key ends up most recently used in the LRU as well.
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = Math.min(seeds.size(), maxCaches) - 1; i >= 0; i--) {
+            futures.add(prefetch(seeds.get(i)));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /** Builds and initializes the cache for a key and records the key in the store. */
+    private RandomXCache initCache(byte[] seed) {
+        RandomXCache cache = new RandomXCache(flags);
+        try {
+            cache.init(seed);
+        } catch (Throwable t) {
+            cache.close();
+            throw t;
+        }
+        if (store != null) {
+            try {
+                store.record(seed, flags);
+            } catch (IOException e) {
+                log.warn("Failed to record RandomX key in cache store {}.", store.getDirectory(), e);
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @return Number of cache requests served without initialization.
+     */
+    public long getHitCount() {
+        return caches.getHitCount();
+    }
+
+    /**
+     * @return Number of cache requests (including prefetches) that required initialization.
+     */
+    public long getMissCount() {
+        return caches.getMissCount();
+    }
+
+    /**
+     * @return Number of caches evicted from the LRU.
+     */
+    public long getEvictionCount() {
+        return caches.getEvictionCount();
+    }
+
+    /**
+     * @return Number of caches currently held (initialized or initializing).
+     */
+    public int getCachedCount() {
+        return caches.size();
+    }
+
+    /**
+     * Drops all cached keys. Caches still leased are released when their last lease is closed.
+     */
+    @Override
+    public void close() {
+        if (caches.close()) {
+            log.info("RandomX epoch manager closed. Hits: {}, misses: {}, evictions: {}.",
+                    getHitCount(), getMissCount(), getEvictionCount());
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reference-counted LRU of key material built per RandomX key, shared by {@link RandomXEpochManager} and
+ * {@link RandomXVerifier}.
+ * <p>
+ * The first request for a key builds its value; later and concurrent requests wait for and reuse it. Each entry
+ * holds one reference for the LRU plus one per outstanding {@link #retain}. Its value is closed once the entry has
+ * left the LRU (evicted, failed or dropped by {@link #close()}) and every retained reference has been released.
+ * A factory that fails must clean up after itself. This class is thread-safe.
+ *
+ * @param <V> The value built for a key.
+ */
+@Slf4j
+final class RandomXKeyLru<V> {
+
+    /** Owner name used in log and exception messages, e.g. "RandomX verifier". */
+    private final String name;
+    private final int maxEntries;
+    private final Function<byte[], V> factory;
+    private final Consumer<V> closer;
+
+    /** Entries by hex-encoded seed, in access order; guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private boolean closed;
+
+    /**
+     * @param name       Owner name used in log and exception messages.
+     * @param maxEntries Maximum number of keys kept.
+     * @param factory    Builds the value for a seed.
+     * @param closer     Releases a value.
+     */
+    RandomXKeyLru(String name, int maxEntries, Function<byte[], V> factory, Consumer<V> closer) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.factory = factory;
+        this.closer = closer;
+    }
+
+    /**
+     * Returns the entry for a key with one reference held for the caller, building its value on the calling
+     * thread if the key is not cached. The caller must {@link Entry#release()} it.
+     *
+     * @param seed The key.
+     * @return The entry, whose value is ready.
+     * @throws IllegalStateException if the LRU is closed.
+     */
+    Entry<V> retain(byte[] seed) {
+        Entry<V> entry;
+        boolean build = false;
+        synchronized (this) {
+            checkOpen();
+            String key = key(seed);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry<>(key, seed.clone(), closer);
+                entries.put(key, entry);
+                build = true;
+                misses.increment();
+                evictExcess();
+            } else {
+                hits.increment();
+            }
+            // The map still holds its own reference, so the entry cannot have been released yet.
+            entry.references.incrementAndGet();
+        }
+        if (build) {
+            build(entry);
+        }
+        try {
+            entry.future.join();
+        } catch (CompletionException e) {
+            entry.release();
+            remove(entry);
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return entry;
+    }
+
+    /**
+     * Starts building the value for a key on {@code executor} unless the key is already cached.
+     *
+     * @param seed     The key.
+     * @param executor Runs the build.
+     * @return A future completing when the value is ready. A key whose build fails leaves the LRU.
+     * @throws IllegalStateException if the LRU is closed.
+     */
+    CompletableFuture<Void> prefetch(byte[] seed, Executor executor) {
+        Entry<V> entry;
+        synchronized (this) {
+            checkOpen();
+            String key = key(seed);
+            entry = entries.get(key);
+            if (entry != null) {
+                return entry.future.thenApply(value -> null);
+            }
+            entry = new Entry<>(key, seed.clone(), closer);
+            entries.put(key, entry);
+            misses.increment();
+            evictExcess();
+        }
+        Entry<V> prefetched = entry;
+        executor.execute(() -> build(prefetched));
+        return prefetched.future.handle((value, error) -> {
+            if (error != null) {
+                remove(prefetched);
+            }
+            return null;
+        });
+    }
+
+    private void build(Entry<V> entry) {
+        try {
+            entry.future.complete(factory.apply(entry.seed));
+        } catch (Throwable t) {
+            log.error("{} failed to initialize key {}.", name, entry.key, t);
+            entry.future.completeExceptionally(t);
+        }
+    }
+
+    /** Evicts least recently used keys beyond the limit. Must hold {@code this}. */
+    private void evictExcess() {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Entry<V> eldest = iterator.next();
+            iterator.remove();
+            evictions.increment();
+            log.debug("{} evicting key {}.", name, eldest.key);
+            eldest.release();
+        }
+    }
+
+    private synchronized void remove(Entry<V> entry) {
+        if (entries.remove(entry.key, entry)) {
+            entry.release();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException(name + " is closed.");
+        }
+    }
+
+    private static String key(byte[] seed) {
+        return HexFormat.of().formatHex(seed);
+    }
+
+    /**
+     * @return Number of requests served by an already cached key.
+     */
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of requests (including prefetches) that required building a value.
+     */
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Number of keys evicted.
+     */
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Number of keys currently held (built or building).
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops all keys. Values still retained are closed when their last reference is released.
+     *
+     * @return false if the LRU was already closed.
+     */
+    boolean close() {
+        List<Entry<V>> dropped;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            dropped = new ArrayList<>(entries.values());
+            entries.clear();
+        }
+        dropped.forEach(Entry::release);
+        return true;
+    }
+
+    /**
+     * The value for one key and its reference count.
+     */
+    static final class Entry<V> {
+        final String key;
+        final byte[] seed;
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final AtomicInteger references = new AtomicInteger(1);
+        private final Consumer<V> closer;
+
+        Entry(String key, byte[] seed, Consumer<V> closer) {
+            this.key = key;
+            this.seed = seed;
+            this.closer = closer;
+        }
+
+        /**
+         * @return The value; only valid while a reference is held and after the build succeeded.
+         */
+        V value() {
+            return future.join();
+        }
+
+        /**
+         * Drops one reference, closing the value when it was the last.
+         */
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                future.thenAccept(closer);
+            }
+        }
+    }
+}
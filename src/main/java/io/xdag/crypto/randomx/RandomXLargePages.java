@@ -0,0 +1,298 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Large-page aware allocation of RandomX structures.
+ * <p>
+ * Allocating with {@link RandomXFlag#LARGE_PAGES} either succeeds or makes librandomx return null, which the
+ * constructors report as a bare {@link RuntimeException}. This class probes the host first (on Linux:
+ * {@code /proc/meminfo}, {@code /sys/kernel/mm/hugepages} and the transparent hugepage setting), then tries
+ * large pages for each cache, dataset and VM scratchpad independently and falls back to normal pages for
+ * that allocation alone. It counts which structures ended up on large pages so the effective memory mode
+ * can be reported, since large pages typically account for 10-30% of hashrate.
+ * <p>
+ * Transparent hugepages are only reported: librandomx asks for explicit (hugetlbfs) pages, and memory
+ * allocated normally may still be backed by transparent hugepages when the setting is {@code always}.
+ */
+@Slf4j
+public final class RandomXLargePages {
+
+    /** Structures that can be allocated on large pages. */
+    public enum Structure {
+        CACHE, DATASET, VM
+    }
+
+    private static final Path MEMINFO = Path.of("/proc/meminfo");
+    private static final Path HUGEPAGES_DIR = Path.of("/sys/kernel/mm/hugepages");
+    private static final Path THP_ENABLED = Path.of("/sys/kernel/mm/transparent_hugepage/enabled");
+
+    private final Path meminfo;
+    private final Path hugepagesDir;
+
+    /** Whether the host reports explicit hugepage counters; if not, allocations are simply attempted. */
+    @Getter
+    private final boolean probed;
+
+    /** Default hugepage size in bytes, or 0 if unknown. */
+    @Getter
+    private final long pageSize;
+
+    /** Total number of default-size hugepages reserved on the host when probed. */
+    @Getter
+    private final long totalPages;
+
+    /** Active transparent hugepage mode ({@code always}, {@code madvise}, {@code never}), or null if unknown. */
+    @Getter
+    private final String transparentHugePages;
+
+    private final Map<Structure, AtomicInteger> largeCounts = new EnumMap<>(Structure.class);
+    private final Map<Structure, AtomicInteger> normalCounts = new EnumMap<>(Structure.class);
+
+    private RandomXLargePages(Path meminfo, Path hugepagesDir, Path thpEnabled) {
+        this.meminfo = meminfo;
+        this.hugepagesDir = hugepagesDir;
+        Map<String, Long> info = readMeminfo(meminfo);
+        this.probed = info.containsKey("HugePages_Total") && info.containsKey("Hugepagesize");
+        this.pageSize = info.getOrDefault("Hugepagesize", 0L) * 1024;
+        this.totalPages = info.getOrDefault("HugePages_Total", 0L);
+        this.transparentHugePages = readTransparentMode(thpEnabled);
+        for (Structure structure : Structure.values()) {
+            largeCounts.put(structure, new AtomicInteger());
+            normalCounts.put(structure, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Probes the host's large-page configuration.
+     *
+     * @return A new allocator with empty allocation counters.
+     */
+    public static RandomXLargePages probe() {
+        RandomXLargePages pages = new RandomXLargePages(MEMINFO, HUGEPAGES_DIR, THP_ENABLED);
+        log.info("Large pages: {}", pages.describeHost());
+        return pages;
+    }
+
+    /**
+     * Probes from the given files, for tests.
+     */
+    static RandomXLargePages probe(Path meminfo, Path hugepagesDir, Path thpEnabled) {
+        return new RandomXLargePages(meminfo, hugepagesDir, thpEnabled);
+    }
+
+    /**
+     * Bytes of explicit hugepages of the default size currently free. librandomx allocates with the default
+     * hugepage size, so pages reserved in other sizes cannot serve its allocations and are not counted.
+     *
+     * @return Free bytes, or -1 if the host does not report hugepages.
+     */
+    public long getFreeBytes() {
+        if (!probed) {
+            return -1;
+        }
+        Path free = hugepagesDir.resolve("hugepages-" + pageSize / 1024 + "kB").resolve("free_hugepages");
+        try {
+            return pageSize * Long.parseLong(Files.readString(free).trim());
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read {}: {}", free, e.toString());
+        }
+        return readMeminfo(meminfo).getOrDefault("HugePages_Free", 0L) * pageSize;
+    }
+
+    /**
+     * Allocates a cache, on large pages if possible.
+     *
+     * @param flags Cache flags; {@link RandomXFlag#LARGE_PAGES} is managed by this method.
+     * @return The allocated cache; its {@link RandomXCache#getFlags()} show whether large pages are in use.
+     * @throws RuntimeException if allocation fails even with normal pages.
+     * @throws IllegalStateException if the native memory budget does not allow the allocation.
+     */
+    public RandomXCache allocateCache(Set<RandomXFlag> flags) {
+        return allocate(Structure.CACHE, flags, RandomXCache.MEMORY_BYTES, RandomXCache::new);
+    }
+
+    /**
+     * Allocates a dataset, on large pages if possible.
+     *
+     * @param flags Dataset flags; {@link RandomXFlag#LARGE_PAGES} is managed by this method.
+     * @return The allocated dataset; its {@link RandomXDataset#getFlags()} show whether large pages are in use.
+     * @throws RuntimeException if allocation fails even with normal pages.
+     * @throws IllegalStateException if the native memory budget does not allow the allocation.
+     */
+    public RandomXDataset allocateDataset(Set<RandomXFlag> flags) {
+        return allocate(Structure.DATASET, flags, RandomXDataset.getItemCount() * RandomXDataset.ITEM_SIZE,
+                RandomXDataset::new);
+    }
+
+    /**
+     * Creates a VM whose scratchpad is on large pages if possible.
+     *
+     * @param flags   VM flags; {@link RandomXFlag#LARGE_PAGES} is managed by this method.
+     * @param cache   The cache to use.
+     * @param dataset The dataset to use, or null for light mode.
+     * @return The VM; its {@link RandomXVM#getFlags()} show whether large pages are in use.
+     * @throws RuntimeException if creation fails even with normal pages.
+     * @throws IllegalStateException if the native memory budget does not allow the allocation.
+     */
+    public RandomXVM createVM(Set<RandomXFlag> flags, RandomXCache cache, RandomXDataset dataset) {
+        return allocate(Structure.VM, flags, RandomXVM.SCRATCHPAD_BYTES, vmFlags -> new RandomXVM(vmFlags, cache, dataset));
+    }
+
+    private <T> T allocate(Structure structure, Set<RandomXFlag> flags, long bytes, Function<Set<RandomXFlag>, T> allocator) {
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+        Set<RandomXFlag> normal = EnumSet.copyOf(flags);
+        normal.remove(RandomXFlag.LARGE_PAGES);
+        long free = getFreeBytes();
+        if (free < 0 || free >= bytes) {
+            Set<RandomXFlag> large = EnumSet.copyOf(normal);
+            large.add(RandomXFlag.LARGE_PAGES);
+            try {
+                T result = allocator.apply(large);
+                largeCounts.get(structure).incrementAndGet();
+                return result;
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // The native memory budget, an interrupt or bad arguments: normal pages would fail the same way.
+                throw e;
+            } catch (RuntimeException e) {
+                log.warn("Large-page allocation of {} failed; falling back to normal pages.", structure, e);
+            }
+        } else {
+            log.debug("Not enough free hugepages for {} ({} bytes needed, {} free). Using normal pages.",
+                    structure, bytes, free);
+        }
+        T result = allocator.apply(normal);
+        normalCounts.get(structure).incrementAndGet();
+        return result;
+    }
+
+    /**
+     * @param structure The structure.
+     * @return Number of allocations of the structure made on large pages.
+     */
+    public int getLargePageCount(Structure structure) {
+        return largeCounts.get(structure).get();
+    }
+
+    /**
+     * @param structure The structure.
+     * @return Number of allocations of the structure that fell back to normal pages.
+     */
+    public int getNormalPageCount(Structure structure) {
+        return normalCounts.get(structure).get();
+    }
+
+    /**
+     * @param structure The structure.
+     * @return true if the structure was allocated at least once and always on large pages.
+     */
+    public boolean isLargePages(Structure structure) {
+        return getLargePageCount(structure) > 0 && getNormalPageCount(structure) == 0;
+    }
+
+    /**
+     * Summarizes the host configuration and where each structure was allocated, for example
+     * {@code hugepages 1024 x 2048 kB, THP madvise; cache=large, dataset=normal, vm=3/4 large}.
+     *
+     * @return The report.
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder(describeHost()).append(';');
+        for (Structure structure : Structure.values()) {
+            int large = getLargePageCount(structure);
+            int total = large + getNormalPageCount(structure);
+            builder.append(structure == Structure.CACHE ? " " : ", ").append(structure.name().toLowerCase()).append('=');
+            if (total == 0) {
+                builder.append("none");
+            } else if (large == total) {
+                builder.append(total == 1 ? "large" : "all " + total + " large");
+            } else if (large == 0) {
+                builder.append(total == 1 ? "normal" : "all " + total + " normal");
+            } else {
+                builder.append(large).append('/').append(total).append(" large");
+            }
+        }
+        return builder.toString();
+    }
+
+    private String describeHost() {
+        String host = probed
+                ? String.format("hugepages %d x %d kB, %d bytes free", totalPages, pageSize / 1024, getFreeBytes())
+                : "hugepages unknown";
+        return host + ", THP " + (transparentHugePages != null ? transparentHugePages : "unknown");
+    }
+
+    /**
+     * Reads the numeric fields of a meminfo file, with sizes in kB as written by the kernel.
+     */
+    private static Map<String, Long> readMeminfo(Path file) {
+        Map<String, Long> values = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(file)) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    String[] value = line.substring(colon + 1).trim().split("\\s+");
+                    try {
+                        values.put(line.substring(0, colon).trim(), Long.parseLong(value[0]));
+                    } catch (NumberFormatException e) {
+                        // Not a numeric field.
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Could not read {}: {}", file, e.toString());
+        }
+        return values;
+    }
+
+    /**
+     * Extracts the bracketed mode from a setting such as {@code always [madvise] never}.
+     */
+    private static String readTransparentMode(Path file) {
+        try {
+            String setting = Files.readString(file);
+            int open = setting.indexOf('[');
+            int close = setting.indexOf(']', open + 1);
+            return open >= 0 && close > open ? setting.substring(open + 1, close) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
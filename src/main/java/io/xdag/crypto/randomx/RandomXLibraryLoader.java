@@ -29,6 +29,8 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -41,6 +43,7 @@ final class RandomXLibraryLoader {
 
     private static boolean isLoaded = false;
     private static String loadedLibraryPath = null; // Store the path of the loaded library for logging
+    private static byte[] libraryFingerprint = null; // SHA-256 of the loaded library, computed on demand
 
     // Private constructor to prevent instantiation
     private RandomXLibraryLoader() {}
@@ -92,6 +95,32 @@ final class RandomXLibraryLoader {
         }
     }
 
+    /**
+     * Returns the SHA-256 digest of the native library file, loading the library first if no native class has
+     * done so yet. Used to tag persisted native state so that it is only reused with the exact library build
+     * that produced it.
+     *
+     * @return A copy of the 32-byte digest.
+     * @throws IllegalStateException if the library cannot be loaded or read.
+     */
+    static synchronized byte[] getLibraryFingerprint() {
+        if (libraryFingerprint == null) {
+            if (!isLoaded) {
+                try {
+                    load();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Failed to load native library.", e);
+                }
+            }
+            try {
+                libraryFingerprint = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(Path.of(loadedLibraryPath)));
+            } catch (IOException | NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Failed to fingerprint native library: " + loadedLibraryPath, e);
+            }
+        }
+        return libraryFingerprint.clone();
+    }
+
     /**
      * Logs current JNA and Java library paths for diagnostic purposes.
      */
@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+/**
+ * Holds the process-wide {@link RandomXMetricsListener}. Until one is installed, measurements go to a
+ * no-op listener, which costs a volatile read and an empty call per event.
+ */
+public final class RandomXMetrics {
+
+    private static final RandomXMetricsListener NOOP = new RandomXMetricsListener() {};
+
+    private static volatile RandomXMetricsListener listener = NOOP;
+
+    private RandomXMetrics() {}
+
+    /**
+     * Installs the listener receiving all measurements from now on, replacing any previous one.
+     *
+     * @param newListener The listener, or null to stop reporting.
+     */
+    public static void install(RandomXMetricsListener newListener) {
+        listener = newListener != null ? newListener : NOOP;
+    }
+
+    /**
+     * @return The installed listener, never null.
+     */
+    public static RandomXMetricsListener listener() {
+        return listener;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+/**
+ * Receives measurements from the library. Install an implementation with {@link RandomXMetrics#install}.
+ * <p>
+ * Callbacks run inline on hashing, initialization and pool threads, so implementations must be thread-safe,
+ * non-blocking and cheap: striped counters such as {@link java.util.concurrent.atomic.LongAdder}, no locks.
+ * Every method has an empty default, so implementations override only what they report.
+ */
+public interface RandomXMetricsListener {
+
+    /** Kinds of native memory the library allocates. */
+    enum Resource {
+        CACHE, DATASET, VM
+    }
+
+    /**
+     * Hashes completed by a VM.
+     *
+     * @param vmId  {@link RandomXVM#getId()} of the VM.
+     * @param count Number of hashes, more than one for batches.
+     * @param nanos Wall time for all of them.
+     */
+    default void hashesComputed(long vmId, long count, long nanos) {}
+
+    /**
+     * A cache was initialized with a key.
+     *
+     * @param nanos Initialization time.
+     */
+    default void cacheInitialized(long nanos) {}
+
+    /**
+     * A dataset initialization completed.
+     *
+     * @param nanos Initialization time.
+     */
+    default void datasetInitialized(long nanos) {}
+
+    /**
+     * A key change completed.
+     *
+     * @param stallNanos Time hashing was blocked by the change.
+     */
+    default void keyChanged(long stallNanos) {}
+
+    /**
+     * A VM was created.
+     *
+     * @param vmId {@link RandomXVM#getId()} of the VM.
+     */
+    default void vmCreated(long vmId) {}
+
+    /**
+     * A VM was destroyed.
+     *
+     * @param vmId {@link RandomXVM#getId()} of the VM.
+     */
+    default void vmDestroyed(long vmId) {}
+
+    /**
+     * Native memory was allocated (positive delta) or released (negative delta).
+     *
+     * @param resource   What the memory is for.
+     * @param deltaBytes Change in bytes.
+     */
+    default void nativeMemoryChanged(Resource resource, long deltaBytes) {}
+
+    /**
+     * A caller obtained a VM from a {@link RandomXVMPool}.
+     *
+     * @param nanos Time spent waiting for it.
+     */
+    default void poolWaited(long nanos) {}
+}
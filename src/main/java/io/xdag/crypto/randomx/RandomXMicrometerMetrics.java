@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes library measurements to a Micrometer {@link MeterRegistry}.
+ * <p>
+ * Micrometer is an optional dependency: applications that use this adapter must have
+ * {@code io.micrometer:micrometer-core} on their class path; nothing else in the library references it.
+ * Meters, all prefixed {@code randomx.}:
+ * <ul>
+ *   <li>{@code hashes} counter, {@code vm.hashes} counter tagged by {@code vm}, and {@code hash} timer with percentile
+ *       histogram. The timer records one sample per reported batch, at the batch's average per-hash latency, so
+ *       its count is the number of batches and reporting a large batch costs a single update;</li>
+ *   <li>{@code cache.init}, {@code dataset.init}, {@code key.change.stall} and {@code pool.wait} timers;</li>
+ *   <li>{@code vm.created} and {@code vm.destroyed} counters;</li>
+ *   <li>{@code native.memory} gauge in bytes, tagged by {@code resource}.</li>
+ * </ul>
+ * Hash rates are derived by the backend from the counters.
+ */
+public class RandomXMicrometerMetrics implements RandomXMetricsListener {
+
+    private final MeterRegistry registry;
+    private final LongAdder hashes = new LongAdder();
+    private final Timer hash;
+    private final Timer cacheInit;
+    private final Timer datasetInit;
+    private final Timer keyChangeStall;
+    private final Timer poolWait;
+    private final Counter vmCreated;
+    private final Counter vmDestroyed;
+    private final Map<Long, Counter> vmHashes = new ConcurrentHashMap<>();
+    private final Map<Resource, AtomicLong> nativeMemory = new EnumMap<>(Resource.class);
+
+    /**
+     * Registers the meters. Install the result with {@link RandomXMetrics#install}.
+     *
+     * @param registry The registry to publish to.
+     * @throws IllegalArgumentException if registry is null.
+     */
+    public RandomXMicrometerMetrics(MeterRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Meter registry cannot be null.");
+        }
+        this.registry = registry;
+        FunctionCounter.builder("randomx.hashes", hashes, LongAdder::sum).description("RandomX hashes computed")
+                .register(registry);
+        this.hash = Timer.builder("randomx.hash").description("RandomX hash latency")
+                .publishPercentileHistogram().register(registry);
+        this.cacheInit = Timer.builder("randomx.cache.init").description("Cache initialization time").register(registry);
+        this.datasetInit = Timer.builder("randomx.dataset.init").description("Dataset initialization time").register(registry);
+        this.keyChangeStall = Timer.builder("randomx.key.change.stall").description("Time blocked by key changes")
+                .register(registry);
+        this.poolWait = Timer.builder("randomx.pool.wait").description("Time waiting for a pooled VM").register(registry);
+        this.vmCreated = Counter.builder("randomx.vm.created").register(registry);
+        this.vmDestroyed = Counter.builder("randomx.vm.destroyed").register(registry);
+        for (Resource resource : Resource.values()) {
+            AtomicLong bytes = new AtomicLong();
+            nativeMemory.put(resource, bytes);
+            Gauge.builder("randomx.native.memory", bytes, AtomicLong::get).baseUnit("bytes")
+                    .tag("resource", resource.name().toLowerCase()).register(registry);
+        }
+    }
+
+    @Override
+    public void hashesComputed(long vmId, long count, long nanos) {
+        if (count <= 0) {
+            return;
+        }
+        hashes.add(count);
+        hash.record(nanos / count, TimeUnit.NANOSECONDS);
+        Counter counter = vmHashes.get(vmId);
+        if (counter != null) {
+            counter.increment(count);
+        }
+    }
+
+    @Override
+    public void cacheInitialized(long nanos) {
+        cacheInit.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void datasetInitialized(long nanos) {
+        datasetInit.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void keyChanged(long stallNanos) {
+        keyChangeStall.record(stallNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void vmCreated(long vmId) {
+        vmCreated.increment();
+        vmHashes.put(vmId, Counter.builder("randomx.vm.hashes").tag("vm", Long.toString(vmId)).register(registry));
+    }
+
+    @Override
+    public void vmDestroyed(long vmId) {
+        vmDestroyed.increment();
+        Counter counter = vmHashes.remove(vmId);
+        if (counter != null) {
+            registry.remove(counter);
+        }
+    }
+
+    @Override
+    public void nativeMemoryChanged(Resource resource, long deltaBytes) {
+        nativeMemory.get(resource).addAndGet(deltaBytes);
+    }
+
+    @Override
+    public void poolWaited(long nanos) {
+        poolWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
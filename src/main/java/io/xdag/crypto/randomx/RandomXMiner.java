@@ -0,0 +1,235 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import com.sun.jna.Memory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Single-threaded nonce search over a block template.
+ * <p>
+ * The template is copied once into a native buffer owned by the miner. For every nonce only the nonce
+ * bytes are patched in place, the hashes are pipelined through
+ * {@code randomx_calculate_hash_first/next/last}, and each hash is compared against the target while
+ * it is still in native memory. Only winning hashes are copied to the Java heap.
+ * <p>
+ * The miner should be given a VM created with {@link RandomXFlag#FULL_MEM} and an initialized dataset;
+ * light-mode VMs work but are much slower. Like {@link RandomXVM}, a miner is not thread-safe.
+ */
+@Slf4j
+public class RandomXMiner implements AutoCloseable {
+
+    /** The VM used for hashing. Its lifecycle is managed by the caller. */
+    @Getter
+    private final RandomXVM vm;
+
+    /** Native copy of the current block template; only the nonce bytes change between hashes. */
+    private Memory templateBuffer;
+    private ByteBuffer templateView;
+    private int templateLength;
+
+    /** Offset of the nonce within the template. */
+    @Getter
+    private int nonceOffset;
+
+    /** Width of the nonce in bytes (1 to 8), written little-endian. */
+    @Getter
+    private int nonceWidth;
+
+    /** Native buffer receiving each hash, and a little-endian view of it used for target comparison. */
+    private final Memory hashBuffer;
+    private final ByteBuffer hashView;
+
+    /** Total number of hashes computed by this miner. */
+    @Getter
+    private long hashCount;
+
+    /**
+     * Creates a miner hashing with the given VM.
+     *
+     * @param vm The VM to hash with. It is not closed by {@link #close()}.
+     * @throws IllegalArgumentException if vm is null.
+     */
+    public RandomXMiner(RandomXVM vm) {
+        if (vm == null) {
+            throw new IllegalArgumentException("VM cannot be null.");
+        }
+        if (vm.getDataset() == null) {
+            log.warn("RandomXMiner created with a light-mode VM. Hashing will be significantly slower than with a dataset.");
+        }
+        this.vm = vm;
+        this.hashBuffer = new Memory(RandomXUtils.RANDOMX_HASH_SIZE);
+        this.hashView = hashBuffer.getByteBuffer(0, RandomXUtils.RANDOMX_HASH_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Loads a block template into the miner's native buffer.
+     *
+     * @param template    The block template.
+     * @param nonceOffset Offset of the nonce within the template.
+     * @param nonceWidth  Width of the nonce in bytes, between 1 and 8.
+     * @throws IllegalArgumentException if template is null or the nonce does not fit within it.
+     */
+    public void setTemplate(byte[] template, int nonceOffset, int nonceWidth) {
+        if (template == null) {
+            throw new IllegalArgumentException("Template cannot be null.");
+        }
+        if (nonceWidth < 1 || nonceWidth > Long.BYTES) {
+            throw new IllegalArgumentException("Nonce width must be between 1 and 8 bytes.");
+        }
+        if (nonceOffset < 0 || nonceOffset > template.length - nonceWidth) {
+            throw new IllegalArgumentException("Nonce at offset " + nonceOffset + " with width " + nonceWidth
+                    + " does not fit in a template of " + template.length + " bytes.");
+        }
+        if (templateBuffer == null || templateBuffer.size() < template.length) {
+            if (templateBuffer != null) {
+                templateBuffer.close();
+            }
+            templateBuffer = new Memory(Math.max(template.length, RandomXVM.DEFAULT_INPUT_CAPACITY));
+            templateView = templateBuffer.getByteBuffer(0, templateBuffer.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        templateBuffer.write(0, template, 0, template.length);
+        this.templateLength = template.length;
+        this.nonceOffset = nonceOffset;
+        this.nonceWidth = nonceWidth;
+    }
+
+    /**
+     * Loads a template and searches a contiguous nonce range for hashes meeting the target.
+     *
+     * @param template    The block template.
+     * @param nonceOffset Offset of the nonce within the template.
+     * @param nonceWidth  Width of the nonce in bytes, between 1 and 8.
+     * @param startNonce  First nonce to try.
+     * @param nonceCount  Number of nonces to try.
+     * @param target      The target hashes must meet.
+     * @return The winning nonces and their hashes, in nonce order.
+     */
+    public List<MiningResult> mine(byte[] template, int nonceOffset, int nonceWidth,
+                                   long startNonce, long nonceCount, RandomXTarget target) {
+        setTemplate(template, nonceOffset, nonceWidth);
+        List<MiningResult> results = new ArrayList<>();
+        mine(startNonce, nonceCount, 1, target, results::add);
+        return results;
+    }
+
+    /**
+     * Searches the nonces {@code startNonce + i * nonceStep} for {@code 0 <= i < nonceCount} in the
+     * current template, reporting every hash that meets the target to {@code sink}.
+     *
+     * @param startNonce First nonce to try.
+     * @param nonceCount Number of nonces to try.
+     * @param nonceStep  Distance between consecutive nonces; must be positive.
+     * @param target     The target hashes must meet.
+     * @param sink       Receives winning results, in nonce order.
+     * @return The number of hashes computed.
+     * @throws IllegalStateException if no template has been loaded.
+     * @throws IllegalArgumentException if the nonce range does not fit in the nonce width.
+     */
+    public long mine(long startNonce, long nonceCount, long nonceStep, RandomXTarget target, Consumer<MiningResult> sink) {
+        if (templateBuffer == null) {
+            throw new IllegalStateException("No template loaded. Call setTemplate() first.");
+        }
+        Objects.requireNonNull(target, "Target cannot be null.");
+        Objects.requireNonNull(sink, "Sink cannot be null.");
+        if (nonceCount < 0 || nonceStep <= 0) {
+            throw new IllegalArgumentException("Nonce count must not be negative and nonce step must be positive.");
+        }
+        if (nonceCount == 0) {
+            return 0;
+        }
+        long lastNonce;
+        try {
+            lastNonce = startNonce + Math.multiplyExact(nonceCount - 1, nonceStep);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Nonce range of " + nonceCount + " nonces with step " + nonceStep
+                    + " does not fit in 64 bits.", e);
+        }
+        // Nonces are unsigned, so the range wraps if the last nonce is below the first.
+        if (Long.compareUnsigned(lastNonce, startNonce) < 0
+                || nonceWidth < Long.BYTES && ((startNonce | lastNonce) >>> (nonceWidth * 8)) != 0) {
+            throw new IllegalArgumentException("Nonce range [" + Long.toUnsignedString(startNonce) + ", "
+                    + Long.toUnsignedString(lastNonce) + "] does not fit in " + nonceWidth + " bytes.");
+        }
+
+        // hash_next(nonce i) completes the hash of nonce i - 1; hash_last completes the final nonce.
+        long start = System.nanoTime();
+        long nonce = startNonce;
+        putNonce(nonce);
+        RandomXNative.randomx_calculate_hash_first(vm.getVmPointer(), templateBuffer, templateLength);
+        for (long i = 1; i < nonceCount; i++) {
+            long previous = nonce;
+            nonce += nonceStep;
+            putNonce(nonce);
+            RandomXNative.randomx_calculate_hash_next(vm.getVmPointer(), templateBuffer, templateLength, hashBuffer);
+            check(previous, target, sink);
+        }
+        RandomXNative.randomx_calculate_hash_last(vm.getVmPointer(), hashBuffer);
+        check(nonce, target, sink);
+
+        hashCount += nonceCount;
+        RandomXMetrics.listener().hashesComputed(vm.getId(), nonceCount, System.nanoTime() - start);
+        return nonceCount;
+    }
+
+    private void putNonce(long nonce) {
+        switch (nonceWidth) {
+            case Integer.BYTES -> templateView.putInt(nonceOffset, (int) nonce);
+            case Long.BYTES -> templateView.putLong(nonceOffset, nonce);
+            default -> {
+                for (int i = 0; i < nonceWidth; i++) {
+                    templateView.put(nonceOffset + i, (byte) (nonce >>> (8 * i)));
+                }
+            }
+        }
+    }
+
+    private void check(long nonce, RandomXTarget target, Consumer<MiningResult> sink) {
+        if (target.isMetBy(hashView, 0)) {
+            byte[] hash = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+            hashView.get(0, hash);
+            sink.accept(new MiningResult(nonce, hash));
+        }
+    }
+
+    /**
+     * Releases the miner's native buffers. The VM is not closed.
+     */
+    @Override
+    public void close() {
+        if (templateBuffer != null) {
+            templateBuffer.close();
+            templateBuffer = null;
+        }
+        hashBuffer.close();
+    }
+}
@@ -0,0 +1,712 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Multi-threaded RandomX mining engine.
+ * <p>
+ * The engine owns one shared dataset and one {@link RandomXVM} plus {@link RandomXMiner} per worker thread.
+ * The nonce space of the current job is partitioned across workers, either interleaved
+ * ({@link NoncePartitioning#STRIDE}) or as one contiguous chunk per worker ({@link NoncePartitioning#CONTIGUOUS}).
+ * <p>
+ * Jobs are published through a single volatile reference: {@link #submitJob(MiningJob)} is the only writer,
+ * and workers read the reference between batches without locking, so a new template reaches every worker
+ * within one batch and VMs are never recreated. Results found for a job that has since been replaced are
+ * discarded; every delivered result carries its job id so consumers can re-check it with {@link #isCurrentJob(String)}.
+ * <p>
+ * A job whose seed differs from the current one triggers a coordinated key switch: the submitter builds the
+ * new cache and dataset, then publishes them together with the job. Each worker rebinds its own VM when it
+ * picks the job up, and the old cache and dataset are released once the last worker has moved off them.
+ * When the next seed is known ahead of time, {@link #prepareSeed(byte[])} builds its key material in the
+ * background so that the switch itself costs only the VM rebinding.
+ * <p>
+ * In NUMA-aware mode on a multi-node Linux host, the engine builds one dataset replica per NUMA node, each
+ * initialized by threads pinned to that node so the kernel's first-touch policy places its pages in local
+ * memory. Workers are spread round-robin across nodes, pinned to their node's CPUs and bound to its replica,
+ * so dataset reads never cross the interconnect. This costs one dataset (about 2 GiB) per node; on a
+ * single-node host the mode falls back to one shared dataset.
+ */
+@Slf4j
+public class RandomXMiningEngine implements AutoCloseable {
+
+    /** How the nonce space of a job is divided between worker threads. */
+    public enum NoncePartitioning {
+        /** Worker {@code i} of {@code n} tries nonces {@code i, i + n, i + 2n, ...}. */
+        STRIDE,
+        /** Worker {@code i} of {@code n} tries the {@code i}-th contiguous {@code 1/n} of the nonce space. */
+        CONTIGUOUS
+    }
+
+    /** Default number of nonces a worker hashes between checks for a new job. */
+    static final int DEFAULT_BATCH_SIZE = 16;
+
+    /** Flags used for caches, datasets and VMs; includes FULL_MEM unless running in light mode. */
+    @Getter
+    private final Set<RandomXFlag> flags;
+
+    private final boolean lightMode;
+
+    @Getter
+    private final int threadCount;
+
+    @Getter
+    private final NoncePartitioning partitioning;
+
+    @Getter
+    private final int batchSize;
+
+    /** Whether workers try to pin themselves to a CPU (Linux only, best effort). */
+    @Getter
+    private final boolean cpuAffinity;
+
+    /** Node layout when per-node dataset replicas are in use, otherwise null. */
+    private final RandomXNumaTopology numaTopology;
+
+    private final Consumer<MiningResult> resultListener;
+
+    private final List<Worker> workers;
+
+    /** The job workers are mining, with the key material it needs. Written only by {@link #submitJob(MiningJob)}. */
+    private volatile Published published;
+
+    /** Key material of the latest published job; guarded by {@code this}. */
+    private Epoch currentEpoch;
+
+    /** Key material being built in the background for an upcoming seed, or null; guarded by {@code this}. */
+    private PendingEpoch pendingEpoch;
+
+    private volatile boolean running;
+
+    /** Set by the first {@link #close()}; guarded by {@code this}. */
+    private boolean closed;
+
+    /**
+     * Creates a mining engine. Worker threads are started by {@link #start()}.
+     *
+     * @param flags          Base RandomX flags.
+     * @param cache          Initialized cache for the initial key. Managed by the caller.
+     * @param dataset        Initialized dataset for the initial key, or null to have the engine build (and own) one.
+     *                       Not used when per-node replicas are built in NUMA-aware mode.
+     * @param seed           The key {@code cache} was initialized with, or null if unknown. Jobs carrying a seed
+     *                       trigger a key switch unless it equals this value.
+     * @param lightMode      If true, workers hash with light VMs on the cache and no dataset is used.
+     * @param threadCount    Number of workers; values below 1 default to the number of available processors.
+     * @param partitioning   Nonce partitioning scheme; defaults to {@link NoncePartitioning#STRIDE}.
+     * @param batchSize      Nonces hashed between job checks; values below 1 default to {@value #DEFAULT_BATCH_SIZE}.
+     * @param cpuAffinity    Whether worker {@code i} should be pinned to CPU {@code i}.
+     * @param numaAware      Whether to build one dataset replica per NUMA node and keep workers node-local.
+     * @param resultListener Receives winning results; invoked from worker threads.
+     */
+    @Builder
+    public RandomXMiningEngine(Set<RandomXFlag> flags, RandomXCache cache, RandomXDataset dataset, byte[] seed,
+                               boolean lightMode, int threadCount, NoncePartitioning partitioning, int batchSize,
+                               boolean cpuAffinity, boolean numaAware, Consumer<MiningResult> resultListener) {
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+        if (cache == null) {
+            throw new IllegalArgumentException("Cache cannot be null.");
+        }
+        if (resultListener == null) {
+            throw new IllegalArgumentException("Result listener cannot be null.");
+        }
+        Set<RandomXFlag> vmFlags = EnumSet.copyOf(flags);
+        if (lightMode) {
+            vmFlags.remove(RandomXFlag.FULL_MEM);
+        } else {
+            vmFlags.add(RandomXFlag.FULL_MEM);
+        }
+        this.flags = vmFlags;
+        this.lightMode = lightMode;
+        this.threadCount = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        this.partitioning = partitioning != null ? partitioning : NoncePartitioning.STRIDE;
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.cpuAffinity = cpuAffinity;
+        this.resultListener = resultListener;
+
+        RandomXNumaTopology topology = numaAware && !lightMode ? RandomXNumaTopology.detect() : null;
+        if (topology != null && !topology.isMultiNode()) {
+            log.info("NUMA-aware mode requested but only one NUMA node is available. Using a single dataset.");
+            topology = null;
+        }
+        this.numaTopology = topology;
+
+        RandomXDataset[] datasets = null;
+        boolean ownsDataset = false;
+        if (numaTopology != null) {
+            if (dataset != null) {
+                log.info("NUMA-aware mode builds per-node dataset replicas. The supplied dataset is not used.");
+            }
+            datasets = buildDatasets(cache);
+            ownsDataset = true;
+        } else if (!lightMode) {
+            if (dataset == null) {
+                log.info("No dataset supplied to mining engine. Creating and initializing one.");
+                dataset = new RandomXDataset(vmFlags);
+                dataset.init(cache);
+                ownsDataset = true;
+            }
+            datasets = new RandomXDataset[] {dataset};
+        }
+
+        // One reference for the engine plus one per worker.
+        this.currentEpoch = new Epoch(seed != null ? seed.clone() : null, cache, false, datasets, ownsDataset, 1 + this.threadCount);
+        this.published = new Published(null, currentEpoch);
+
+        this.workers = new ArrayList<>(this.threadCount);
+        try {
+            for (int i = 0; i < this.threadCount; i++) {
+                int node = numaTopology != null ? i % numaTopology.getNodeCount() : 0;
+                workers.add(new Worker(i, node, new RandomXVM(vmFlags, cache, currentEpoch.dataset(node)), currentEpoch));
+            }
+        } catch (RuntimeException e) {
+            workers.forEach(Worker::release);
+            currentEpoch.release(1 + this.threadCount - workers.size());
+            throw e;
+        }
+        log.info("RandomX mining engine created with {} workers ({} partitioning, batch size {}, flags {}).",
+                this.threadCount, this.partitioning, this.batchSize, vmFlags);
+    }
+
+    /**
+     * Starts the worker threads. Workers idle until a job is submitted.
+     *
+     * @throws IllegalStateException if the engine is already running or has been closed.
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Mining engine is closed.");
+        }
+        if (running) {
+            throw new IllegalStateException("Mining engine is already running.");
+        }
+        running = true;
+        for (Worker worker : workers) {
+            Thread thread = new Thread(worker, "RandomX-Miner-" + worker.index);
+            thread.setDaemon(true);
+            worker.thread = thread;
+            thread.start();
+        }
+        log.info("RandomX mining engine started.");
+    }
+
+    /**
+     * Publishes a new job. Workers switch to it after finishing their current batch; results found for the
+     * previous job after this call are discarded.
+     * <p>
+     * If the job carries a seed different from the current one, the new cache and (unless in light mode)
+     * dataset are built before the job is published; workers keep mining the previous job meanwhile.
+     * Calls are serialized; workers never block on them.
+     *
+     * @param job The job to mine.
+     * @throws IllegalArgumentException if job is null.
+     */
+    public synchronized void submitJob(MiningJob job) {
+        if (job == null) {
+            throw new IllegalArgumentException("Job cannot be null.");
+        }
+        Epoch epoch = currentEpoch;
+        if (job.requiresSeed(epoch.seed)) {
+            epoch = takePreparedEpoch(job.seed());
+            if (epoch == null) {
+                log.info("Job {} requires a new RandomX key {}. Building key material before switching workers.",
+                        job.getJobId(), HexFormat.of().formatHex(job.seed()));
+                epoch = buildEpoch(job.seed());
+            }
+        }
+        this.published = new Published(job, epoch);
+        if (epoch != currentEpoch) {
+            // Workers holding the old epoch still reference it; it is freed when the last of them moves on.
+            Epoch previous = currentEpoch;
+            currentEpoch = epoch;
+            previous.release(1);
+        }
+        workers.forEach(worker -> LockSupport.unpark(worker.thread));
+        log.debug("Published mining job {}.", job.getJobId());
+    }
+
+    /**
+     * Starts building the cache and dataset for an upcoming seed in the background while workers keep mining
+     * with the current key. A later job carrying this seed waits for the preparation if necessary and then
+     * switches workers over without rebuilding. Preparing a different seed discards the earlier preparation.
+     * <p>
+     * While the preparation is pending, key material for both seeds is allocated.
+     *
+     * @param seed The upcoming seed.
+     * @return A future completing when the key material is ready.
+     * @throws IllegalArgumentException if the seed is null or empty.
+     */
+    public synchronized CompletableFuture<Void> prepareSeed(byte[] seed) {
+        if (seed == null || seed.length == 0) {
+            throw new IllegalArgumentException("Seed cannot be null or empty.");
+        }
+        if (Arrays.equals(seed, currentEpoch.seed)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (pendingEpoch != null) {
+            if (Arrays.equals(pendingEpoch.seed, seed)) {
+                return pendingEpoch.future.thenApply(epoch -> null);
+            }
+            pendingEpoch.discard();
+        }
+        byte[] copy = seed.clone();
+        CompletableFuture<Epoch> future = CompletableFuture.supplyAsync(() -> buildEpoch(copy), task -> {
+            Thread thread = new Thread(task, "RandomX-Key-Prepare");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        pendingEpoch = new PendingEpoch(copy, future);
+        log.info("Preparing RandomX key material for seed {} in the background.", HexFormat.of().formatHex(seed));
+        return future.thenApply(epoch -> null);
+    }
+
+    /**
+     * Returns the prepared key material for {@code seed}, waiting for it if necessary, or null if none was
+     * prepared or the preparation failed. Any preparation for another seed is discarded.
+     */
+    private Epoch takePreparedEpoch(byte[] seed) {
+        PendingEpoch pending = pendingEpoch;
+        pendingEpoch = null;
+        if (pending == null) {
+            return null;
+        }
+        if (!Arrays.equals(pending.seed, seed)) {
+            pending.discard();
+            return null;
+        }
+        try {
+            return pending.future.join();
+        } catch (CompletionException | CancellationException e) {
+            log.warn("Background key preparation failed. Building key material synchronously.", e);
+            return null;
+        }
+    }
+
+    private Epoch buildEpoch(byte[] seed) {
+        RandomXCache cache = new RandomXCache(flags);
+        RandomXDataset[] datasets = null;
+        try {
+            cache.init(seed);
+            if (numaTopology != null) {
+                datasets = buildDatasets(cache);
+            } else if (!lightMode) {
+                RandomXDataset dataset = new RandomXDataset(flags);
+                datasets = new RandomXDataset[] {dataset};
+                dataset.init(cache);
+            }
+        } catch (RuntimeException e) {
+            if (datasets != null) {
+                Arrays.stream(datasets).forEach(RandomXDataset::close);
+            }
+            cache.close();
+            throw e;
+        }
+        return new Epoch(seed.clone(), cache, true, datasets, datasets != null, 1);
+    }
+
+    /**
+     * Builds one dataset replica per NUMA node, all nodes in parallel. Each replica is initialized only by
+     * threads pinned to its node, so first-touch page placement puts it in that node's memory.
+     */
+    private RandomXDataset[] buildDatasets(RandomXCache cache) {
+        int nodes = numaTopology.getNodeCount();
+        RandomXDataset[] datasets = new RandomXDataset[nodes];
+        try {
+            List<CompletableFuture<RandomXDataset>> builds = new ArrayList<>(nodes);
+            for (int node = 0; node < nodes; node++) {
+                BitSet cpus = numaTopology.getCpus(node);
+                String name = "RandomX-Dataset-Node" + numaTopology.getNodeId(node);
+                datasets[node] = new RandomXDataset(flags);
+                builds.add(datasets[node].initAsync(cache, task -> {
+                    Thread thread = new Thread(() -> {
+                        if (!RandomXAffinity.bindCurrentThread(cpus)) {
+                            log.warn("Could not bind {} to its NUMA node; replica placement is not guaranteed.", name);
+                        }
+                        task.run();
+                    }, name);
+                    thread.setDaemon(true);
+                    thread.start();
+                }, cpus.cardinality(), null));
+            }
+            builds.forEach(CompletableFuture::join);
+        } catch (RuntimeException e) {
+            for (RandomXDataset dataset : datasets) {
+                if (dataset != null) {
+                    dataset.close();
+                }
+            }
+            throw e instanceof CompletionException && e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause() : e;
+        }
+        log.info("Built {} NUMA-local dataset replicas.", nodes);
+        return datasets;
+    }
+
+    /**
+     * @return true if workers use per-node dataset replicas.
+     */
+    public boolean isNumaAware() {
+        return numaTopology != null;
+    }
+
+    /**
+     * @param jobId A job id.
+     * @return true if {@code jobId} identifies the most recently published job.
+     */
+    public boolean isCurrentJob(String jobId) {
+        MiningJob job = published.job;
+        return job != null && job.getJobId().equals(jobId);
+    }
+
+    /**
+     * @return Total number of hashes computed by all workers.
+     */
+    public long getTotalHashes() {
+        return workers.stream().mapToLong(worker -> worker.hashes.get()).sum();
+    }
+
+    /**
+     * @return Aggregate hashrate in hashes per second, averaged since each worker started mining.
+     */
+    public double getHashrate() {
+        double total = 0;
+        for (double rate : getThreadHashrates()) {
+            total += rate;
+        }
+        return total;
+    }
+
+    /**
+     * @return Per-worker hashrates in hashes per second, averaged since each worker started mining.
+     */
+    public double[] getThreadHashrates() {
+        double[] rates = new double[workers.size()];
+        long now = System.nanoTime();
+        for (int i = 0; i < rates.length; i++) {
+            Worker worker = workers.get(i);
+            long started = worker.startedNanos;
+            long elapsed = now - started;
+            rates[i] = started == 0 || elapsed <= 0 ? 0 : worker.hashes.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        }
+        return rates;
+    }
+
+    /**
+     * Stops the workers and destroys their VMs. Caches and datasets created by the engine are released;
+     * the cache and dataset supplied to the builder are managed by the caller. Calling it again does nothing.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = false;
+        }
+        for (Worker worker : workers) {
+            if (worker.thread != null) {
+                LockSupport.unpark(worker.thread);
+                try {
+                    worker.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while waiting for worker {} to stop.", worker.index);
+                }
+            }
+            worker.release();
+        }
+        synchronized (this) {
+            if (pendingEpoch != null) {
+                pendingEpoch.discard();
+                pendingEpoch = null;
+            }
+            currentEpoch.release(1);
+        }
+        log.info("RandomX mining engine closed after {} hashes.", getTotalHashes());
+    }
+
+    /**
+     * A published job together with the key material it must be mined with.
+     */
+    private static final class Published {
+        final MiningJob job;
+        final Epoch epoch;
+
+        Published(MiningJob job, Epoch epoch) {
+            this.job = job;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Key material being built in the background for a seed.
+     */
+    private static final class PendingEpoch {
+        final byte[] seed;
+        final CompletableFuture<Epoch> future;
+
+        PendingEpoch(byte[] seed, CompletableFuture<Epoch> future) {
+            this.seed = seed;
+            this.future = future;
+        }
+
+        /**
+         * Releases the key material once it has been built.
+         */
+        void discard() {
+            future.thenAccept(epoch -> epoch.release(1));
+        }
+    }
+
+    /**
+     * Reference-counted key material (cache and one dataset per NUMA node) for one seed.
+     * Released resources are closed only if the engine created them.
+     */
+    private static final class Epoch {
+        final byte[] seed;
+        final RandomXCache cache;
+        final boolean ownsCache;
+        /** Dataset replicas indexed by node; a single element without NUMA awareness, null in light mode. */
+        final RandomXDataset[] datasets;
+        final boolean ownsDataset;
+        final AtomicInteger references;
+
+        Epoch(byte[] seed, RandomXCache cache, boolean ownsCache, RandomXDataset[] datasets, boolean ownsDataset, int references) {
+            this.seed = seed;
+            this.cache = cache;
+            this.ownsCache = ownsCache;
+            this.datasets = datasets;
+            this.ownsDataset = ownsDataset;
+            this.references = new AtomicInteger(references);
+        }
+
+        /**
+         * @return The dataset replica for a node, or null in light mode.
+         */
+        RandomXDataset dataset(int node) {
+            return datasets == null ? null : datasets[node];
+        }
+
+        /**
+         * Takes a reference unless the epoch has already been freed.
+         */
+        boolean tryRetain() {
+            for (;;) {
+                int current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(int count) {
+            if (count > 0 && references.addAndGet(-count) == 0) {
+                log.info("Releasing RandomX key material no longer referenced by any worker.");
+                if (ownsDataset) {
+                    Arrays.stream(datasets).forEach(RandomXDataset::close);
+                }
+                if (ownsCache) {
+                    cache.close();
+                }
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+        final int index;
+        /** NUMA node index whose dataset replica this worker uses; 0 without NUMA awareness. */
+        final int node;
+        final RandomXVM vm;
+        final RandomXMiner miner;
+        final AtomicLong hashes = new AtomicLong();
+        volatile long startedNanos;
+        Thread thread;
+        /**
+         * Key material the VM is bound to; only touched by the worker thread after start.
+         * Null once released by a worker that stopped unexpectedly.
+         */
+        Epoch epoch;
+
+        Worker(int index, int node, RandomXVM vm, Epoch epoch) {
+            this.index = index;
+            this.node = node;
+            this.vm = vm;
+            this.miner = new RandomXMiner(vm);
+            this.epoch = epoch;
+        }
+
+        @Override
+        public void run() {
+            if (!bindThread()) {
+                log.debug("CPU affinity not applied for worker {}.", index);
+            }
+            MiningJob current = null;
+            long next = 0;   // next nonce to try
+            long last = 0;   // last nonce in this worker's range (inclusive, unsigned)
+            long step = 1;
+            boolean exhausted = true;
+            startedNanos = System.nanoTime();
+
+            boolean stopped = false;
+            try {
+                while (running) {
+                    Published latest = published;
+                    if (latest.job != current) {
+                        if (latest.epoch != epoch && !switchEpoch(latest.epoch)) {
+                            continue; // Superseded while switching; re-read the latest job.
+                        }
+                        current = latest.job;
+                        if (current == null) {
+                            LockSupport.park(this);
+                            continue;
+                        }
+                        miner.setTemplate(current.template(), current.getNonceOffset(), current.getNonceWidth());
+                        long space = current.nonceSpace();
+                        // Unsigned arithmetic throughout so that a full 64-bit nonce space is handled.
+                        long spaceMinusOne = space == 0 ? -1L : space - 1;
+                        if (partitioning == NoncePartitioning.STRIDE) {
+                            next = index;
+                            step = threadCount;
+                            last = spaceMinusOne;
+                        } else {
+                            long chunk = Long.divideUnsigned(spaceMinusOne, threadCount) + 1;
+                            next = chunk * index;
+                            step = 1;
+                            last = index == threadCount - 1 ? spaceMinusOne : next + chunk - 1;
+                        }
+                        exhausted = Long.compareUnsigned(next, last) > 0;
+                    }
+                    if (exhausted) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+
+                    long remaining = Long.divideUnsigned(last - next, step) + 1;
+                    long count = remaining == 0 || Long.compareUnsigned(remaining, batchSize) > 0 ? batchSize : remaining;
+                    MiningJob batchJob = current;
+                    miner.mine(next, count, step, current.getTarget(), result -> {
+                        // Discard results for a job that has been replaced while the batch was running.
+                        if (published.job == batchJob) {
+                            try {
+                                resultListener.accept(new MiningResult(batchJob.getJobId(), result.getNonce(), result.getHash()));
+                            } catch (Throwable t) {
+                                log.error("Result listener failed for job {} nonce {}.", batchJob.getJobId(),
+                                        Long.toUnsignedString(result.getNonce()), t);
+                            }
+                        }
+                    });
+                    hashes.addAndGet(count);
+                    long advanced = next + count * step;
+                    if (count == remaining || Long.compareUnsigned(advanced, next) < 0) {
+                        exhausted = true;
+                    } else {
+                        next = advanced;
+                    }
+                }
+                stopped = true;
+            } finally {
+                if (!stopped) {
+                    // The exception itself goes to the thread's uncaught exception handler.
+                    log.error("Worker {} stopped unexpectedly; releasing its key material.", index);
+                    epoch.release(1);
+                    epoch = null;
+                }
+            }
+        }
+
+        /**
+         * Pins the worker thread: to its NUMA node's CPUs (or one CPU of that node with {@code cpuAffinity})
+         * in NUMA-aware mode, otherwise to CPU {@code index} if {@code cpuAffinity} is set.
+         *
+         * @return false if pinning was requested but could not be applied.
+         */
+        private boolean bindThread() {
+            if (numaTopology != null) {
+                BitSet cpus = numaTopology.getCpus(node);
+                if (cpuAffinity) {
+                    int slot = (index / numaTopology.getNodeCount()) % cpus.cardinality();
+                    int cpu = cpus.nextSetBit(0);
+                    for (int i = 0; i < slot; i++) {
+                        cpu = cpus.nextSetBit(cpu + 1);
+                    }
+                    return RandomXAffinity.bindCurrentThread(cpu);
+                }
+                return RandomXAffinity.bindCurrentThread(cpus);
+            }
+            return !cpuAffinity || RandomXAffinity.bindCurrentThread(index % Runtime.getRuntime().availableProcessors());
+        }
+
+        /**
+         * Rebinds this worker's VM to new key material and drops its reference to the old one.
+         *
+         * @return false if the new epoch was already freed because an even newer one replaced it.
+         */
+        private boolean switchEpoch(Epoch target) {
+            if (!target.tryRetain()) {
+                return false;
+            }
+            vm.setCache(target.cache);
+            if (target.datasets != null) {
+                vm.setDataset(target.dataset(node));
+            }
+            Epoch previous = epoch;
+            epoch = target;
+            previous.release(1);
+            log.debug("Worker {} switched to new RandomX key material.", index);
+            return true;
+        }
+
+        void release() {
+            miner.close();
+            vm.close();
+            if (epoch != null) {
+                epoch.release(1);
+            }
+        }
+    }
+}
@@ -131,6 +131,15 @@ public class RandomXNative {
      */
     public static native void randomx_init_dataset(Pointer dataset, Pointer cache, NativeLong startItem, NativeLong itemCount);
 
+    /**
+     * Returns a pointer to the internal memory buffer of a dataset.
+     * The buffer holds {@link #randomx_dataset_item_count()} items of {@link RandomXDataset#ITEM_SIZE} bytes each.
+     *
+     * @param dataset Pointer to a dataset allocated by {@link #randomx_alloc_dataset(int)}.
+     * @return A pointer to the dataset memory.
+     */
+    public static native Pointer randomx_get_dataset_memory(Pointer dataset);
+
     /**
      * Releases a RandomX dataset previously allocated by {@link #randomx_alloc_dataset(int)}.
      *
@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import com.sun.jna.Pointer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.Cleaner;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Owns one native RandomX object (cache, dataset or VM) on behalf of its Java wrapper.
+ * <p>
+ * The handle has an atomic closed state, so releasing is idempotent and access after release fails with an
+ * {@link IllegalStateException} instead of touching freed memory. A {@link Cleaner} acts as a safety net: if
+ * the wrapper becomes unreachable without being closed, the native object is freed anyway, counted as a leak
+ * and logged. Capturing the allocation stack trace for that log is sampled (every
+ * {@value #DEFAULT_SAMPLING}th allocation unless {@value #SAMPLING_PROPERTY} says otherwise; 1 records every
+ * allocation, 0 none) to keep allocation cheap.
+ */
+@Slf4j
+final class RandomXNativeHandle {
+
+    /** System property setting how often allocation sites are recorded. */
+    static final String SAMPLING_PROPERTY = "randomx.leakDetection.sampling";
+
+    static final int DEFAULT_SAMPLING = 16;
+
+    private static final int SAMPLING = Integer.getInteger(SAMPLING_PROPERTY, DEFAULT_SAMPLING);
+
+    private static final Cleaner CLEANER = Cleaner.create(runnable -> {
+        Thread thread = new Thread(runnable, "RandomX-Cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final AtomicLong ALLOCATIONS = new AtomicLong();
+
+    private static final Map<RandomXMetricsListener.Resource, LongAdder> LEAKED = new EnumMap<>(RandomXMetricsListener.Resource.class);
+
+    static {
+        for (RandomXMetricsListener.Resource resource : RandomXMetricsListener.Resource.values()) {
+            LEAKED.put(resource, new LongAdder());
+        }
+    }
+
+    private final Pointer pointer;
+    private final State state;
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * Takes ownership of a native object.
+     *
+     * @param owner       The wrapper whose reachability governs the safety net. Must not be referenced by
+     *                    {@code release}.
+     * @param resource    The kind of object.
+     * @param pointer     The native object.
+     * @param release     Frees the native object.
+     * @param reservation Native memory accounted to the object, released with it.
+     */
+    RandomXNativeHandle(Object owner, RandomXMetricsListener.Resource resource, Pointer pointer,
+                        Consumer<Pointer> release, RandomXNativeMemory.Reservation reservation) {
+        this.pointer = pointer;
+        long allocation = ALLOCATIONS.getAndIncrement();
+        Throwable site = SAMPLING > 0 && allocation % SAMPLING == 0
+                ? new Throwable("Allocation site of leaked RandomX " + resource.name().toLowerCase()) : null;
+        this.state = new State(resource, pointer, release, reservation, site);
+        this.cleanable = CLEANER.register(owner, state);
+    }
+
+    /**
+     * @param name Name of the object for the error message, e.g. "VM".
+     * @return The native pointer.
+     * @throws IllegalStateException if the handle has been closed.
+     */
+    Pointer get(String name) {
+        if (state.closed.get()) {
+            throw new IllegalStateException(name + " is closed.");
+        }
+        return pointer;
+    }
+
+    /**
+     * @return The native pointer, closed or not, for logging.
+     */
+    Pointer peek() {
+        return pointer;
+    }
+
+    boolean isClosed() {
+        return state.closed.get();
+    }
+
+    /**
+     * Frees the native object unless that already happened.
+     *
+     * @return true if this call freed it.
+     */
+    boolean close() {
+        if (!state.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        cleanable.clean();
+        return true;
+    }
+
+    /**
+     * @param resource The kind of object.
+     * @return Number of objects of that kind freed by the safety net instead of an explicit close.
+     */
+    static long getLeakedCount(RandomXMetricsListener.Resource resource) {
+        return LEAKED.get(resource).sum();
+    }
+
+    /**
+     * Release action shared by explicit close and the cleaner. It must not reference the owner.
+     */
+    private static final class State implements Runnable {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final RandomXMetricsListener.Resource resource;
+        final Pointer pointer;
+        final Consumer<Pointer> release;
+        final RandomXNativeMemory.Reservation reservation;
+        final Throwable allocationSite;
+
+        State(RandomXMetricsListener.Resource resource, Pointer pointer, Consumer<Pointer> release,
+              RandomXNativeMemory.Reservation reservation, Throwable allocationSite) {
+            this.resource = resource;
+            this.pointer = pointer;
+            this.release = release;
+            this.reservation = reservation;
+            this.allocationSite = allocationSite;
+        }
+
+        @Override
+        public void run() {
+            // Only the cleaner thread can win this race: an explicit close sets the flag before cleaning.
+            if (closed.compareAndSet(false, true)) {
+                LEAKED.get(resource).increment();
+                if (allocationSite != null) {
+                    log.warn("RandomX {} was never closed; freeing it now.", resource.name().toLowerCase(), allocationSite);
+                } else {
+                    log.warn("RandomX {} was never closed; freeing it now. Set -D{}=1 to record allocation sites.",
+                            resource.name().toLowerCase(), SAMPLING_PROPERTY);
+                }
+            }
+            try {
+                release.accept(pointer);
+            } catch (Throwable t) {
+                log.error("Error occurred while releasing RandomX {}. Pointer: {}", resource.name().toLowerCase(),
+                        Pointer.nativeValue(pointer), t);
+            }
+            reservation.release();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide accounting of the native memory held by caches, datasets and VMs.
+ * <p>
+ * That memory lives outside the Java heap, so {@code -Xmx} does not bound it and container limits are hit
+ * without warning. Every {@link RandomXCache}, {@link RandomXDataset} and {@link RandomXVM} reserves its
+ * (estimated) size here before allocating and releases it on close, so current and peak usage are always
+ * known. An optional byte budget turns the estimate into a limit: an allocation that would exceed it is
+ * either rejected immediately or waits, up to a timeout, for other structures to be released.
+ * <p>
+ * The budget can be set at startup with the {@value #BUDGET_PROPERTY} system property (bytes, or with a
+ * {@code k}, {@code m} or {@code g} suffix), optionally with {@value #POLICY_PROPERTY} set to {@code wait}.
+ * Sizes are estimates of librandomx's allocations: {@link RandomXCache#MEMORY_BYTES} per cache,
+ * the item count times {@link RandomXDataset#ITEM_SIZE} per dataset, and {@link RandomXVM#NATIVE_BYTES} per VM.
+ */
+@Slf4j
+public final class RandomXNativeMemory {
+
+    /** System property holding the initial budget. */
+    public static final String BUDGET_PROPERTY = "randomx.nativeMemory.budget";
+
+    /** System property holding the initial policy, {@code reject} (default) or {@code wait}. */
+    public static final String POLICY_PROPERTY = "randomx.nativeMemory.policy";
+
+    /** What happens to an allocation that would exceed the budget. */
+    public enum BudgetPolicy {
+        /** Fail the allocation immediately. */
+        REJECT,
+        /** Block until enough memory is released or the wait timeout expires. */
+        WAIT
+    }
+
+    /** Default time a {@link BudgetPolicy#WAIT} allocation waits before failing. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Object LOCK = new Object();
+    private static final Map<RandomXMetricsListener.Resource, long[]> USED = new EnumMap<>(RandomXMetricsListener.Resource.class);
+    private static long used;
+    private static long peak;
+    private static long budget;
+    private static BudgetPolicy policy = BudgetPolicy.REJECT;
+    private static long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+    static {
+        for (RandomXMetricsListener.Resource resource : RandomXMetricsListener.Resource.values()) {
+            USED.put(resource, new long[1]);
+        }
+        String value = System.getProperty(BUDGET_PROPERTY);
+        if (value != null) {
+            try {
+                budget = parseBytes(value);
+                policy = "wait".equalsIgnoreCase(System.getProperty(POLICY_PROPERTY)) ? BudgetPolicy.WAIT : BudgetPolicy.REJECT;
+                log.info("RandomX native memory budget: {} bytes ({}).", budget, policy);
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid {} value '{}'.", BUDGET_PROPERTY, value);
+            }
+        }
+    }
+
+    private RandomXNativeMemory() {}
+
+    /**
+     * Sets the budget. Structures already allocated are never affected, even if they now exceed it.
+     *
+     * @param bytes         Maximum bytes of native memory, or 0 for no limit.
+     * @param budgetPolicy  What to do with allocations that would exceed the budget.
+     * @param maxWait       Maximum wait under {@link BudgetPolicy#WAIT}.
+     * @param unit          Unit of {@code maxWait}.
+     * @throws IllegalArgumentException if bytes or maxWait is negative, or budgetPolicy or unit is null.
+     */
+    public static void setBudget(long bytes, BudgetPolicy budgetPolicy, long maxWait, TimeUnit unit) {
+        if (bytes < 0 || maxWait < 0) {
+            throw new IllegalArgumentException("Budget and wait time must not be negative.");
+        }
+        if (budgetPolicy == null || unit == null) {
+            throw new IllegalArgumentException("Budget policy and time unit cannot be null.");
+        }
+        synchronized (LOCK) {
+            budget = bytes;
+            policy = budgetPolicy;
+            maxWaitMillis = unit.toMillis(maxWait);
+            // A larger budget may admit waiting allocations.
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Removes the budget.
+     */
+    public static void clearBudget() {
+        setBudget(0, BudgetPolicy.REJECT, DEFAULT_MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The budget in bytes, or 0 if unlimited.
+     */
+    public static long getBudget() {
+        synchronized (LOCK) {
+            return budget;
+        }
+    }
+
+    /**
+     * @return Bytes currently reserved by all live structures.
+     */
+    public static long getUsed() {
+        synchronized (LOCK) {
+            return used;
+        }
+    }
+
+    /**
+     * @param resource The kind of structure.
+     * @return Bytes currently reserved by live structures of that kind.
+     */
+    public static long getUsed(RandomXMetricsListener.Resource resource) {
+        synchronized (LOCK) {
+            return USED.get(resource)[0];
+        }
+    }
+
+    /**
+     * @return Highest value {@link #getUsed()} has reached since startup or the last {@link #resetPeak()}.
+     */
+    public static long getPeak() {
+        synchronized (LOCK) {
+            return peak;
+        }
+    }
+
+    /**
+     * Restarts peak tracking from the current usage.
+     */
+    public static void resetPeak() {
+        synchronized (LOCK) {
+            peak = used;
+        }
+    }
+
+    /**
+     * @param resource The kind of structure.
+     * @return Number of structures of that kind that were garbage collected without being closed and were
+     *         freed by the leak safety net.
+     */
+    public static long getLeakedCount(RandomXMetricsListener.Resource resource) {
+        if (resource == null) {
+            throw new IllegalArgumentException("Resource cannot be null.");
+        }
+        return RandomXNativeHandle.getLeakedCount(resource);
+    }
+
+    /**
+     * Reserves memory for a structure about to be allocated, applying the budget.
+     *
+     * @param resource The kind of structure.
+     * @param bytes    Its size.
+     * @return The reservation, to be released when the structure is freed (or its allocation fails).
+     * @throws IllegalStateException if the budget does not allow the allocation, or the wait is interrupted.
+     */
+    static Reservation reserve(RandomXMetricsListener.Resource resource, long bytes) {
+        synchronized (LOCK) {
+            if (budget > 0 && used + bytes > budget) {
+                if (policy == BudgetPolicy.REJECT || bytes > budget) {
+                    throw exceeded(resource, bytes);
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                log.info("Waiting for {} bytes of native memory budget for a {}.", bytes, resource);
+                while (budget > 0 && used + bytes > budget) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw exceeded(resource, bytes);
+                    }
+                    try {
+                        LOCK.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for native memory budget.", e);
+                    }
+                }
+            }
+            used += bytes;
+            USED.get(resource)[0] += bytes;
+            peak = Math.max(peak, used);
+        }
+        RandomXMetrics.listener().nativeMemoryChanged(resource, bytes);
+        return new Reservation(resource, bytes);
+    }
+
+    private static IllegalStateException exceeded(RandomXMetricsListener.Resource resource, long bytes) {
+        return new IllegalStateException(String.format(
+                "Native memory budget exceeded: a %s needs %d bytes, %d of %d bytes in use.",
+                resource, bytes, used, budget));
+    }
+
+    private static void release(RandomXMetricsListener.Resource resource, long bytes) {
+        synchronized (LOCK) {
+            used -= bytes;
+            USED.get(resource)[0] -= bytes;
+            LOCK.notifyAll();
+        }
+        RandomXMetrics.listener().nativeMemoryChanged(resource, -bytes);
+    }
+
+    /**
+     * Parses a byte count with an optional {@code k}, {@code m} or {@code g} (binary) suffix.
+     *
+     * @throws NumberFormatException if the value is malformed or negative.
+     */
+    static long parseBytes(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        int shift = switch (text.isEmpty() ? ' ' : text.charAt(text.length() - 1)) {
+            case 'k' -> 10;
+            case 'm' -> 20;
+            case 'g' -> 30;
+            default -> 0;
+        };
+        long bytes = Long.parseLong(shift == 0 ? text : text.substring(0, text.length() - 1).trim());
+        if (bytes < 0) {
+            throw new NumberFormatException("Negative byte count: " + value);
+        }
+        return bytes << shift;
+    }
+
+    /**
+     * Memory reserved for one structure. Releasing is idempotent.
+     */
+    static final class Reservation {
+        private final RandomXMetricsListener.Resource resource;
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(RandomXMetricsListener.Resource resource, long bytes) {
+            this.resource = resource;
+            this.bytes = bytes;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                RandomXNativeMemory.release(resource, bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.SystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * NUMA node layout of the machine: which CPUs belong to which memory node.
+ * <p>
+ * On Linux the layout is read from {@code /sys/devices/system/node}. On other platforms, or if sysfs cannot be
+ * read, the topology is a single node holding all available processors, so callers can treat NUMA awareness
+ * as a no-op there.
+ */
+@Slf4j
+public final class RandomXNumaTopology {
+
+    private static final Path SYSFS_NODE_DIR = Path.of("/sys/devices/system/node");
+
+    private final List<Integer> nodeIds;
+    private final List<BitSet> cpus;
+
+    private RandomXNumaTopology(List<Integer> nodeIds, List<BitSet> cpus) {
+        this.nodeIds = Collections.unmodifiableList(nodeIds);
+        this.cpus = Collections.unmodifiableList(cpus);
+    }
+
+    /**
+     * Detects the topology of this machine, falling back to a single node.
+     *
+     * @return The detected topology.
+     */
+    public static RandomXNumaTopology detect() {
+        if (SystemUtils.IS_OS_LINUX) {
+            RandomXNumaTopology topology = read(SYSFS_NODE_DIR);
+            if (topology != null) {
+                log.info("Detected {} NUMA node(s): {}", topology.getNodeCount(), topology);
+                return topology;
+            }
+        }
+        return singleNode();
+    }
+
+    /**
+     * @return A topology with one node holding all available processors.
+     */
+    public static RandomXNumaTopology singleNode() {
+        BitSet all = new BitSet();
+        all.set(0, Runtime.getRuntime().availableProcessors());
+        return new RandomXNumaTopology(List.of(0), List.of(all));
+    }
+
+    /**
+     * Reads the topology from a sysfs node directory.
+     *
+     * @param nodeDir Directory containing {@code online} and {@code node<N>/cpulist}.
+     * @return The topology, or null if it cannot be read or no node has CPUs.
+     */
+    static RandomXNumaTopology read(Path nodeDir) {
+        try {
+            BitSet online = parseCpuList(Files.readString(nodeDir.resolve("online")));
+            List<Integer> nodeIds = new ArrayList<>();
+            List<BitSet> cpus = new ArrayList<>();
+            for (int node = online.nextSetBit(0); node >= 0; node = online.nextSetBit(node + 1)) {
+                BitSet nodeCpus = parseCpuList(Files.readString(nodeDir.resolve("node" + node).resolve("cpulist")));
+                // Memory-only nodes (no CPUs) cannot host workers.
+                if (!nodeCpus.isEmpty()) {
+                    nodeIds.add(node);
+                    cpus.add(nodeCpus);
+                }
+            }
+            return nodeIds.isEmpty() ? null : new RandomXNumaTopology(nodeIds, cpus);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read NUMA topology from {}: {}", nodeDir, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Parses a kernel CPU list such as {@code 0-3,8,10-11}.
+     *
+     * @param list The list.
+     * @return The set of indices.
+     * @throws NumberFormatException if the list is malformed.
+     */
+    static BitSet parseCpuList(String list) {
+        BitSet set = new BitSet();
+        for (String part : list.trim().split(",")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            if (dash < 0) {
+                set.set(Integer.parseInt(part));
+            } else {
+                set.set(Integer.parseInt(part.substring(0, dash)), Integer.parseInt(part.substring(dash + 1)) + 1);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * @return Number of nodes with CPUs.
+     */
+    public int getNodeCount() {
+        return nodeIds.size();
+    }
+
+    /**
+     * @return true if there is more than one node with CPUs.
+     */
+    public boolean isMultiNode() {
+        return nodeIds.size() > 1;
+    }
+
+    /**
+     * @param index Node index, from 0 to {@link #getNodeCount()} - 1.
+     * @return The kernel's id of the node.
+     */
+    public int getNodeId(int index) {
+        return nodeIds.get(index);
+    }
+
+    /**
+     * @param index Node index, from 0 to {@link #getNodeCount()} - 1.
+     * @return A copy of the set of CPUs on the node.
+     */
+    public BitSet getCpus(int index) {
+        return (BitSet) cpus.get(index).clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < nodeIds.size(); i++) {
+            builder.append(i == 0 ? "" : ", ").append("node").append(nodeIds.get(i)).append('=').append(cpus.get(i));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reference-counted registry of initialized caches and datasets, keyed by (key, flags).
+ * <p>
+ * Every user of the same key and flags (templates, VM pools, miners) shares one native allocation: the first
+ * {@code acquire} call initializes it, later calls for the same key wait for and reuse it, and it is released
+ * when the last lease is closed. A dataset holds a lease on the cache it was built from, so the cache outlives
+ * every dataset derived from it. Caches ignore {@link RandomXFlag#FULL_MEM}; datasets always include it.
+ * <p>
+ * Use {@link #shared()} for a process-wide registry or create separate instances to isolate users.
+ * This class is thread-safe.
+ */
+@Slf4j
+public class RandomXResourceRegistry {
+
+    private static final RandomXResourceRegistry SHARED = new RandomXResourceRegistry();
+
+    /** Entries guarded by {@code this}. */
+    private final Map<String, Entry<RandomXCache>> caches = new HashMap<>();
+    private final Map<String, Entry<SharedDataset>> datasets = new HashMap<>();
+
+    /**
+     * @return The process-wide registry.
+     */
+    public static RandomXResourceRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Leases the cache for a key, initializing it on the calling thread if no other user holds it.
+     *
+     * @param key   The RandomX key.
+     * @param flags Flags used to allocate the cache.
+     * @return A lease on the initialized cache; close it when done.
+     */
+    public RandomXCacheLease acquireCache(byte[] key, Set<RandomXFlag> flags) {
+        checkArguments(key, flags);
+        Set<RandomXFlag> cacheFlags = EnumSet.copyOf(flags);
+        cacheFlags.remove(RandomXFlag.FULL_MEM);
+        byte[] seed = key.clone();
+        Entry<RandomXCache> entry = retain(caches, id(seed, cacheFlags), () -> {
+            RandomXCache cache = new RandomXCache(cacheFlags);
+            try {
+                cache.init(seed);
+            } catch (Throwable t) {
+                cache.close();
+                throw t;
+            }
+            return cache;
+        });
+        return new RandomXCacheLease(entry.value(), seed, -1, () -> release(caches, entry, RandomXCache::close));
+    }
+
+    /**
+     * Leases the dataset for a key, building it (and leasing its cache) on the calling thread if no other
+     * user holds it.
+     *
+     * @param key   The RandomX key.
+     * @param flags Flags used to allocate the dataset; {@link RandomXFlag#FULL_MEM} is added.
+     * @return A lease on the initialized dataset and its cache; close it when done.
+     */
+    public RandomXDatasetLease acquireDataset(byte[] key, Set<RandomXFlag> flags) {
+        checkArguments(key, flags);
+        Set<RandomXFlag> datasetFlags = EnumSet.copyOf(flags);
+        datasetFlags.add(RandomXFlag.FULL_MEM);
+        Entry<SharedDataset> entry = retain(datasets, id(key, datasetFlags), () -> {
+            RandomXCacheLease cacheLease = acquireCache(key, flags);
+            RandomXDataset dataset = null;
+            try {
+                dataset = new RandomXDataset(datasetFlags);
+                dataset.init(cacheLease.getCache());
+                return new SharedDataset(dataset, cacheLease);
+            } catch (Throwable t) {
+                if (dataset != null) {
+                    dataset.close();
+                }
+                cacheLease.close();
+                throw t;
+            }
+        });
+        SharedDataset shared = entry.value();
+        return new RandomXDatasetLease(shared.dataset, shared.cacheLease.getCache(),
+                () -> release(datasets, entry, SharedDataset::close));
+    }
+
+    /**
+     * @return Number of distinct caches currently held.
+     */
+    public synchronized int getCacheCount() {
+        return caches.size();
+    }
+
+    /**
+     * @return Number of distinct datasets currently held.
+     */
+    public synchronized int getDatasetCount() {
+        return datasets.size();
+    }
+
+    private <T> Entry<T> retain(Map<String, Entry<T>> map, String id, Supplier<T> factory) {
+        Entry<T> entry;
+        boolean create = false;
+        synchronized (this) {
+            entry = map.get(id);
+            if (entry == null) {
+                entry = new Entry<>(id);
+                map.put(id, entry);
+                create = true;
+            }
+            entry.references++;
+        }
+        if (create) {
+            log.debug("Initializing shared RandomX resource {}.", id);
+            try {
+                entry.future.complete(factory.get());
+            } catch (Throwable t) {
+                // Any failure, including an Error, must wake and fail the waiters and forget the entry,
+                // otherwise every later caller for the key would wait forever.
+                synchronized (this) {
+                    map.remove(id, entry);
+                }
+                entry.future.completeExceptionally(t);
+            }
+        }
+        try {
+            entry.future.join();
+        } catch (CompletionException e) {
+            synchronized (this) {
+                entry.references--;
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return entry;
+    }
+
+    private <T> void release(Map<String, Entry<T>> map, Entry<T> entry, Consumer<T> closer) {
+        synchronized (this) {
+            if (--entry.references > 0) {
+                return;
+            }
+            map.remove(entry.id, entry);
+        }
+        log.debug("Releasing shared RandomX resource {}.", entry.id);
+        closer.accept(entry.value());
+    }
+
+    private static void checkArguments(byte[] key, Set<RandomXFlag> flags) {
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("Key cannot be null or empty.");
+        }
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+    }
+
+    private static String id(byte[] key, Set<RandomXFlag> flags) {
+        return HexFormat.of().formatHex(key) + "/" + RandomXFlag.toValue(flags);
+    }
+
+    /**
+     * One shared resource. The reference count is guarded by the registry.
+     */
+    private static final class Entry<T> {
+        final String id;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        int references;
+
+        Entry(String id) {
+            this.id = id;
+        }
+
+        T value() {
+            return future.join();
+        }
+    }
+
+    /**
+     * A dataset together with the lease on the cache it was built from.
+     */
+    private static final class SharedDataset {
+        final RandomXDataset dataset;
+        final RandomXCacheLease cacheLease;
+
+        SharedDataset(RandomXDataset dataset, RandomXCacheLease cacheLease) {
+            this.dataset = dataset;
+            this.cacheLease = cacheLease;
+        }
+
+        void close() {
+            dataset.close();
+            cacheLease.close();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dependency-free {@link RandomXMetricsListener} that aggregates everything in striped counters.
+ * <p>
+ * Latencies go into {@link Histogram}s with power-of-two nanosecond buckets, so recording is one
+ * {@link LongAdder} increment and percentiles are accurate to within a factor of two, which is enough to spot
+ * regressions and stalls. Rates such as hashes per second are derived by the reader from two snapshots of
+ * the monotonic counters, exactly as metrics backends do.
+ */
+public class RandomXStatistics implements RandomXMetricsListener {
+
+    private final LongAdder hashes = new LongAdder();
+    private final Map<Long, LongAdder> vmHashes = new ConcurrentHashMap<>();
+    private final Histogram hashLatency = new Histogram();
+    private final Histogram cacheInit = new Histogram();
+    private final Histogram datasetInit = new Histogram();
+    private final Histogram keyChangeStall = new Histogram();
+    private final Histogram poolWait = new Histogram();
+    private final LongAdder vmsCreated = new LongAdder();
+    private final LongAdder vmsDestroyed = new LongAdder();
+    private final Map<Resource, LongAdder> nativeMemory = new EnumMap<>(Resource.class);
+
+    public RandomXStatistics() {
+        for (Resource resource : Resource.values()) {
+            nativeMemory.put(resource, new LongAdder());
+        }
+    }
+
+    @Override
+    public void hashesComputed(long vmId, long count, long nanos) {
+        if (count <= 0) {
+            return;
+        }
+        hashes.add(count);
+        LongAdder perVm = vmHashes.get(vmId);
+        if (perVm != null) {
+            perVm.add(count);
+        }
+        hashLatency.record(nanos / count, count);
+    }
+
+    @Override
+    public void cacheInitialized(long nanos) {
+        cacheInit.record(nanos);
+    }
+
+    @Override
+    public void datasetInitialized(long nanos) {
+        datasetInit.record(nanos);
+    }
+
+    @Override
+    public void keyChanged(long stallNanos) {
+        keyChangeStall.record(stallNanos);
+    }
+
+    @Override
+    public void vmCreated(long vmId) {
+        vmsCreated.increment();
+        vmHashes.put(vmId, new LongAdder());
+    }
+
+    @Override
+    public void vmDestroyed(long vmId) {
+        vmsDestroyed.increment();
+        vmHashes.remove(vmId);
+    }
+
+    @Override
+    public void nativeMemoryChanged(Resource resource, long deltaBytes) {
+        nativeMemory.get(resource).add(deltaBytes);
+    }
+
+    @Override
+    public void poolWaited(long nanos) {
+        poolWait.record(nanos);
+    }
+
+    /**
+     * @return Hashes computed by all VMs since this listener was installed.
+     */
+    public long getHashCount() {
+        return hashes.sum();
+    }
+
+    /**
+     * @param vmId {@link RandomXVM#getId()} of a VM created after this listener was installed.
+     * @return Hashes computed by the VM, or 0 if it is unknown or destroyed.
+     */
+    public long getHashCount(long vmId) {
+        LongAdder perVm = vmHashes.get(vmId);
+        return perVm != null ? perVm.sum() : 0;
+    }
+
+    /**
+     * @return Hash counts of live VMs, keyed by VM id.
+     */
+    public Map<Long, Long> getHashCountsByVm() {
+        Map<Long, Long> counts = new TreeMap<>();
+        vmHashes.forEach((id, count) -> counts.put(id, count.sum()));
+        return counts;
+    }
+
+    /**
+     * @return Per-hash latency; each hash of a batch is recorded at the batch average.
+     */
+    public Histogram getHashLatency() {
+        return hashLatency;
+    }
+
+    public Histogram getCacheInit() {
+        return cacheInit;
+    }
+
+    public Histogram getDatasetInit() {
+        return datasetInit;
+    }
+
+    /**
+     * @return Time hashing was blocked by key changes; the count is the number of key changes.
+     */
+    public Histogram getKeyChangeStall() {
+        return keyChangeStall;
+    }
+
+    public Histogram getPoolWait() {
+        return poolWait;
+    }
+
+    public long getVmsCreated() {
+        return vmsCreated.sum();
+    }
+
+    public long getVmsDestroyed() {
+        return vmsDestroyed.sum();
+    }
+
+    /**
+     * @param resource The resource.
+     * @return Native bytes currently allocated for it, counting only allocations made while installed.
+     */
+    public long getNativeMemory(Resource resource) {
+        return nativeMemory.get(resource).sum();
+    }
+
+    /**
+     * Lock-free latency histogram with power-of-two nanosecond buckets.
+     */
+    public static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            record(nanos, 1);
+        }
+
+        void record(long nanos, long times) {
+            long value = Math.max(0, nanos);
+            // Bucket 0 holds 0, bucket i > 0 holds values in [2^(i-1), 2^i).
+            buckets[64 - Long.numberOfLeadingZeros(value)].add(times);
+            count.add(times);
+            totalNanos.add(value * times);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * @return Mean in nanoseconds, or 0 if nothing was recorded.
+         */
+        public double getMeanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) totalNanos.sum() / n;
+        }
+
+        /**
+         * @param quantile Quantile between 0 and 1, e.g. 0.99.
+         * @return Upper bound in nanoseconds of the bucket holding the quantile, or 0 if nothing was recorded.
+         * @throws IllegalArgumentException if the quantile is out of range.
+         */
+        public long percentileNanos(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+            }
+            long[] snapshot = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                snapshot[i] = buckets[i].sum();
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return i == 63 ? Long.MAX_VALUE : (1L << i) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,469 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Verifies a long, height-ordered stream of historical proof-of-work hashes, as during initial block download.
+ * <p>
+ * Items are submitted in chain order, each with the seed of its epoch. Consecutive items sharing a seed form an
+ * epoch: its cache is leased from a {@link RandomXResourceRegistry} once, on a background thread as soon as the
+ * first item arrives, so it is usually ready by the time the previous epoch has been hashed. Once
+ * {@code datasetThreshold} items of an epoch have been submitted its dataset is built in the background too,
+ * and the remaining items of the epoch are hashed in fast mode.
+ * <p>
+ * Hashing is spread over {@code threads} worker threads, each owning its VMs for the lifetime of the pipeline
+ * and only rebinding them when it moves to another epoch. At most {@code maxPending} items are in flight:
+ * {@link #submit} blocks the producer beyond that. Results are handed to the sink one at a time, in submission
+ * order, whatever order the workers finish in. This class is thread-safe.
+ */
+@Slf4j
+public class RandomXSyncPipeline implements AutoCloseable {
+
+    /** Default number of in-flight items per worker thread. */
+    static final int DEFAULT_PENDING_PER_THREAD = 64;
+
+    /** Shared pool of daemon threads initializing epochs; idle threads exit after a minute. */
+    private static final ExecutorService INIT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setName("RandomX-Sync-Init-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Queue entry telling a worker to exit. */
+    private static final Task STOP = new Task(-1, -1, null, null);
+
+    /** Flags used for light-mode caches and VMs; never includes {@link RandomXFlag#FULL_MEM}. */
+    @Getter
+    private final Set<RandomXFlag> flags;
+
+    /** Number of worker threads. */
+    @Getter
+    private final int threadCount;
+
+    /** Maximum number of submitted items whose result has not been delivered yet. */
+    @Getter
+    private final int maxPending;
+
+    /** Number of items of one epoch after which its dataset is built, or 0 to always hash in light mode. */
+    @Getter
+    private final long datasetThreshold;
+
+    private final Set<RandomXFlag> datasetFlags;
+    private final RandomXResourceRegistry registry;
+    private final Consumer<Result> sink;
+
+    private final Semaphore permits;
+    private final LinkedBlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final List<Worker> workers = new ArrayList<>();
+
+    /** Producer state, guarded by {@code this}. */
+    private long nextSequence;
+    private Epoch currentEpoch;
+    private boolean closed;
+
+    /** Results waiting for their predecessors, guarded by itself. */
+    private final Map<Long, Result> completed = new HashMap<>();
+    private long nextToEmit;
+
+    private final LongAdder epochs = new LongAdder();
+    private final LongAdder datasets = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Creates a pipeline and starts its workers.
+     *
+     * @param flags            Flags used to allocate caches and VMs. {@link RandomXFlag#FULL_MEM} is ignored.
+     * @param threads          Number of worker threads; values below 1 default to the number of available processors.
+     * @param maxPending       Maximum number of items in flight; values below 1 default to
+     *                         {@value #DEFAULT_PENDING_PER_THREAD} per thread.
+     * @param datasetThreshold Number of items of one epoch after which its dataset is built, or 0 to never build one.
+     * @param registry         Registry the caches and datasets are leased from, or null for the shared registry.
+     * @param cpuAffinity      Whether to pin worker {@code i} to CPU {@code i % availableProcessors}.
+     * @param sink             Receives the results in submission order, on a worker thread.
+     */
+    @Builder
+    public RandomXSyncPipeline(Set<RandomXFlag> flags, int threads, int maxPending, long datasetThreshold,
+                               RandomXResourceRegistry registry, boolean cpuAffinity, Consumer<Result> sink) {
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+        if (datasetThreshold < 0) {
+            throw new IllegalArgumentException("Dataset threshold cannot be negative.");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null.");
+        }
+        Set<RandomXFlag> lightFlags = EnumSet.copyOf(flags);
+        lightFlags.remove(RandomXFlag.FULL_MEM);
+        this.flags = lightFlags;
+        this.datasetFlags = EnumSet.copyOf(lightFlags);
+        this.datasetFlags.add(RandomXFlag.FULL_MEM);
+        this.threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.maxPending = maxPending > 0 ? maxPending : threadCount * DEFAULT_PENDING_PER_THREAD;
+        this.datasetThreshold = datasetThreshold;
+        this.registry = registry != null ? registry : RandomXResourceRegistry.shared();
+        this.sink = sink;
+        this.permits = new Semaphore(this.maxPending);
+
+        for (int i = 0; i < threadCount; i++) {
+            Worker worker = new Worker(i, cpuAffinity);
+            Thread thread = new Thread(worker, "RandomX-Sync-" + i);
+            thread.setDaemon(true);
+            worker.thread = thread;
+            workers.add(worker);
+            thread.start();
+        }
+        log.info("RandomX sync pipeline started. Threads: {}, max pending: {}, dataset threshold: {}, Flags: {}",
+                threadCount, this.maxPending, datasetThreshold, this.flags);
+    }
+
+    /**
+     * Submits the next item of the stream, blocking while {@link #getMaxPending()} items are in flight.
+     *
+     * @param height The item's height, reported back in its result.
+     * @param check  What to verify; its seed selects the epoch.
+     * @throws IllegalArgumentException if check is null.
+     * @throws IllegalStateException if the pipeline is closed.
+     * @throws InterruptedException if interrupted while waiting for room.
+     */
+    public void submit(long height, RandomXVerifier.Check check) throws InterruptedException {
+        if (check == null) {
+            throw new IllegalArgumentException("Check cannot be null.");
+        }
+        permits.acquire();
+        synchronized (this) {
+            if (closed) {
+                permits.release();
+                throw new IllegalStateException("RandomX sync pipeline is closed.");
+            }
+            Epoch epoch = currentEpoch;
+            if (epoch == null || !Arrays.equals(epoch.seed, check.getSeed())) {
+                if (epoch != null) {
+                    epoch.release();
+                }
+                epoch = new Epoch(check.getSeed().clone());
+                currentEpoch = epoch;
+                epochs.increment();
+            }
+            epoch.references.incrementAndGet();
+            if (++epoch.submitted == datasetThreshold) {
+                epoch.buildDataset();
+            }
+            queue.add(new Task(nextSequence++, height, check, epoch));
+        }
+    }
+
+    /**
+     * Blocks until the results of all items submitted so far have been delivered.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        long submitted;
+        synchronized (this) {
+            submitted = nextSequence;
+        }
+        synchronized (completed) {
+            while (nextToEmit < submitted) {
+                completed.wait();
+            }
+        }
+    }
+
+    /**
+     * @return Number of epochs started, i.e. runs of consecutive items sharing a seed.
+     */
+    public long getEpochCount() {
+        return epochs.sum();
+    }
+
+    /**
+     * @return Number of epochs for which a dataset was built.
+     */
+    public long getDatasetCount() {
+        return datasets.sum();
+    }
+
+    /**
+     * @return Number of items that could not be verified because of an error.
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Delivers the results that are next in submission order. Items leave the pipeline here, which is what
+     * frees room for the producer.
+     */
+    private void complete(Task task, Result result) {
+        synchronized (completed) {
+            completed.put(task.sequence, result);
+            Result next;
+            while ((next = completed.remove(nextToEmit)) != null) {
+                nextToEmit++;
+                try {
+                    sink.accept(next);
+                } catch (Throwable t) {
+                    log.error("RandomX sync pipeline sink failed for height {}.", next.height, t);
+                } finally {
+                    permits.release();
+                }
+            }
+            completed.notifyAll();
+        }
+        task.epoch.release();
+    }
+
+    /**
+     * Delivers the results of all submitted items, stops the workers and destroys their VMs.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while flushing the RandomX sync pipeline.");
+        }
+        synchronized (this) {
+            if (currentEpoch != null) {
+                currentEpoch.release();
+                currentEpoch = null;
+            }
+        }
+        workers.forEach(worker -> queue.add(STOP));
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while waiting for sync worker {} to stop.", worker.index);
+            }
+        }
+        log.info("RandomX sync pipeline closed. Items: {}, epochs: {}, datasets: {}, failures: {}.",
+                nextToEmit, epochs.sum(), datasets.sum(), failures.sum());
+    }
+
+    /**
+     * The verification outcome of one submitted item.
+     */
+    @Getter
+    public static final class Result {
+
+        /** Height the item was submitted with. */
+        private final long height;
+
+        /** Whether the item passed its check; false if it could not be verified. */
+        private final boolean valid;
+
+        /** Why the item could not be verified, or null. */
+        private final Throwable error;
+
+        Result(long height, boolean valid, Throwable error) {
+            this.height = height;
+            this.valid = valid;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return "Result(height=" + height + ", valid=" + valid + (error != null ? ", error=" + error : "") + ")";
+        }
+    }
+
+    private static final class Task {
+        final long sequence;
+        final long height;
+        final RandomXVerifier.Check check;
+        final Epoch epoch;
+
+        Task(long sequence, long height, RandomXVerifier.Check check, Epoch epoch) {
+            this.sequence = sequence;
+            this.height = height;
+            this.check = check;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * The key material of one run of items sharing a seed. Holds one reference for the producer while the run
+     * is current plus one per queued item; the leases are closed when the count drops to zero.
+     */
+    private final class Epoch {
+        final byte[] seed;
+        final AtomicInteger references = new AtomicInteger(1);
+        final CompletableFuture<RandomXCacheLease> cache;
+        volatile CompletableFuture<RandomXDatasetLease> dataset;
+        /** Items submitted for this epoch; guarded by the pipeline. */
+        long submitted;
+
+        Epoch(byte[] seed) {
+            this.seed = seed;
+            this.cache = CompletableFuture.supplyAsync(() -> registry.acquireCache(seed, flags), INIT_EXECUTOR);
+        }
+
+        void buildDataset() {
+            log.debug("Building RandomX dataset for a sync epoch after {} items.", submitted);
+            datasets.increment();
+            dataset = CompletableFuture.supplyAsync(() -> registry.acquireDataset(seed, flags), INIT_EXECUTOR);
+        }
+
+        /**
+         * @return The dataset lease if it has been built successfully, otherwise null.
+         */
+        RandomXDatasetLease readyDataset() {
+            CompletableFuture<RandomXDatasetLease> future = dataset;
+            if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+                return null;
+            }
+            return future.join();
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                cache.whenComplete((lease, error) -> {
+                    if (lease != null) {
+                        lease.close();
+                    }
+                });
+                CompletableFuture<RandomXDatasetLease> future = dataset;
+                if (future != null) {
+                    future.whenComplete((lease, error) -> {
+                        if (lease != null) {
+                            lease.close();
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * One worker thread with its light-mode VM and, once an epoch has a dataset, its fast-mode VM.
+     */
+    private final class Worker implements Runnable {
+        final int index;
+        final boolean cpuAffinity;
+        Thread thread;
+        RandomXVM lightVm;
+        RandomXCache lightCache;
+        RandomXVM fastVm;
+        RandomXDataset fastDataset;
+
+        Worker(int index, boolean cpuAffinity) {
+            this.index = index;
+            this.cpuAffinity = cpuAffinity;
+        }
+
+        @Override
+        public void run() {
+            if (cpuAffinity && !RandomXAffinity.bindCurrentThread(index % Runtime.getRuntime().availableProcessors())) {
+                log.warn("Could not pin sync worker {} to a CPU.", index);
+            }
+            try {
+                Task task;
+                while ((task = queue.take()) != STOP) {
+                    Result result;
+                    try {
+                        result = new Result(task.height, task.check.runOn(vmFor(task.epoch)), null);
+                    } catch (Throwable t) {
+                        // Errors are reported too: an item that is never completed would block flush() and close().
+                        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                        failures.increment();
+                        log.error("Failed to verify height {}.", task.height, cause);
+                        result = new Result(task.height, false, cause);
+                    }
+                    complete(task, result);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (lightVm != null) {
+                    lightVm.close();
+                }
+                if (fastVm != null) {
+                    fastVm.close();
+                }
+            }
+        }
+
+        /**
+         * Returns a VM bound to the epoch's key material, waiting for its cache if needed.
+         */
+        private RandomXVM vmFor(Epoch epoch) {
+            RandomXDatasetLease lease = epoch.readyDataset();
+            if (lease != null) {
+                if (fastVm == null) {
+                    fastVm = new RandomXVM(datasetFlags, lease.getCache(), lease.getDataset());
+                } else if (fastDataset != lease.getDataset()) {
+                    fastVm.setCache(lease.getCache());
+                    fastVm.setDataset(lease.getDataset());
+                }
+                fastDataset = lease.getDataset();
+                return fastVm;
+            }
+            RandomXCache cache = epoch.cache.join().getCache();
+            if (lightVm == null) {
+                lightVm = new RandomXVM(flags, cache, null);
+            } else if (lightCache != cache) {
+                lightVm.setCache(cache);
+            }
+            lightCache = cache;
+            return lightVm;
+        }
+    }
+}
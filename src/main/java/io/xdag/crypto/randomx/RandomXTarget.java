@@ -0,0 +1,180 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HexFormat;
+import java.util.Objects;
+
+/**
+ * An immutable 256-bit proof-of-work target.
+ * <p>
+ * Hashes and targets are interpreted as unsigned 256-bit little-endian integers, and a hash
+ * meets the target when {@code hash <= target}. The target is held as four 64-bit words so that
+ * comparisons need neither allocation nor {@link BigInteger} arithmetic.
+ */
+public final class RandomXTarget {
+
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final BigInteger MAX_TARGET = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+    /** The easiest possible target, met by every hash. */
+    public static final RandomXTarget MAX = new RandomXTarget(-1L, -1L, -1L, -1L);
+
+    /** Little-endian 64-bit words; {@code w3} is the most significant. */
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private RandomXTarget(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * Creates a target from its 32-byte little-endian representation.
+     *
+     * @param target The 32-byte target.
+     * @return The target.
+     * @throws IllegalArgumentException if target is null or not 32 bytes long.
+     */
+    public static RandomXTarget fromLittleEndian(byte[] target) {
+        if (target == null || target.length != RandomXUtils.RANDOMX_HASH_SIZE) {
+            throw new IllegalArgumentException("Target cannot be null and must be " + RandomXUtils.RANDOMX_HASH_SIZE + " bytes long.");
+        }
+        return new RandomXTarget((long) LONG_LE.get(target, 0), (long) LONG_LE.get(target, 8),
+                (long) LONG_LE.get(target, 16), (long) LONG_LE.get(target, 24));
+    }
+
+    /**
+     * Creates the target corresponding to a difficulty, i.e. {@code floor((2^256 - 1) / difficulty)}.
+     *
+     * @param difficulty The difficulty, interpreted as an unsigned value; must not be zero.
+     * @return The target.
+     * @throws IllegalArgumentException if difficulty is zero.
+     */
+    public static RandomXTarget fromDifficulty(long difficulty) {
+        if (difficulty == 0) {
+            throw new IllegalArgumentException("Difficulty cannot be zero.");
+        }
+        BigInteger divisor = new BigInteger(Long.toUnsignedString(difficulty));
+        BigInteger value = MAX_TARGET.divide(divisor);
+        return new RandomXTarget(value.longValue(), value.shiftRight(64).longValue(),
+                value.shiftRight(128).longValue(), value.shiftRight(192).longValue());
+    }
+
+    /**
+     * Checks whether a hash meets this target.
+     *
+     * @param hash   The array holding the 32-byte hash.
+     * @param offset Offset of the hash within {@code hash}.
+     * @return true if {@code hash <= target}.
+     * @throws IndexOutOfBoundsException if fewer than 32 bytes are available at {@code offset}.
+     */
+    public boolean isMetBy(byte[] hash, int offset) {
+        Objects.checkFromIndexSize(offset, RandomXUtils.RANDOMX_HASH_SIZE, hash.length);
+        return compare((long) LONG_LE.get(hash, offset + 24), (long) LONG_LE.get(hash, offset + 16),
+                (long) LONG_LE.get(hash, offset + 8), (long) LONG_LE.get(hash, offset));
+    }
+
+    /**
+     * Checks whether a 32-byte hash meets this target.
+     *
+     * @param hash The 32-byte hash.
+     * @return true if {@code hash <= target}.
+     */
+    public boolean isMetBy(byte[] hash) {
+        return isMetBy(hash, 0);
+    }
+
+    /**
+     * Checks whether the hash stored at an absolute index of a buffer meets this target.
+     * The buffer's position and byte order are ignored. Used to compare hashes that still live in native memory.
+     *
+     * @param hash  A buffer holding the 32-byte hash.
+     * @param index Absolute index of the hash within {@code hash}.
+     * @return true if {@code hash <= target}.
+     */
+    public boolean isMetBy(ByteBuffer hash, int index) {
+        if (hash.order() != ByteOrder.LITTLE_ENDIAN) {
+            hash = hash.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return compare(hash.getLong(index + 24), hash.getLong(index + 16), hash.getLong(index + 8), hash.getLong(index));
+    }
+
+    private boolean compare(long h3, long h2, long h1, long h0) {
+        if (h3 != w3) {
+            return Long.compareUnsigned(h3, w3) < 0;
+        }
+        if (h2 != w2) {
+            return Long.compareUnsigned(h2, w2) < 0;
+        }
+        if (h1 != w1) {
+            return Long.compareUnsigned(h1, w1) < 0;
+        }
+        return Long.compareUnsigned(h0, w0) <= 0;
+    }
+
+    /**
+     * @return The 32-byte little-endian representation of this target.
+     */
+    public byte[] toLittleEndian() {
+        byte[] target = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        LONG_LE.set(target, 0, w0);
+        LONG_LE.set(target, 8, w1);
+        LONG_LE.set(target, 16, w2);
+        LONG_LE.set(target, 24, w3);
+        return target;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RandomXTarget)) {
+            return false;
+        }
+        RandomXTarget that = (RandomXTarget) o;
+        return w0 == that.w0 && w1 == that.w1 && w2 == that.w2 && w3 == that.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(w0, w1, w2, w3);
+    }
+
+    @Override
+    public String toString() {
+        return "RandomXTarget(" + HexFormat.of().formatHex(toLittleEndian()) + ")";
+    }
+}
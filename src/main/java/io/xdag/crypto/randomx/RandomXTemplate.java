@@ -28,13 +28,31 @@ import lombok.Getter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Template class for RandomX operations, providing a common workflow.
  * This class encapsulates the functionality for RandomX mining and hashing operations.
+ * <p>
+ * When the next key is known in advance, {@link #prepareNextKey(byte[])} builds its cache (and, in mining
+ * mode, its dataset) in the background while the current ones keep serving; the following
+ * {@link #changeKey(byte[])} for that key then only rebinds the VM instead of stalling on initialization.
+ * <p>
+ * In hybrid mode (mining mode only) the template does not wait for the dataset: it hashes with a light VM
+ * against the cache while the dataset is built in the background, and replaces that VM with a full-memory VM
+ * on the next hash call after the dataset is ready. Light and full VMs produce identical hashes, so the switch
+ * is transparent apart from the hash rate.
+ * <p>
+ * With a {@link RandomXResourceRegistry}, the cache and dataset for each key are leased from the registry
+ * instead of being created per template, so any number of templates on the same key share one allocation.
+ * Call {@link #changeKey(byte[])} before {@link #init()} in that case. Hybrid mode does not apply to
+ * registry-backed templates, since the registry hands out only fully built datasets.
  */
-@Builder
 @ToString
 @Slf4j
 public class RandomXTemplate implements AutoCloseable {
@@ -42,17 +60,25 @@ public class RandomXTemplate implements AutoCloseable {
     @Getter
     private final boolean miningMode;
     
+    /** Flag indicating if mining mode hashes in light mode until the dataset is ready */
+    @Getter
+    private final boolean hybridMode;
+
     /** Set of RandomX flags for configuring the algorithm behavior */
     @Getter
     private final Set<RandomXFlag> flags;
     
-    /** Cache for RandomX operations */
+    /** Cache for RandomX operations. Replaced by a template-owned cache when a prepared key is applied. */
     @Getter
-    private final RandomXCache cache;
+    private RandomXCache cache;
     
     /** Dataset for RandomX mining operations */
     @Getter
     private RandomXDataset dataset;
+
+    /** Registry the cache and dataset are leased from, or null if the template manages them itself. */
+    @ToString.Exclude
+    private final RandomXResourceRegistry registry;
     
     /** Virtual machine instance for RandomX operations */
     @Getter
@@ -62,15 +88,72 @@ public class RandomXTemplate implements AutoCloseable {
     @Getter
     private byte[] currentKey;
 
+    /** Whether {@link #cache} was created by this template (through key rotation) and must be closed by it. */
+    @ToString.Exclude
+    private boolean ownsCache;
+
+    /** Whether {@link #dataset} was created by this template and must be closed by it. */
+    @ToString.Exclude
+    private boolean ownsDataset;
+
+    /** Releases the registry lease backing {@link #cache} and {@link #dataset}, or null without a lease. */
+    @ToString.Exclude
+    private Runnable leaseRelease;
+
+    /** Key material being prepared in the background for an upcoming key, or null. */
+    @ToString.Exclude
+    private KeyRotation pendingRotation;
+
+    /** In hybrid mode, the dataset build in progress while a light VM serves hashes, or null. */
+    @ToString.Exclude
+    private volatile CompletableFuture<RandomXDataset> datasetBuild;
+
+    /**
+     * Creates a template. Use {@link #builder()}.
+     *
+     * @param miningMode Whether to hash with a full dataset.
+     * @param hybridMode Whether mining mode hashes with a light VM until the dataset is built.
+     * @param flags      Base RandomX flags.
+     * @param cache      Cache for RandomX operations. Managed by the caller.
+     * @param dataset    Initialized dataset for mining operations, or null to let the template build one.
+     *                   Managed by the caller.
+     * @param registry   Registry to lease the cache and dataset from, or null.
+     */
+    @Builder
+    RandomXTemplate(boolean miningMode, boolean hybridMode, Set<RandomXFlag> flags, RandomXCache cache,
+                    RandomXDataset dataset, RandomXResourceRegistry registry) {
+        this.miningMode = miningMode;
+        this.hybridMode = hybridMode;
+        this.flags = flags;
+        this.cache = cache;
+        this.dataset = dataset;
+        this.registry = registry;
+    }
+
     /**
      * Initializes the RandomX virtual machine (VM) with the configured settings.
      * This method must be called before any hash calculation.
      * If in mining mode, the dataset should be initialized before calling this method,
      * and if in light mode, the cache should be initialized.
+     * A dataset supplied to the builder is used as is. In hybrid mode this returns as soon as the light VM
+     * exists; the dataset is built in the background.
+     *
+     * @throws IllegalStateException if a registry is used and no key has been set.
      */
-    public void init() {
+    public synchronized void init() {
+        if (registry != null && leaseRelease == null) {
+            throw new IllegalStateException("Call changeKey() before init() when using a resource registry.");
+        }
         Set<RandomXFlag> vmFlags = EnumSet.copyOf(flags);
-        if (miningMode) {
+        if (miningMode && hybridMode && dataset == null) {
+            startHybrid();
+            log.info("RandomXTemplate initialized in hybrid mode. Light VM created, dataset building in the background.");
+            return;
+        }
+        if (miningMode && dataset != null) {
+            vmFlags.add(RandomXFlag.FULL_MEM);
+            log.debug("Mining mode enabled. Using the supplied dataset.");
+        } else if (miningMode) {
             vmFlags.add(RandomXFlag.FULL_MEM);
             // Ensure cache is initialized with currentKey before creating dataset
             if (this.currentKey == null) {
@@ -81,10 +164,11 @@ public class RandomXTemplate implements AutoCloseable {
 
             log.debug("Mining mode enabled. Creating and initializing dataset with flags: {}", vmFlags);
             dataset = new RandomXDataset(vmFlags); // Dataset uses its own flags, usually including FULL_MEM
+            ownsDataset = true;
             dataset.init(cache); // Dataset initialization depends on an initialized cache
         } else {
             vmFlags.remove(RandomXFlag.FULL_MEM);
-            if (dataset != null) {
+            if (dataset != null && ownsDataset) {
                 dataset.close(); // Ensure previous dataset is closed if switching modes
             }
             dataset = null;
@@ -106,7 +190,7 @@ public class RandomXTemplate implements AutoCloseable {
      * @param key The new key (typically a seed hash) to initialize RandomX components with.
      * @throws IllegalArgumentException if the key is null or empty.
      */
-    public void changeKey(byte[] key) {
+    public synchronized void changeKey(byte[] key) {
         if (key == null || key.length == 0) {
             throw new IllegalArgumentException("Key cannot be null or empty for changeKey operation.");
         }
@@ -117,6 +201,36 @@ public class RandomXTemplate implements AutoCloseable {
             return;
         }
 
+        // Callers are blocked for the whole switch, so its duration is the stall reported to metrics.
+        long start = System.nanoTime();
+        switchKey(key);
+        RandomXMetrics.listener().keyChanged(System.nanoTime() - start);
+    }
+
+    /**
+     * Switches to a new key: applies a prepared rotation, a registry lease, or re-initializes in place.
+     */
+    private void switchKey(byte[] key) {
+        if (datasetBuild != null) {
+            // The build reads the cache, so it must stop before the cache is re-initialized or replaced.
+            dataset.cancelInit();
+        }
+
+        KeyRotation rotation = pendingRotation;
+        pendingRotation = null;
+        if (rotation != null) {
+            if (Arrays.equals(rotation.key, key) && rotation.await()) {
+                applyRotation(rotation);
+                return;
+            }
+            rotation.discard();
+        }
+
+        if (registry != null) {
+            switchLease(key);
+            return;
+        }
+
         log.info("Changing RandomX key. Old key hash (if any): {}, New key hash: {}", 
             (this.currentKey != null ? Arrays.hashCode(this.currentKey) : "N/A"), Arrays.hashCode(key));
 
@@ -135,9 +249,15 @@ public class RandomXTemplate implements AutoCloseable {
         }
 
         // If in mining mode, the dataset also needs to be reinitialized with the new cache.
-        if (miningMode) {
+        if (miningMode && hybridMode) {
+            // Without a VM, init() starts the build; otherwise serve the new key with a light VM meanwhile.
+            if (vm != null) {
+                log.debug("Hybrid mode: Serving the new key with a light VM while the dataset is rebuilt.");
+                startHybrid();
+            }
+        } else if (miningMode) {
             log.debug("Mining mode: Reinitializing dataset due to key change.");
-            if (dataset != null) {
+            if (dataset != null && ownsDataset) {
                 dataset.close(); // Close the old dataset
             }
             // Create and initialize a new dataset with the (now re-initialized) cache.
@@ -146,6 +266,7 @@ public class RandomXTemplate implements AutoCloseable {
             datasetFlags.add(RandomXFlag.FULL_MEM);
             
             dataset = new RandomXDataset(datasetFlags);
+            ownsDataset = true;
             dataset.init(cache); // Initialize with the cache that has the new key.
             
             if (vm != null) {
@@ -165,6 +286,198 @@ public class RandomXTemplate implements AutoCloseable {
         log.info("RandomX key changed and components reinitialized successfully.");
     }
 
+    /**
+     * Leases the cache (and, in mining mode, the dataset) for a key from the registry, rebinds the VM
+     * and then returns the previous lease.
+     */
+    private void switchLease(byte[] key) {
+        Runnable previous = leaseRelease;
+        if (miningMode) {
+            RandomXDatasetLease lease = registry.acquireDataset(key, flags);
+            cache = lease.getCache();
+            dataset = lease.getDataset();
+            leaseRelease = lease::close;
+        } else {
+            RandomXCacheLease lease = registry.acquireCache(key, flags);
+            cache = lease.getCache();
+            leaseRelease = lease::close;
+        }
+        currentKey = Arrays.copyOf(key, key.length);
+        if (vm != null) {
+            vm.setCache(cache);
+            if (miningMode) {
+                vm.setDataset(dataset);
+            }
+        }
+        if (previous != null) {
+            previous.run();
+        }
+        log.info("RandomX key changed to shared key material from the resource registry.");
+    }
+
+    /**
+     * Starts building the cache (and, in mining mode, the dataset) for an upcoming key in the background.
+     * The current key keeps serving hashes meanwhile. A later {@link #changeKey(byte[])} with the same key
+     * waits for the preparation if it is still running and then switches the VM over without re-initializing.
+     * <p>
+     * While the preparation is pending, memory for both the current and the next key is allocated.
+     * Preparing a different key discards any earlier preparation.
+     *
+     * @param nextKey The upcoming key.
+     * @return A future completing when the key material is ready.
+     * @throws IllegalArgumentException if the key is null or empty.
+     * @throws IllegalStateException if the VM is not initialized.
+     */
+    public synchronized CompletableFuture<Void> prepareNextKey(byte[] nextKey) {
+        if (nextKey == null || nextKey.length == 0) {
+            throw new IllegalArgumentException("Key cannot be null or empty for prepareNextKey operation.");
+        }
+        if (vm == null) {
+            throw new IllegalStateException("RandomX VM is not initialized. Call init() before preparing the next key.");
+        }
+        if (Arrays.equals(currentKey, nextKey)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (pendingRotation != null) {
+            if (Arrays.equals(pendingRotation.key, nextKey)) {
+                return pendingRotation.future;
+            }
+            pendingRotation.discard();
+        }
+        KeyRotation rotation = new KeyRotation(Arrays.copyOf(nextKey, nextKey.length));
+        rotation.future = CompletableFuture.runAsync(rotation::build, task -> {
+            Thread thread = new Thread(task, "RandomX-Key-Rotation");
+            thread.setDaemon(true);
+            thread.start();
+        });
+        pendingRotation = rotation;
+        log.info("Preparing RandomX key material in the background. Key hash: {}", Arrays.hashCode(nextKey));
+        return rotation.future;
+    }
+
+    /**
+     * Switches the VM to prepared key material and releases the material it replaces.
+     */
+    private void applyRotation(KeyRotation rotation) {
+        if (datasetBuild != null) {
+            // A light VM is still serving in hybrid mode; the prepared dataset is complete, so go straight to full mode.
+            RandomXVM fullVm = new RandomXVM(fullMemFlags(), rotation.cache, rotation.dataset);
+            vm.close();
+            vm = fullVm;
+            datasetBuild = null;
+        } else {
+            vm.setCache(rotation.cache);
+            if (miningMode) {
+                vm.setDataset(rotation.dataset);
+            }
+        }
+        RandomXCache oldCache = cache;
+        boolean ownedOldCache = ownsCache;
+        RandomXDataset oldDataset = dataset;
+        boolean ownedOldDataset = ownsDataset;
+        Runnable oldLeaseRelease = leaseRelease;
+
+        cache = rotation.cache;
+        dataset = rotation.dataset;
+        currentKey = rotation.key;
+        leaseRelease = rotation.leaseRelease;
+        ownsCache = leaseRelease == null;
+        ownsDataset = leaseRelease == null && dataset != null;
+
+        // The VM no longer references the old key material, so it can be freed right away.
+        if (oldDataset != null && ownedOldDataset) {
+            oldDataset.close();
+        }
+        if (ownedOldCache) {
+            oldCache.close();
+        }
+        if (oldLeaseRelease != null) {
+            oldLeaseRelease.run();
+        }
+        log.info("RandomX key changed to prepared key material without re-initialization.");
+    }
+
+    /**
+     * Replaces the VM with a light VM on the current cache and starts building a new dataset in the background.
+     * Any previous VM and dataset are released.
+     */
+    private void startHybrid() {
+        Set<RandomXFlag> lightFlags = EnumSet.copyOf(flags);
+        lightFlags.remove(RandomXFlag.FULL_MEM);
+        RandomXVM lightVm = new RandomXVM(lightFlags, cache, null);
+        if (vm != null) {
+            vm.close();
+        }
+        vm = lightVm;
+        if (dataset != null && ownsDataset) {
+            dataset.close(); // Also stops a build that is still in progress
+        }
+        dataset = new RandomXDataset(fullMemFlags());
+        ownsDataset = true;
+        datasetBuild = dataset.initAsync(cache, null, RandomXDataset.DEFAULT_INIT_THREADS, null);
+    }
+
+    /**
+     * Switches from the light VM to a full-memory VM once the background dataset build has finished.
+     * If the build failed, the template keeps hashing in light mode.
+     */
+    private synchronized void promoteIfReady() {
+        CompletableFuture<RandomXDataset> build = datasetBuild;
+        if (build == null || !build.isDone()) {
+            return;
+        }
+        datasetBuild = null;
+        if (build.isCompletedExceptionally()) {
+            log.error("Background dataset build failed. Continuing in light mode.");
+            dataset.close();
+            dataset = null;
+            return;
+        }
+        RandomXVM fullVm = new RandomXVM(fullMemFlags(), cache, dataset);
+        vm.close();
+        vm = fullVm;
+        log.info("Dataset ready. RandomXTemplate switched from light VM to full-memory VM.");
+    }
+
+    private Set<RandomXFlag> fullMemFlags() {
+        Set<RandomXFlag> vmFlags = EnumSet.copyOf(flags);
+        vmFlags.add(RandomXFlag.FULL_MEM);
+        return vmFlags;
+    }
+
+    /**
+     * Returns the VM to hash with, switching to full mode first if a hybrid-mode dataset build has finished.
+     */
+    private RandomXVM readyVm() {
+        CompletableFuture<RandomXDataset> build = datasetBuild;
+        if (build != null && build.isDone()) {
+            promoteIfReady();
+        }
+        if (vm == null) {
+            throw new IllegalStateException("RandomX VM is not initialized. Call init() first or ensure key is set.");
+        }
+        return vm;
+    }
+
+    /**
+     * @return true if hashes are computed with the full dataset, i.e. not in light mode and not
+     *         waiting for a hybrid-mode dataset build.
+     */
+    public boolean isDatasetReady() {
+        return miningMode && vm != null && datasetBuild == null && dataset != null;
+    }
+
+    /**
+     * Returns a future that completes when the dataset is ready. In hybrid mode this is the background build;
+     * the switch to the full-memory VM happens on the next hash call after it completes.
+     *
+     * @return The dataset future, already completed if no build is in progress.
+     */
+    public CompletableFuture<RandomXDataset> datasetReady() {
+        CompletableFuture<RandomXDataset> build = datasetBuild;
+        return build != null ? build.thenApply(ready -> ready) : CompletableFuture.completedFuture(dataset);
+    }
+
     /**
      * Performs a single hash calculation using the RandomX VM.
      *
@@ -173,10 +486,47 @@ public class RandomXTemplate implements AutoCloseable {
      * @throws IllegalStateException if the VM is not initialized.
      */
     public byte[] calculateHash(byte[] input) {
-        if (vm == null) {
-            throw new IllegalStateException("RandomX VM is not initialized. Call init() first or ensure key is set.");
-        }
-        return vm.calculateHash(input);
+        return readyVm().calculateHash(input);
+    }
+
+    /**
+     * Performs a single hash calculation on a slice of {@code input}, writing the hash into a
+     * caller-supplied array without allocating.
+     *
+     * @param input        The array holding the data to be hashed.
+     * @param offset       Offset of the data within {@code input}.
+     * @param length       Number of bytes to hash.
+     * @param output       The array receiving the 32-byte hash.
+     * @param outputOffset Offset within {@code output} at which the hash is written.
+     * @throws IllegalStateException if the VM is not initialized.
+     */
+    public void calculateHash(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        readyVm().calculateHash(input, offset, length, output, outputOffset);
+    }
+
+    /**
+     * Performs a single hash calculation on the remaining bytes of {@code input}, writing the hash at the
+     * current position of {@code output}. Direct buffers are passed to the native library without copying.
+     *
+     * @param input  The buffer holding the data to be hashed.
+     * @param output The buffer receiving the 32-byte hash.
+     * @throws IllegalStateException if the VM is not initialized.
+     * @see RandomXVM#calculateHash(ByteBuffer, ByteBuffer)
+     */
+    public void calculateHash(ByteBuffer input, ByteBuffer output) {
+        readyVm().calculateHash(input, output);
+    }
+
+    /**
+     * Calculates the hashes of several inputs using the pipelined native hashing sequence.
+     *
+     * @param inputs The inputs to be hashed.
+     * @return The 32-byte hashes, in the same order as {@code inputs}.
+     * @throws IllegalStateException if the VM is not initialized.
+     * @see RandomXVM#calculateHashBatch(List)
+     */
+    public List<byte[]> calculateHashBatch(List<byte[]> inputs) {
+        return readyVm().calculateHashBatch(inputs);
     }
 
     /**
@@ -186,10 +536,7 @@ public class RandomXTemplate implements AutoCloseable {
      * @throws IllegalStateException if the VM is not initialized.
      */
     public void calculateHashFirst(byte[] input) {
-        if (vm == null) {
-            throw new IllegalStateException("RandomX VM is not initialized. Call init() first or ensure key is set.");
-        }
-        vm.calculateHashFirst(input);
+        readyVm().calculateHashFirst(input);
     }
 
     /**
@@ -227,36 +574,142 @@ public class RandomXTemplate implements AutoCloseable {
      * @throws IllegalStateException if the VM is not initialized.
      */
     public byte[] calculateCommitment(byte[] input) {
-        if (vm == null) {
-            throw new IllegalStateException("RandomX VM is not initialized. Call init() first or ensure key is set.");
+        RandomXVM vm = readyVm();
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
         }
-        byte[] hashOfInput = vm.calculateHash(input);
-
-        // Then, use the original input and this calculated hash to get the commitment.
-        return vm.calculateCommitment(input, hashOfInput);
+        // The VM hashes the input and derives the commitment from that hash without leaving native memory.
+        byte[] commitment = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        vm.calculateCommitment(input, 0, input.length, commitment, 0);
+        return commitment;
     }
 
     /**
      * Releases all allocated resources (VM and Dataset).
-     * The Cache is managed externally if passed to the builder, or internally if created by this template.
-     * The Current implementation assumes cache is provided via builder and its lifecycle is managed outside this close().
-     * If RandomXTemplate were to create its own RandomXCache, it should also close it here.
+     * A cache or dataset passed to the builder is managed externally and is not closed here; one created by this
+     * template is closed, and one leased from a registry is returned to it.
      */
     @Override
-    public void close() {
+    public synchronized void close() {
         log.debug("Closing RandomXTemplate resources...");
+        if (pendingRotation != null) {
+            pendingRotation.discard();
+            pendingRotation = null;
+        }
         if (vm != null) {
             log.debug("Closing RandomX VM...");
             vm.close();
             vm = null;
         }
-        if (dataset != null) {
+        if (dataset != null && ownsDataset) {
             log.debug("Closing RandomX Dataset...");
             dataset.close();
-            dataset = null;
+        }
+        dataset = null;
+        ownsDataset = false;
+        datasetBuild = null;
+        if (leaseRelease != null) {
+            leaseRelease.run();
+            leaseRelease = null;
         }
         // currentKey does not need explicit closing.
-        // Cache is not closed here as it's assumed to be managed externally (passed in via builder).
+        // The builder-provided cache is managed externally; only a cache created by key rotation is closed here.
+        if (ownsCache) {
+            cache.close();
+            ownsCache = false;
+        }
         log.info("RandomXTemplate resources closed.");
     }
+
+    /**
+     * Cache and dataset for an upcoming key, built on a background thread.
+     */
+    private final class KeyRotation {
+        final byte[] key;
+        volatile RandomXCache cache;
+        volatile RandomXDataset dataset;
+        volatile Runnable leaseRelease;
+        CompletableFuture<Void> future;
+
+        KeyRotation(byte[] key) {
+            this.key = key;
+        }
+
+        void build() {
+            long start = System.nanoTime();
+            try {
+                if (registry != null) {
+                    lease();
+                    return;
+                }
+                cache = new RandomXCache(flags);
+                cache.init(key);
+                if (miningMode) {
+                    Set<RandomXFlag> datasetFlags = EnumSet.copyOf(flags);
+                    datasetFlags.add(RandomXFlag.FULL_MEM);
+                    dataset = new RandomXDataset(datasetFlags);
+                    dataset.init(cache);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to prepare RandomX key material in the background.", e);
+                closeResources();
+                throw e;
+            }
+            log.info("Prepared RandomX key material in {} ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        private void lease() {
+            if (miningMode) {
+                RandomXDatasetLease lease = registry.acquireDataset(key, flags);
+                cache = lease.getCache();
+                dataset = lease.getDataset();
+                leaseRelease = lease::close;
+            } else {
+                RandomXCacheLease lease = registry.acquireCache(key, flags);
+                cache = lease.getCache();
+                leaseRelease = lease::close;
+            }
+            log.info("Leased RandomX key material for the next key from the resource registry.");
+        }
+
+        /**
+         * Waits for the preparation to finish.
+         *
+         * @return true if the key material is ready, false if the preparation failed.
+         */
+        boolean await() {
+            try {
+                future.join();
+                return true;
+            } catch (CompletionException | CancellationException e) {
+                log.warn("Background key preparation failed. Falling back to synchronous re-initialization.");
+                return false;
+            }
+        }
+
+        /**
+         * Releases the prepared key material once the preparation has finished.
+         */
+        void discard() {
+            future.whenComplete((ignored, error) -> closeResources());
+        }
+
+        private void closeResources() {
+            if (leaseRelease != null) {
+                leaseRelease.run();
+                leaseRelease = null;
+                cache = null;
+                dataset = null;
+                return;
+            }
+            if (dataset != null) {
+                dataset.close();
+                dataset = null;
+            }
+            if (cache != null) {
+                cache.close();
+                cache = null;
+            }
+        }
+    }
 }
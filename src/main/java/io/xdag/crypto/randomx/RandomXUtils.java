@@ -23,6 +23,8 @@
  */
 package io.xdag.crypto.randomx;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Set;
 // No SystemUtils or StringUtils needed if we remove platform-specific logic
 import java.util.stream.Collectors;
@@ -98,4 +100,18 @@ public final class RandomXUtils {
         logInfo("Final recommended flags set: " + flagsSet.stream().map(Enum::name).collect(Collectors.joining(", ")));
         return flagsSet;
     }
+
+    /**
+     * Computes the SHA-256 digest used to identify keys in files written by this library.
+     *
+     * @param data The data to digest.
+     * @return The 32-byte digest.
+     */
+    static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
 }
\ No newline at end of file
@@ -24,11 +24,21 @@
 package io.xdag.crypto.randomx;
 
 import com.sun.jna.Memory;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Wrapper class for RandomX virtual machine operations.
@@ -36,6 +46,29 @@ import java.util.Set;
  */
 @Slf4j
 public class RandomXVM implements AutoCloseable {
+    /**
+     * Initial capacity of the reusable native input buffer, large enough for typical block headers.
+     */
+    static final int DEFAULT_INPUT_CAPACITY = 256;
+
+    /**
+     * Native memory of a VM's scratchpad, the bulk of its allocation.
+     */
+    static final long SCRATCHPAD_BYTES = 2L * 1024 * 1024;
+
+    /**
+     * Estimated native memory of a VM: the scratchpad plus the JIT code buffer.
+     */
+    public static final long NATIVE_BYTES = SCRATCHPAD_BYTES + 64L * 1024;
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    /**
+     * Process-unique id of this VM, used to attribute metrics.
+     */
+    @Getter
+    private final long id = NEXT_ID.incrementAndGet();
+
     /**
      * The RandomX flags used to configure this VM.
      */
@@ -43,10 +76,9 @@ public class RandomXVM implements AutoCloseable {
     private final Set<RandomXFlag> flags;
 
     /**
-     * Pointer to the native VM instance.
+     * Owner of the native VM instance.
      */
-    @Getter
-    private final Pointer vmPointer;
+    private final RandomXNativeHandle handle;
 
     /**
      * The cache used by this VM.
@@ -60,6 +92,32 @@ public class RandomXVM implements AutoCloseable {
     @Getter
     private RandomXDataset dataset;
 
+    /**
+     * Reusable native buffer for hash inputs. Grown on demand when an input exceeds its capacity.
+     */
+    private Memory inputBuffer;
+
+    /**
+     * Reusable native buffer for hash results. The first 32 bytes receive hashes (and hold the
+     * pre-calculated hash for commitments), the last 32 bytes receive commitments.
+     */
+    private final Memory outputBuffer;
+
+    /**
+     * View of the commitment half of {@link #outputBuffer}.
+     */
+    private final Pointer commitmentBuffer;
+
+    /**
+     * Little-endian view of the hash half of {@link #outputBuffer}, used to check hashes in place.
+     */
+    private final ByteBuffer hashView;
+
+    /**
+     * Reusable native buffer receiving the hashes of a batch. Allocated on first use and grown on demand.
+     */
+    private Memory batchOutputBuffer;
+
     /**
      * Creates a new RandomX VM instance with the specified configuration.
      *
@@ -67,6 +125,7 @@ public class RandomXVM implements AutoCloseable {
      * @param cache The cache to use for VM operations.
      * @param dataset The dataset to use for VM operations (may be null for light mode).
      * @throws RuntimeException if VM creation fails.
+     * @throws IllegalStateException if the native memory budget does not allow the allocation.
      * @throws IllegalArgumentException if parameters are invalid.
      */
     public RandomXVM(Set<RandomXFlag> flags, RandomXCache cache, RandomXDataset dataset) {
@@ -89,31 +148,56 @@ public class RandomXVM implements AutoCloseable {
         Pointer cachePtr = cache.getCachePointer();
         Pointer datasetPtr = (dataset != null) ? dataset.getDatasetPointer() : null;
 
+        RandomXNativeMemory.Reservation reservation = RandomXNativeMemory.reserve(RandomXMetricsListener.Resource.VM, NATIVE_BYTES);
         log.debug("Preparing to create RandomX VM. Flags: {} ({}), Cache Ptr: {}, Dataset Ptr: {}",
             flags, flagsValue, Pointer.nativeValue(cachePtr), (datasetPtr != null ? Pointer.nativeValue(datasetPtr) : "null"));
 
-        this.vmPointer = RandomXNative.randomx_create_vm(flagsValue, cachePtr, datasetPtr);
+        Pointer vmPointer = RandomXNative.randomx_create_vm(flagsValue, cachePtr, datasetPtr);
 
         if (vmPointer == null) {
+            reservation.release();
             String errorMsg = String.format("Failed to create RandomX VM with flags: %s (%d)", flags, flagsValue);
             log.error(errorMsg);
             throw new RuntimeException(errorMsg);
         }
+        this.handle = new RandomXNativeHandle(this, RandomXMetricsListener.Resource.VM, vmPointer,
+                RandomXNative::randomx_destroy_vm, reservation);
+
+        this.inputBuffer = new Memory(DEFAULT_INPUT_CAPACITY);
+        this.outputBuffer = new Memory(2L * RandomXUtils.RANDOMX_HASH_SIZE);
+        this.commitmentBuffer = outputBuffer.share(RandomXUtils.RANDOMX_HASH_SIZE, RandomXUtils.RANDOMX_HASH_SIZE);
+        this.hashView = outputBuffer.getByteBuffer(0, RandomXUtils.RANDOMX_HASH_SIZE).order(ByteOrder.LITTLE_ENDIAN);
 
+        RandomXMetrics.listener().vmCreated(id);
         log.info("RandomX VM created successfully. Pointer: {}, Flags: {}", Pointer.nativeValue(vmPointer), flags);
     }
 
+    /**
+     * Gets the pointer to the underlying native RandomX VM.
+     *
+     * @return Pointer to the native VM.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public Pointer getVmPointer() {
+        return handle.get("VM");
+    }
+
+    /**
+     * @return true once {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return handle.isClosed();
+    }
+
     /**
      * Updates the cache used by this VM.
      *
      * @param newCache The new cache to use.
      * @throws IllegalArgumentException if newCache is null or its pointer is null.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public void setCache(RandomXCache newCache) {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot set cache.");
-        }
+        Pointer vmPointer = handle.get("VM");
         if (newCache == null || newCache.getCachePointer() == null) {
             throw new IllegalArgumentException("New cache instance or its pointer cannot be null.");
         }
@@ -127,12 +211,10 @@ public class RandomXVM implements AutoCloseable {
      *
      * @param newDataset The new dataset to use (can be null for light mode).
      * @throws IllegalArgumentException if newDataset is not null but its pointer is null.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public void setDataset(RandomXDataset newDataset) {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot set dataset.");
-        }
+        Pointer vmPointer = handle.get("VM");
         // If newDataset is not null, its pointer also cannot be null
         if (newDataset != null && newDataset.getDatasetPointer() == null) {
             throw new IllegalArgumentException("If a new dataset is provided, its pointer cannot be null.");
@@ -149,27 +231,152 @@ public class RandomXVM implements AutoCloseable {
      * @param input The input data to be hashed.
      * @return A 32-byte array containing the calculated hash.
      * @throws IllegalArgumentException if input is null.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public byte[] calculateHash(byte[] input) {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot calculate hash.");
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
         }
+        byte[] output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        calculateHash(input, 0, input.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Calculates a RandomX hash of a slice of {@code input} and writes it into a caller-supplied array.
+     * The input is staged in this VM's reusable native buffer, so steady-state hashing performs
+     * no Java or native allocations.
+     *
+     * @param input        The array holding the data to be hashed.
+     * @param offset       Offset of the data within {@code input}.
+     * @param length       Number of bytes to hash.
+     * @param output       The array receiving the 32-byte hash.
+     * @param outputOffset Offset within {@code output} at which the hash is written.
+     * @throws IllegalArgumentException if input or output is null.
+     * @throws IndexOutOfBoundsException if the input or output range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateHash(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        Pointer vmPointer = handle.get("VM");
+        checkInput(input, offset, length);
+        checkOutput(output, outputOffset);
+        long start = System.nanoTime();
+        stageInput(input, offset, length);
+        RandomXNative.randomx_calculate_hash(vmPointer, inputBuffer, length, outputBuffer);
+        outputBuffer.read(0, output, outputOffset, RandomXUtils.RANDOMX_HASH_SIZE);
+        hashed(1, start);
+    }
+
+    /**
+     * Calculates a RandomX hash of the remaining bytes of {@code input} and writes it at the current
+     * position of {@code output}. Direct buffers are handed to the native library by address, so hashing
+     * data that already lives off-heap (e.g. in a network buffer) copies nothing; heap buffers are staged
+     * through this VM's reusable native buffers.
+     * On return, the input position equals its limit and the output position has advanced by 32 bytes.
+     *
+     * @param input  The buffer holding the data to be hashed.
+     * @param output The buffer receiving the 32-byte hash.
+     * @throws IllegalArgumentException if input or output is null, or output has fewer than 32 bytes remaining.
+     * @throws ReadOnlyBufferException if output is read-only.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateHash(ByteBuffer input, ByteBuffer output) {
+        Pointer vmPointer = handle.get("VM");
         if (input == null) {
             throw new IllegalArgumentException("Input cannot be null.");
         }
-        byte[] output = new byte[32]; // RandomX hash is always 32 bytes
-
-        // JNA Memory objects automatically manage native memory allocation and deallocation
-        // (at the end of their scope or during GC).
-        Memory inputMem = new Memory(input.length > 0 ? input.length : 1); // JNA Memory does not accept size 0
-        Memory outputMem = new Memory(output.length);
-      if (input.length > 0) {
-          inputMem.write(0, input, 0, input.length);
-      }
-      RandomXNative.randomx_calculate_hash(vmPointer, inputMem, input.length, outputMem);
-      outputMem.read(0, output, 0, output.length);
-      return output;
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null.");
+        }
+        if (output.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        if (output.remaining() < RandomXUtils.RANDOMX_HASH_SIZE) {
+            throw new IllegalArgumentException("Output must have at least " + RandomXUtils.RANDOMX_HASH_SIZE + " bytes remaining.");
+        }
+
+        long start = System.nanoTime();
+        int length = input.remaining();
+        Pointer inputPtr;
+        if (input.isDirect()) {
+            inputPtr = Native.getDirectBufferPointer(input).share(input.position());
+        } else {
+            ensureInputCapacity(length);
+            if (input.hasArray()) {
+                inputBuffer.write(0, input.array(), input.arrayOffset() + input.position(), length);
+            } else {
+                // Read-only heap buffers do not expose their array.
+                inputBuffer.getByteBuffer(0, length).put(input.duplicate());
+            }
+            inputPtr = inputBuffer;
+        }
+
+        if (output.isDirect()) {
+            Pointer outputPtr = Native.getDirectBufferPointer(output).share(output.position());
+            RandomXNative.randomx_calculate_hash(vmPointer, inputPtr, length, outputPtr);
+        } else {
+            RandomXNative.randomx_calculate_hash(vmPointer, inputPtr, length, outputBuffer);
+            outputBuffer.read(0, output.array(), output.arrayOffset() + output.position(), RandomXUtils.RANDOMX_HASH_SIZE);
+        }
+        input.position(input.limit());
+        output.position(output.position() + RandomXUtils.RANDOMX_HASH_SIZE);
+        hashed(1, start);
+    }
+
+    /**
+     * Calculates the RandomX hash of a slice of {@code input} and checks whether it meets a target.
+     * The comparison reads the hash straight from this VM's native output buffer, so no array is allocated.
+     *
+     * @param input  The array holding the data to be hashed.
+     * @param offset Offset of the data within {@code input}.
+     * @param length Number of bytes to hash.
+     * @param target The target the hash must meet.
+     * @return true if the hash is less than or equal to the target.
+     * @throws IllegalArgumentException if input or target is null.
+     * @throws IndexOutOfBoundsException if the input range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public boolean meetsTarget(byte[] input, int offset, int length, RandomXTarget target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target cannot be null.");
+        }
+        hashInPlace(input, offset, length);
+        return target.isMetBy(hashView, 0);
+    }
+
+    /**
+     * Calculates the RandomX hash of a slice of {@code input} and checks whether it equals an expected hash.
+     * The comparison reads the hash straight from this VM's native output buffer, so no array is allocated.
+     *
+     * @param input          The array holding the data to be hashed.
+     * @param offset         Offset of the data within {@code input}.
+     * @param length         Number of bytes to hash.
+     * @param expectedHash   The array holding the expected 32-byte hash.
+     * @param expectedOffset Offset of the expected hash within {@code expectedHash}.
+     * @return true if the hashes are equal.
+     * @throws IllegalArgumentException if input or expectedHash is null.
+     * @throws IndexOutOfBoundsException if the input or expected hash range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public boolean verify(byte[] input, int offset, int length, byte[] expectedHash, int expectedOffset) {
+        if (expectedHash == null) {
+            throw new IllegalArgumentException("Expected hash cannot be null.");
+        }
+        Objects.checkFromIndexSize(expectedOffset, RandomXUtils.RANDOMX_HASH_SIZE, expectedHash.length);
+        hashInPlace(input, offset, length);
+        return hashView.mismatch(ByteBuffer.wrap(expectedHash, expectedOffset, RandomXUtils.RANDOMX_HASH_SIZE)) < 0;
+    }
+
+    /**
+     * Hashes a slice of {@code input} into the first half of {@link #outputBuffer}, leaving it there.
+     */
+    private void hashInPlace(byte[] input, int offset, int length) {
+        Pointer vmPointer = handle.get("VM");
+        checkInput(input, offset, length);
+        long start = System.nanoTime();
+        stageInput(input, offset, length);
+        RandomXNative.randomx_calculate_hash(vmPointer, inputBuffer, length, outputBuffer);
+        hashed(1, start);
     }
 
     /**
@@ -177,20 +384,31 @@ public class RandomXVM implements AutoCloseable {
      *
      * @param input The input data.
      * @throws IllegalArgumentException if input is null.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public void calculateHashFirst(byte[] input) {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot start multi-part hash.");
-        }
         if (input == null) {
             throw new IllegalArgumentException("Input cannot be null.");
         }
-        Memory inputMem = new Memory(input.length > 0 ? input.length : 1);
-      if (input.length > 0) {
-         inputMem.write(0, input, 0, input.length);
-     }
-      RandomXNative.randomx_calculate_hash_first(vmPointer, inputMem, input.length);
+        calculateHashFirst(input, 0, input.length);
+    }
+
+    /**
+     * Begins a multi-part hash calculation using a slice of {@code input}.
+     *
+     * @param input  The array holding the input data.
+     * @param offset Offset of the data within {@code input}.
+     * @param length Number of bytes to hash.
+     * @throws IllegalArgumentException if input is null.
+     * @throws IndexOutOfBoundsException if the input range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateHashFirst(byte[] input, int offset, int length) {
+        Pointer vmPointer = handle.get("VM");
+        checkInput(input, offset, length);
+        stageInput(input, offset, length);
+        RandomXNative.randomx_calculate_hash_first(vmPointer, inputBuffer, length);
+        Reference.reachabilityFence(this);
     }
 
     /**
@@ -199,41 +417,162 @@ public class RandomXVM implements AutoCloseable {
      * @param input The input data.
      * @return A 32-byte array containing the intermediate hash result.
      * @throws IllegalArgumentException if input is null.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public byte[] calculateHashNext(byte[] input) {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot continue multi-part hash.");
-        }
         if (input == null) {
             throw new IllegalArgumentException("Input cannot be null.");
         }
-        byte[] output = new byte[32];
-        Memory inputMem = new Memory(input.length > 0 ? input.length : 1);
-        Memory outputMem = new Memory(output.length);
-      if (input.length > 0) {
-          inputMem.write(0, input, 0, input.length);
-      }
-      RandomXNative.randomx_calculate_hash_next(vmPointer, inputMem, input.length, outputMem);
-      outputMem.read(0, output, 0, output.length);
-      return output;
+        byte[] output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        calculateHashNext(input, 0, input.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Continues a multi-part hash calculation using a slice of {@code input}, writing the hash of the
+     * previous input into a caller-supplied array.
+     *
+     * @param input        The array holding the next input data.
+     * @param offset       Offset of the data within {@code input}.
+     * @param length       Number of bytes to hash.
+     * @param output       The array receiving the 32-byte hash of the previous input.
+     * @param outputOffset Offset within {@code output} at which the hash is written.
+     * @throws IllegalArgumentException if input or output is null.
+     * @throws IndexOutOfBoundsException if the input or output range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateHashNext(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        Pointer vmPointer = handle.get("VM");
+        checkInput(input, offset, length);
+        checkOutput(output, outputOffset);
+        long start = System.nanoTime();
+        stageInput(input, offset, length);
+        RandomXNative.randomx_calculate_hash_next(vmPointer, inputBuffer, length, outputBuffer);
+        outputBuffer.read(0, output, outputOffset, RandomXUtils.RANDOMX_HASH_SIZE);
+        hashed(1, start);
     }
 
     /**
      * Finalizes a multi-part hash calculation.
      *
      * @return A 32-byte array containing the final hash result.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public byte[] calculateHashLast() {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot finalize multi-part hash.");
+        byte[] output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        calculateHashLast(output, 0);
+        return output;
+    }
+
+    /**
+     * Finalizes a multi-part hash calculation, writing the final hash into a caller-supplied array.
+     *
+     * @param output       The array receiving the 32-byte hash.
+     * @param outputOffset Offset within {@code output} at which the hash is written.
+     * @throws IllegalArgumentException if output is null.
+     * @throws IndexOutOfBoundsException if the output range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateHashLast(byte[] output, int outputOffset) {
+        Pointer vmPointer = handle.get("VM");
+        checkOutput(output, outputOffset);
+        long start = System.nanoTime();
+        RandomXNative.randomx_calculate_hash_last(vmPointer, outputBuffer);
+        outputBuffer.read(0, output, outputOffset, RandomXUtils.RANDOMX_HASH_SIZE);
+        hashed(1, start);
+    }
+
+    /**
+     * Calculates the RandomX hashes of several inputs, pipelining them through the native
+     * {@code randomx_calculate_hash_first/next/last} sequence so that program generation for one input
+     * overlaps the execution of the previous one.
+     *
+     * @param inputs The inputs to be hashed.
+     * @return The 32-byte hashes, in the same order as {@code inputs}.
+     * @throws IllegalArgumentException if inputs or any of its elements is null.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public List<byte[]> calculateHashBatch(List<byte[]> inputs) {
+        if (inputs == null) {
+            throw new IllegalArgumentException("Inputs cannot be null.");
+        }
+        int count = inputs.size();
+        byte[] output = new byte[count * RandomXUtils.RANDOMX_HASH_SIZE];
+        calculateHashBatch(inputs.toArray(new byte[0][]), output, 0);
+
+        List<byte[]> hashes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = i * RandomXUtils.RANDOMX_HASH_SIZE;
+            hashes.add(Arrays.copyOfRange(output, from, from + RandomXUtils.RANDOMX_HASH_SIZE));
         }
-        byte[] output = new byte[32];
-        Memory outputMem = new Memory(output.length);
-      RandomXNative.randomx_calculate_hash_last(vmPointer, outputMem);
-      outputMem.read(0, output, 0, output.length);
-      return output;
+        return hashes;
+    }
+
+    /**
+     * Calculates the RandomX hashes of several inputs using the pipelined native sequence and writes them
+     * contiguously into {@code output}: the hash of {@code inputs[i]} is stored at
+     * {@code outputOffset + 32 * i}.
+     * <p>
+     * Each input is copied once, straight into this VM's reusable native input buffer, and all hashes are read
+     * back with a single copy, so each item costs exactly one native hashing call.
+     *
+     * @param inputs       The inputs to be hashed.
+     * @param output       The array receiving {@code 32 * inputs.length} bytes of hashes.
+     * @param outputOffset Offset within {@code output} at which the first hash is written.
+     * @throws IllegalArgumentException if inputs, any of its elements, or output is null.
+     * @throws IndexOutOfBoundsException if output is too small.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateHashBatch(byte[][] inputs, byte[] output, int outputOffset) {
+        Pointer vmPointer = handle.get("VM");
+        if (inputs == null) {
+            throw new IllegalArgumentException("Inputs cannot be null.");
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null.");
+        }
+        int count = inputs.length;
+        int outputLength = Math.multiplyExact(count, RandomXUtils.RANDOMX_HASH_SIZE);
+        Objects.checkFromIndexSize(outputOffset, outputLength, output.length);
+        if (count == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int totalLength = 0;
+        for (byte[] input : inputs) {
+            if (input == null) {
+                throw new IllegalArgumentException("Inputs cannot contain null elements.");
+            }
+            totalLength = Math.addExact(totalLength, input.length);
+        }
+        // Each input is written once, straight into the reusable native buffer at its own offset.
+        ensureInputCapacity(totalLength);
+        int[] offsets = new int[count];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = position;
+            if (inputs[i].length > 0) {
+                inputBuffer.write(position, inputs[i], 0, inputs[i].length);
+            }
+            position += inputs[i].length;
+        }
+        ensureBatchOutputCapacity(outputLength);
+
+        if (count == 1) {
+            RandomXNative.randomx_calculate_hash(vmPointer, inputBuffer, inputs[0].length, batchOutputBuffer);
+        } else {
+            // hash_next(input[i]) finishes the hash of input[i - 1], hash_last finishes the final input.
+            RandomXNative.randomx_calculate_hash_first(vmPointer, inputBuffer, inputs[0].length);
+            for (int i = 1; i < count; i++) {
+                RandomXNative.randomx_calculate_hash_next(vmPointer, inputBuffer.share(offsets[i]), inputs[i].length,
+                        batchOutputBuffer.share((long) (i - 1) * RandomXUtils.RANDOMX_HASH_SIZE));
+            }
+            RandomXNative.randomx_calculate_hash_last(vmPointer,
+                    batchOutputBuffer.share((long) (count - 1) * RandomXUtils.RANDOMX_HASH_SIZE));
+        }
+        batchOutputBuffer.read(0, output, outputOffset, outputLength);
+        hashed(count, start);
     }
 
     /**
@@ -246,56 +585,154 @@ public class RandomXVM implements AutoCloseable {
      * @param preCalculatedHash The hash previously calculated from originalInput.
      * @return A 32-byte array containing the calculated commitment.
      * @throws IllegalArgumentException if originalInput or preCalculatedHash is null, or if preCalculatedHash is not 32 bytes.
-     * @throws IllegalStateException if the VM pointer is null.
+     * @throws IllegalStateException if the VM has been closed.
      */
     public byte[] calculateCommitment(byte[] originalInput, byte[] preCalculatedHash) {
-        if (vmPointer == null) {
-            throw new IllegalStateException("VM pointer is null, cannot calculate commitment.");
-        }
         if (originalInput == null) {
             throw new IllegalArgumentException("Original input cannot be null.");
         }
         if (preCalculatedHash == null || preCalculatedHash.length != RandomXUtils.RANDOMX_HASH_SIZE) {
             throw new IllegalArgumentException("Pre-calculated hash cannot be null and must be " + RandomXUtils.RANDOMX_HASH_SIZE + " bytes long.");
         }
-
         byte[] commitmentOutput = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
-        Memory originalInputMem = new Memory(originalInput.length > 0 ? originalInput.length : 1); // JNA requires non-zero size for empty inputs
-        Memory preCalculatedHashMem = new Memory(preCalculatedHash.length);
-        Memory commitmentOutputMem = new Memory(commitmentOutput.length);
-
-      if (originalInput.length > 0) {
-          originalInputMem.write(0, originalInput, 0, originalInput.length);
-      }
-      // preCalculatedHash is guaranteed to be non-null and 32 bytes here
-      preCalculatedHashMem.write(0, preCalculatedHash, 0, preCalculatedHash.length);
-
-      // Call the native method with parameters matching the C API
-      // (Pointer input, long inputSize, Pointer hash_in, Pointer com_out)
-      RandomXNative.randomx_calculate_commitment(originalInputMem, originalInput.length, preCalculatedHashMem, commitmentOutputMem);
-      commitmentOutputMem.read(0, commitmentOutput, 0, commitmentOutput.length);
-      return commitmentOutput;
+        calculateCommitment(originalInput, 0, originalInput.length, preCalculatedHash, 0, commitmentOutput, 0);
+        return commitmentOutput;
+    }
+
+    /**
+     * Calculates a commitment hash from a slice of the original input and a previously calculated hash,
+     * writing the commitment into a caller-supplied array.
+     *
+     * @param originalInput           The array holding the original input data.
+     * @param offset                  Offset of the data within {@code originalInput}.
+     * @param length                  Number of input bytes.
+     * @param preCalculatedHash       The array holding the 32-byte hash of the original input.
+     * @param preCalculatedHashOffset Offset of the hash within {@code preCalculatedHash}.
+     * @param output                  The array receiving the 32-byte commitment.
+     * @param outputOffset            Offset within {@code output} at which the commitment is written.
+     * @throws IllegalArgumentException if any array is null.
+     * @throws IndexOutOfBoundsException if any range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateCommitment(byte[] originalInput, int offset, int length,
+                                    byte[] preCalculatedHash, int preCalculatedHashOffset,
+                                    byte[] output, int outputOffset) {
+        Pointer vmPointer = handle.get("VM");
+        checkInput(originalInput, offset, length);
+        if (preCalculatedHash == null) {
+            throw new IllegalArgumentException("Pre-calculated hash cannot be null.");
+        }
+        Objects.checkFromIndexSize(preCalculatedHashOffset, RandomXUtils.RANDOMX_HASH_SIZE, preCalculatedHash.length);
+        checkOutput(output, outputOffset);
+
+        stageInput(originalInput, offset, length);
+        outputBuffer.write(0, preCalculatedHash, preCalculatedHashOffset, RandomXUtils.RANDOMX_HASH_SIZE);
+        RandomXNative.randomx_calculate_commitment(inputBuffer, length, outputBuffer, commitmentBuffer);
+        commitmentBuffer.read(0, output, outputOffset, RandomXUtils.RANDOMX_HASH_SIZE);
+    }
+
+    /**
+     * Calculates the hash of a slice of {@code input} and then its commitment, writing only the commitment
+     * into a caller-supplied array. The intermediate hash never leaves native memory.
+     *
+     * @param input        The array holding the input data.
+     * @param offset       Offset of the data within {@code input}.
+     * @param length       Number of bytes to hash.
+     * @param output       The array receiving the 32-byte commitment.
+     * @param outputOffset Offset within {@code output} at which the commitment is written.
+     * @throws IllegalArgumentException if input or output is null.
+     * @throws IndexOutOfBoundsException if the input or output range is out of bounds.
+     * @throws IllegalStateException if the VM has been closed.
+     */
+    public void calculateCommitment(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        Pointer vmPointer = handle.get("VM");
+        checkInput(input, offset, length);
+        checkOutput(output, outputOffset);
+
+        long start = System.nanoTime();
+        stageInput(input, offset, length);
+        RandomXNative.randomx_calculate_hash(vmPointer, inputBuffer, length, outputBuffer);
+        RandomXNative.randomx_calculate_commitment(inputBuffer, length, outputBuffer, commitmentBuffer);
+        commitmentBuffer.read(0, output, outputOffset, RandomXUtils.RANDOMX_HASH_SIZE);
+        hashed(1, start);
+    }
+
+    /**
+     * Reports hashes completed since {@code start} to the installed metrics listener.
+     */
+    private void hashed(long count, long start) {
+        // Keep this VM reachable until the native call has returned, so the leak safety net cannot free it.
+        Reference.reachabilityFence(this);
+        RandomXMetrics.listener().hashesComputed(id, count, System.nanoTime() - start);
+    }
+
+    /**
+     * Copies a slice of {@code input} into the reusable native input buffer, growing it if required.
+     */
+    private void stageInput(byte[] input, int offset, int length) {
+        ensureInputCapacity(length);
+        if (length > 0) {
+            inputBuffer.write(0, input, offset, length);
+        }
+    }
+
+    /**
+     * Ensures the reusable native input buffer can hold at least {@code length} bytes.
+     */
+    private void ensureInputCapacity(int length) {
+        if (inputBuffer.size() < length) {
+            // Grow to the next power of two so that a stream of slightly increasing inputs does not
+            // reallocate on every call.
+            long newCapacity = Math.max(DEFAULT_INPUT_CAPACITY, Long.highestOneBit((long) length - 1) << 1);
+            log.debug("Growing VM input buffer from {} to {} bytes.", inputBuffer.size(), newCapacity);
+            inputBuffer.close();
+            inputBuffer = new Memory(newCapacity);
+        }
+    }
+
+    /**
+     * Ensures the reusable native batch output buffer can hold at least {@code length} bytes.
+     */
+    private void ensureBatchOutputCapacity(int length) {
+        if (batchOutputBuffer == null || batchOutputBuffer.size() < length) {
+            if (batchOutputBuffer != null) {
+                batchOutputBuffer.close();
+            }
+            batchOutputBuffer = new Memory(length);
+        }
+    }
+
+    private static void checkInput(byte[] input, int offset, int length) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
+        }
+        Objects.checkFromIndexSize(offset, length, input.length);
+    }
+
+    private static void checkOutput(byte[] output, int outputOffset) {
+        if (output == null) {
+            throw new IllegalArgumentException("Output cannot be null.");
+        }
+        Objects.checkFromIndexSize(outputOffset, RandomXUtils.RANDOMX_HASH_SIZE, output.length);
     }
 
     /**
      * Releases native VM resources.
-     * This method is idempotent and can be called multiple times safely.
+     * This method is idempotent and can be called multiple times safely; after it, using the VM throws
+     * {@link IllegalStateException}.
      */
     @Override
     public void close() {
-        if (vmPointer != null) {
-            // Check if vmPointer is still valid to prevent operations on an already destroyed VM.
-            // While JNA's destroy is generally safe, this is an extra layer of protection.
-            try {
-                RandomXNative.randomx_destroy_vm(vmPointer);
-                log.info("RandomX VM destroyed. Pointer: {}", Pointer.nativeValue(vmPointer));
-            } catch (Throwable t) {
-                // Generally, destroy should not throw an error, but just in case.
-                log.error("Error occurred while destroying RandomX VM. Pointer: {}", Pointer.nativeValue(vmPointer), t);
+        if (handle.close()) {
+            log.info("RandomX VM destroyed. Pointer: {}", Pointer.nativeValue(handle.peek()));
+            RandomXMetrics.listener().vmDestroyed(id);
+            inputBuffer.close();
+            outputBuffer.close();
+            if (batchOutputBuffer != null) {
+                batchOutputBuffer.close();
             }
-            // Do not set vmPointer to null as it is final. The object itself will no longer be usable.
         } else {
-            log.debug("Attempting to destroy RandomX VM, but pointer is already null (possibly already destroyed or never created).");
+            log.debug("Attempting to destroy RandomX VM, but it is already destroyed.");
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,508 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of {@link RandomXVM} instances bound to a shared cache and (optionally) dataset.
+ * <p>
+ * A single {@link RandomXVM} is not thread-safe, and creating one is expensive when JIT is enabled.
+ * The pool creates its VMs once and hands them out to concurrent callers, either explicitly through
+ * {@link #acquire()} / {@link #release(RandomXVM)} or implicitly through the {@link #hash(byte[])}
+ * convenience methods. All VMs share the same native cache and dataset, so memory cost does not grow
+ * with the pool size beyond the per-VM scratchpad.
+ */
+@Slf4j
+public class RandomXVMPool implements AutoCloseable {
+
+    /** Flags used to create every VM in the pool. */
+    @Getter
+    private final Set<RandomXFlag> flags;
+
+    /** Cache shared by all VMs in the pool. */
+    @Getter
+    private volatile RandomXCache cache;
+
+    /** Dataset shared by all VMs in the pool (null in light mode). */
+    @Getter
+    private volatile RandomXDataset dataset;
+
+    /** Number of VMs owned by the pool. */
+    @Getter
+    private final int size;
+
+    /**
+     * If true, the {@code hash} convenience methods fail immediately when no VM is idle
+     * instead of blocking until one is released.
+     */
+    @Getter
+    private final boolean failFast;
+
+    private final List<RandomXVM> vms;
+
+    /** Idle VMs; guarded by {@link #lock}. */
+    private final ArrayDeque<RandomXVM> idle;
+
+    /** VMs handed out by {@code acquire} and not yet released; guarded by {@link #lock}. */
+    private final Set<RandomXVM> leased = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a VM becomes idle or the pool is closed. */
+    private final Condition available = lock.newCondition();
+
+    /** Serializes cache and dataset swaps, each of which must collect every VM. */
+    private final ReentrantLock swapLock = new ReentrantLock();
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and eagerly creates all of its VMs.
+     *
+     * @param flags    Flags used to create the VMs. Include {@link RandomXFlag#FULL_MEM} when a dataset is supplied.
+     * @param cache    Initialized cache shared by all VMs.
+     * @param dataset  Initialized dataset shared by all VMs, or null for light mode.
+     * @param size     Number of VMs to create; values below 1 default to the number of available processors.
+     * @param failFast Whether {@code hash} calls fail instead of blocking when the pool is exhausted.
+     * @throws IllegalArgumentException if flags or cache are invalid.
+     * @throws RuntimeException if a VM cannot be created.
+     */
+    @Builder
+    public RandomXVMPool(Set<RandomXFlag> flags, RandomXCache cache, RandomXDataset dataset, int size, boolean failFast) {
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+        if (cache == null) {
+            throw new IllegalArgumentException("Cache cannot be null.");
+        }
+        this.flags = flags;
+        this.cache = cache;
+        this.dataset = dataset;
+        this.size = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        this.failFast = failFast;
+        this.idle = new ArrayDeque<>(this.size);
+
+        List<RandomXVM> created = new ArrayList<>(this.size);
+        try {
+            for (int i = 0; i < this.size; i++) {
+                RandomXVM vm = new RandomXVM(flags, cache, dataset);
+                created.add(vm);
+                idle.add(vm);
+            }
+        } catch (Throwable t) {
+            log.error("Failed to create RandomX VM pool of size {}. Releasing {} VMs already created.", this.size, created.size());
+            created.forEach(RandomXVM::close);
+            throw t;
+        }
+        this.vms = Collections.unmodifiableList(created);
+        log.info("RandomX VM pool created with {} VMs. Flags: {}, Dataset: {}", this.size, flags, dataset != null ? "Present" : "Null");
+    }
+
+    /**
+     * Borrows a VM, blocking until one is idle.
+     * The VM must be handed back through {@link #release(RandomXVM)}.
+     *
+     * @return An idle VM.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the pool is closed, including while waiting.
+     */
+    public RandomXVM acquire() throws InterruptedException {
+        long start = System.nanoTime();
+        RandomXVM vm = takeIdle(-1, true);
+        return onAcquired(vm, start);
+    }
+
+    /**
+     * Borrows a VM if one is idle right now, without waiting.
+     *
+     * @return An idle VM, or null if all VMs are in use.
+     * @throws IllegalStateException if the pool is closed.
+     */
+    public RandomXVM tryAcquire() {
+        RandomXVM vm = poll();
+        if (vm == null) {
+            rejectedCount.increment();
+        }
+        return vm;
+    }
+
+    /**
+     * Borrows a VM if one is idle right now, like {@link #tryAcquire()}, but without counting a miss as a
+     * rejection. For callers that only use an extra VM opportunistically, so a busy pool is not overload.
+     *
+     * @return An idle VM, or null if all VMs are in use.
+     * @throws IllegalStateException if the pool is closed.
+     */
+    RandomXVM poll() {
+        RandomXVM vm;
+        lock.lock();
+        try {
+            checkOpen();
+            vm = idle.poll();
+            if (vm != null) {
+                leased.add(vm);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return vm == null ? null : onAcquired(vm, System.nanoTime());
+    }
+
+    /**
+     * Borrows a VM, waiting at most the given time for one to become idle.
+     *
+     * @param timeout Maximum time to wait.
+     * @param unit    Unit of {@code timeout}.
+     * @return An idle VM, or null if none became idle in time.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the pool is closed, including while waiting.
+     */
+    public RandomXVM tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        RandomXVM vm = takeIdle(Math.max(0, unit.toNanos(timeout)), true);
+        if (vm == null) {
+            rejectedCount.increment();
+            return null;
+        }
+        return onAcquired(vm, start);
+    }
+
+    /**
+     * Removes an idle VM, waiting at most {@code timeoutNanos} for one, or indefinitely if it is negative.
+     * Waiters are woken by {@link #close()}.
+     *
+     * @param lease Whether the VM is handed to a caller, who must {@link #release(RandomXVM)} it.
+     * @return The VM, or null if none became idle in time.
+     */
+    private RandomXVM takeIdle(long timeoutNanos, boolean lease) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = timeoutNanos;
+            while (true) {
+                checkOpen();
+                RandomXVM vm = idle.poll();
+                if (vm != null) {
+                    if (lease) {
+                        leased.add(vm);
+                    }
+                    return vm;
+                }
+                if (timeoutNanos < 0) {
+                    available.await();
+                } else if (remaining <= 0) {
+                    return null;
+                } else {
+                    remaining = available.awaitNanos(remaining);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private RandomXVM onAcquired(RandomXVM vm, long waitStart) {
+        long waited = System.nanoTime() - waitStart;
+        acquireCount.increment();
+        waitNanos.add(waited);
+        RandomXMetrics.listener().poolWaited(waited);
+        return vm;
+    }
+
+    /**
+     * Returns a VM previously obtained from this pool.
+     *
+     * @param vm The VM to return.
+     * @throws IllegalArgumentException if the VM does not belong to this pool or is not currently borrowed,
+     *                                  e.g. because it has already been released.
+     */
+    public void release(RandomXVM vm) {
+        if (vm == null) {
+            throw new IllegalArgumentException("VM cannot be null.");
+        }
+        lock.lock();
+        try {
+            if (!leased.remove(vm)) {
+                throw new IllegalArgumentException(vms.contains(vm)
+                        ? "VM is not currently borrowed from this pool." : "VM does not belong to this pool.");
+            }
+            if (closed) {
+                vm.close();
+                return;
+            }
+            idle.add(vm);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Calculates a RandomX hash using a pooled VM.
+     *
+     * @param input The input data to be hashed.
+     * @return A 32-byte array containing the calculated hash.
+     * @throws IllegalStateException if the pool is closed, or if it is exhausted in fail-fast mode.
+     */
+    public byte[] hash(byte[] input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
+        }
+        byte[] output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        hash(input, 0, input.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Calculates a RandomX hash of a slice of {@code input} using a pooled VM, writing it into a caller-supplied array.
+     *
+     * @param input        The array holding the data to be hashed.
+     * @param offset       Offset of the data within {@code input}.
+     * @param length       Number of bytes to hash.
+     * @param output       The array receiving the 32-byte hash.
+     * @param outputOffset Offset within {@code output} at which the hash is written.
+     * @throws IllegalStateException if the pool is closed, or if it is exhausted in fail-fast mode.
+     */
+    public void hash(byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        RandomXVM vm = borrow();
+        try {
+            vm.calculateHash(input, offset, length, output, outputOffset);
+        } finally {
+            release(vm);
+        }
+    }
+
+    /**
+     * Calculates the hashes of several inputs on a single pooled VM using the pipelined native hashing sequence.
+     *
+     * @param inputs The inputs to be hashed.
+     * @return The 32-byte hashes, in the same order as {@code inputs}.
+     * @throws IllegalStateException if the pool is closed, or if it is exhausted in fail-fast mode.
+     */
+    public List<byte[]> hashBatch(List<byte[]> inputs) {
+        RandomXVM vm = borrow();
+        try {
+            return vm.calculateHashBatch(inputs);
+        } finally {
+            release(vm);
+        }
+    }
+
+    /**
+     * Borrows a VM according to the pool's fail-fast setting.
+     */
+    RandomXVM borrow() {
+        if (failFast) {
+            RandomXVM vm = tryAcquire();
+            if (vm == null) {
+                throw new IllegalStateException("No idle RandomX VM available in pool of size " + size + ".");
+            }
+            return vm;
+        }
+        try {
+            return acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Preserve interrupt status
+            throw new RuntimeException("Interrupted while waiting for a RandomX VM", e);
+        }
+    }
+
+    /**
+     * Switches every VM in the pool to a new cache, e.g. after a key change.
+     * Waits until all VMs are idle, so no hash is computed with a half-switched pool.
+     * Concurrent swaps are applied one after the other.
+     *
+     * @param newCache The new initialized cache.
+     * @throws InterruptedException if interrupted while waiting for VMs to be returned.
+     */
+    public void setCache(RandomXCache newCache) throws InterruptedException {
+        if (newCache == null) {
+            throw new IllegalArgumentException("New cache cannot be null.");
+        }
+        swapLock.lockInterruptibly();
+        try {
+            List<RandomXVM> drained = drain();
+            try {
+                drained.forEach(vm -> vm.setCache(newCache));
+                this.cache = newCache;
+            } finally {
+                restore(drained);
+            }
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    /**
+     * Switches every VM in the pool to a new dataset.
+     * Waits until all VMs are idle, so no hash is computed with a half-switched pool.
+     * Concurrent swaps are applied one after the other.
+     *
+     * @param newDataset The new initialized dataset (may be null for light mode).
+     * @throws InterruptedException if interrupted while waiting for VMs to be returned.
+     */
+    public void setDataset(RandomXDataset newDataset) throws InterruptedException {
+        swapLock.lockInterruptibly();
+        try {
+            List<RandomXVM> drained = drain();
+            try {
+                drained.forEach(vm -> vm.setDataset(newDataset));
+                this.dataset = newDataset;
+            } finally {
+                restore(drained);
+            }
+        } finally {
+            swapLock.unlock();
+        }
+    }
+
+    private List<RandomXVM> drain() throws InterruptedException {
+        List<RandomXVM> drained = new ArrayList<>(size);
+        try {
+            while (drained.size() < size) {
+                drained.add(takeIdle(-1, false));
+            }
+        } catch (InterruptedException | IllegalStateException e) {
+            restore(drained);
+            throw e;
+        }
+        return drained;
+    }
+
+    /**
+     * Hands drained VMs back, or destroys them if the pool was closed meanwhile.
+     */
+    private void restore(List<RandomXVM> drained) {
+        lock.lock();
+        try {
+            if (closed) {
+                drained.forEach(RandomXVM::close);
+                return;
+            }
+            idle.addAll(drained);
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of VMs currently idle.
+     */
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of VMs currently borrowed.
+     */
+    public int getInUseCount() {
+        lock.lock();
+        try {
+            return leased.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Fraction of VMs currently borrowed, between 0.0 and 1.0.
+     */
+    public double getUtilization() {
+        return (double) getInUseCount() / size;
+    }
+
+    /**
+     * @return Total number of successful acquisitions.
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * @return Number of acquisitions that failed because no VM was idle in time.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * @return Average time spent waiting for a VM per successful acquisition, in nanoseconds.
+     */
+    public long getAverageWaitNanos() {
+        long count = acquireCount.sum();
+        return count == 0 ? 0 : waitNanos.sum() / count;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("RandomX VM pool is closed.");
+        }
+    }
+
+    /**
+     * Destroys all idle VMs. VMs still borrowed are destroyed when they are released, and callers waiting
+     * for a VM fail with {@link IllegalStateException}.
+     * The cache and dataset are managed externally and are not closed.
+     */
+    @Override
+    public void close() {
+        List<RandomXVM> drained;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            drained = new ArrayList<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        drained.forEach(RandomXVM::close);
+        log.info("RandomX VM pool closed. {} VMs destroyed, {} still borrowed.", drained.size(), size - drained.size());
+    }
+}
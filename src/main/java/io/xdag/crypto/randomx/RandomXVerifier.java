@@ -0,0 +1,449 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Light-mode hash verifier for streams that mix several RandomX keys.
+ * <p>
+ * The verifier keeps an LRU of initialized caches keyed by seed, each with its own pool of light-mode VMs,
+ * so verifying shares or blocks that straddle an epoch boundary (or arrive from a stale peer) only pays the
+ * Argon2 cache initialization the first time a key is seen. The number of keys kept is bounded by
+ * {@code maxCaches} and, if given, by a memory budget of roughly {@value #CACHE_MEMORY_BYTES} bytes per cache.
+ * <p>
+ * An evicted key's cache and VMs are released once the last in-flight hash using them completes.
+ * <p>
+ * Verification ({@link #verify}, {@link #meetsTarget}) compares the hash while it is still in the VM's native
+ * output buffer. {@link #verifyBatch} groups checks by key, so each key is looked up (and at worst initialized)
+ * once per batch, and spreads each group over the key's VMs.
+ * This class is thread-safe.
+ */
+@Slf4j
+public class RandomXVerifier implements AutoCloseable {
+
+    /** Native memory used by one RandomX cache (256 MiB). */
+    static final long CACHE_MEMORY_BYTES = RandomXCache.MEMORY_BYTES;
+
+    /** Default number of keys kept initialized. */
+    static final int DEFAULT_MAX_CACHES = 3;
+
+    /** Shared pool of daemon threads used when no executor is supplied; idle threads exit after a minute. */
+    private static final ExecutorService BATCH_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setName("RandomX-Verifier-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Flags used to allocate caches and VMs; never includes {@link RandomXFlag#FULL_MEM}. */
+    @Getter
+    private final Set<RandomXFlag> flags;
+
+    /** Maximum number of keys kept initialized. */
+    @Getter
+    private final int maxCaches;
+
+    /** Number of light-mode VMs created per key. */
+    @Getter
+    private final int vmsPerKey;
+
+    /** Executor running the extra workers of a batch. */
+    private final Executor executor;
+
+    /** Initialized keys, least recently used evicted first. */
+    private final RandomXKeyLru<KeyMaterial> entries;
+
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Creates a verifier.
+     *
+     * @param flags        Flags used to allocate caches and VMs. {@link RandomXFlag#FULL_MEM} is ignored.
+     * @param maxCaches    Maximum number of keys kept initialized; values below 1 default to {@value #DEFAULT_MAX_CACHES}.
+     * @param memoryBudget Upper bound in bytes for cache memory, or 0 for no bound. At least one cache is always kept.
+     * @param vmsPerKey    Number of VMs per key, i.e. concurrent verifications per key; values below 1 default to
+     *                     the number of available processors.
+     * @param executor     Executor running batch verification workers, or null for a shared pool of daemon threads.
+     */
+    @Builder
+    public RandomXVerifier(Set<RandomXFlag> flags, int maxCaches, long memoryBudget, int vmsPerKey, Executor executor) {
+        if (flags == null || flags.isEmpty()) {
+            throw new IllegalArgumentException("Flags cannot be null or empty.");
+        }
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("Memory budget cannot be negative.");
+        }
+        Set<RandomXFlag> lightFlags = EnumSet.copyOf(flags);
+        lightFlags.remove(RandomXFlag.FULL_MEM);
+        this.flags = lightFlags;
+
+        int count = maxCaches > 0 ? maxCaches : DEFAULT_MAX_CACHES;
+        if (memoryBudget > 0) {
+            count = (int) Math.max(1, Math.min(count, memoryBudget / CACHE_MEMORY_BYTES));
+        }
+        this.maxCaches = count;
+        this.vmsPerKey = vmsPerKey > 0 ? vmsPerKey : Runtime.getRuntime().availableProcessors();
+        this.executor = executor != null ? executor : BATCH_EXECUTOR;
+        this.entries = new RandomXKeyLru<>("RandomX verifier", this.maxCaches, this::initKey, KeyMaterial::close);
+        log.info("RandomX verifier created. Max caches: {}, VMs per key: {}, Flags: {}", this.maxCaches, this.vmsPerKey, this.flags);
+    }
+
+    /**
+     * Calculates the RandomX hash of an input under a given key.
+     *
+     * @param seed  The RandomX key.
+     * @param input The input data.
+     * @return The 32-byte hash.
+     */
+    public byte[] hash(byte[] seed, byte[] input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null.");
+        }
+        byte[] output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        hash(seed, input, 0, input.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Calculates the RandomX hash of a slice of an input under a given key into a caller-supplied buffer.
+     *
+     * @param seed         The RandomX key.
+     * @param input        Array holding the input.
+     * @param offset       Start of the input in {@code input}.
+     * @param length       Length of the input.
+     * @param output       Array receiving the 32-byte hash.
+     * @param outputOffset Start of the hash in {@code output}.
+     */
+    public void hash(byte[] seed, byte[] input, int offset, int length, byte[] output, int outputOffset) {
+        RandomXKeyLru.Entry<KeyMaterial> entry = retain(seed);
+        try {
+            entry.value().pool.hash(input, offset, length, output, outputOffset);
+        } finally {
+            entry.release();
+        }
+    }
+
+    /**
+     * Checks that the RandomX hash of a header under a given key equals an expected hash.
+     *
+     * @param seed         The RandomX key.
+     * @param header       The hashed data, e.g. a block header.
+     * @param expectedHash The claimed 32-byte hash.
+     * @return true if the hashes are equal.
+     */
+    public boolean verify(byte[] seed, byte[] header, byte[] expectedHash) {
+        if (header == null) {
+            throw new IllegalArgumentException("Header cannot be null.");
+        }
+        if (expectedHash == null || expectedHash.length != RandomXUtils.RANDOMX_HASH_SIZE) {
+            throw new IllegalArgumentException("Expected hash cannot be null and must be " + RandomXUtils.RANDOMX_HASH_SIZE + " bytes long.");
+        }
+        return check(seed, new Check(seed, header, expectedHash, null));
+    }
+
+    /**
+     * Checks that the RandomX hash of a header under a given key meets a target.
+     *
+     * @param seed   The RandomX key.
+     * @param header The hashed data, e.g. a block header.
+     * @param target The target the hash must meet.
+     * @return true if the hash is less than or equal to the target.
+     */
+    public boolean meetsTarget(byte[] seed, byte[] header, RandomXTarget target) {
+        if (header == null) {
+            throw new IllegalArgumentException("Header cannot be null.");
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("Target cannot be null.");
+        }
+        return check(seed, new Check(seed, header, null, target));
+    }
+
+    private boolean check(byte[] seed, Check check) {
+        RandomXKeyLru.Entry<KeyMaterial> entry = retain(seed);
+        try {
+            RandomXVMPool pool = entry.value().pool;
+            RandomXVM vm = pool.borrow();
+            try {
+                return check.runOn(vm);
+            } finally {
+                pool.release(vm);
+            }
+        } finally {
+            entry.release();
+        }
+    }
+
+    /**
+     * Runs a batch of checks. Checks are grouped by key, and each group is spread over up to
+     * {@link #getVmsPerKey()} VMs, the calling thread being one of the workers. A check whose claimed
+     * hash does not meet its own target is rejected without hashing.
+     *
+     * @param checks The checks to run.
+     * @return The result of each check, in the same order as {@code checks}.
+     * @throws IllegalArgumentException if checks is null or contains null.
+     */
+    public boolean[] verifyBatch(List<Check> checks) {
+        if (checks == null) {
+            throw new IllegalArgumentException("Checks cannot be null.");
+        }
+        boolean[] results = new boolean[checks.size()];
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < checks.size(); i++) {
+            Check check = checks.get(i);
+            if (check == null) {
+                throw new IllegalArgumentException("Checks cannot contain null.");
+            }
+            if (check.expectedHash != null && check.target != null && !check.target.isMetBy(check.expectedHash)) {
+                rejections.increment();
+                continue;
+            }
+            groups.computeIfAbsent(HexFormat.of().formatHex(check.seed), key -> new ArrayList<>()).add(i);
+        }
+        for (List<Integer> group : groups.values()) {
+            RandomXKeyLru.Entry<KeyMaterial> entry = retain(checks.get(group.get(0)).seed);
+            try {
+                runGroup(entry.value().pool, checks, group, results);
+            } finally {
+                entry.release();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs the checks of one key. Extra workers only take a VM that is idle, so a batch never waits for VMs
+     * held by other callers beyond the one the calling thread borrows.
+     */
+    private void runGroup(RandomXVMPool pool, List<Check> checks, List<Integer> group, boolean[] results) {
+        AtomicInteger next = new AtomicInteger();
+        int extraWorkers = Math.min(vmsPerKey, group.size()) - 1;
+        List<CompletableFuture<Void>> workers = new ArrayList<>(extraWorkers);
+        for (int i = 0; i < extraWorkers; i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                RandomXVM vm = pool.poll();
+                if (vm != null) {
+                    try {
+                        drain(vm, next, checks, group, results);
+                    } finally {
+                        pool.release(vm);
+                    }
+                }
+            }, executor));
+        }
+        RandomXVM vm = pool.borrow();
+        try {
+            drain(vm, next, checks, group, results);
+        } finally {
+            pool.release(vm);
+        }
+        try {
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private static void drain(RandomXVM vm, AtomicInteger next, List<Check> checks, List<Integer> group, boolean[] results) {
+        int j;
+        while ((j = next.getAndIncrement()) < group.size()) {
+            int index = group.get(j);
+            results[index] = checks.get(index).runOn(vm);
+        }
+    }
+
+    /**
+     * Returns the initialized entry for a key with one reference held for the caller,
+     * initializing it on the calling thread if the key is not cached.
+     */
+    private RandomXKeyLru.Entry<KeyMaterial> retain(byte[] seed) {
+        if (seed == null || seed.length == 0) {
+            throw new IllegalArgumentException("Seed cannot be null or empty.");
+        }
+        return entries.retain(seed);
+    }
+
+    private KeyMaterial initKey(byte[] seed) {
+        RandomXCache cache = new RandomXCache(flags);
+        try {
+            cache.init(seed);
+            return new KeyMaterial(cache, RandomXVMPool.builder().flags(flags).cache(cache).size(vmsPerKey).build());
+        } catch (Throwable t) {
+            cache.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return Number of key lookups served by an already initialized key.
+     */
+    public long getHitCount() {
+        return entries.getHitCount();
+    }
+
+    /**
+     * @return Number of key lookups that required initializing the key.
+     */
+    public long getMissCount() {
+        return entries.getMissCount();
+    }
+
+    /**
+     * @return Number of keys evicted from the LRU.
+     */
+    public long getEvictionCount() {
+        return entries.getEvictionCount();
+    }
+
+    /**
+     * @return Number of batch checks rejected without hashing because their claimed hash does not meet their target.
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return Number of keys currently held (initialized or initializing).
+     */
+    public int getCachedCount() {
+        return entries.size();
+    }
+
+    /**
+     * Drops all keys. Caches and VMs still in use are released when their last hash completes.
+     */
+    @Override
+    public void close() {
+        if (entries.close()) {
+            log.info("RandomX verifier closed. Hits: {}, misses: {}, evictions: {}.",
+                    getHitCount(), getMissCount(), getEvictionCount());
+        }
+    }
+
+    /**
+     * One verification: the hash of {@code header} under {@code seed} must equal {@code expectedHash}
+     * (if given) and meet {@code target} (if given).
+     */
+    @Getter
+    public static final class Check {
+
+        private final byte[] seed;
+        private final byte[] header;
+        private final byte[] expectedHash;
+        private final RandomXTarget target;
+
+        /**
+         * Creates a check that the hash of a header meets a target.
+         *
+         * @param seed   The RandomX key.
+         * @param header The hashed data.
+         * @param target The target the hash must meet.
+         */
+        public Check(byte[] seed, byte[] header, RandomXTarget target) {
+            this(seed, header, null, target);
+        }
+
+        /**
+         * Creates a check.
+         *
+         * @param seed         The RandomX key.
+         * @param header       The hashed data.
+         * @param expectedHash The claimed 32-byte hash, or null to only check the target.
+         * @param target       The target the hash must meet, or null to only compare with the claimed hash.
+         * @throws IllegalArgumentException if seed is null or empty, header is null, expectedHash is not 32 bytes
+         *                                  long, or both expectedHash and target are null.
+         */
+        public Check(byte[] seed, byte[] header, byte[] expectedHash, RandomXTarget target) {
+            if (seed == null || seed.length == 0) {
+                throw new IllegalArgumentException("Seed cannot be null or empty.");
+            }
+            if (header == null) {
+                throw new IllegalArgumentException("Header cannot be null.");
+            }
+            if (expectedHash != null && expectedHash.length != RandomXUtils.RANDOMX_HASH_SIZE) {
+                throw new IllegalArgumentException("Expected hash must be " + RandomXUtils.RANDOMX_HASH_SIZE + " bytes long.");
+            }
+            if (expectedHash == null && target == null) {
+                throw new IllegalArgumentException("Expected hash and target cannot both be null.");
+            }
+            this.seed = seed;
+            this.header = header;
+            this.expectedHash = expectedHash;
+            this.target = target;
+        }
+
+        /**
+         * Hashes at most once: a claimed hash is checked against the target first, after which equality
+         * with it implies the target.
+         */
+        boolean runOn(RandomXVM vm) {
+            if (expectedHash != null) {
+                return (target == null || target.isMetBy(expectedHash))
+                        && vm.verify(header, 0, header.length, expectedHash, 0);
+            }
+            return vm.meetsTarget(header, 0, header.length, target);
+        }
+    }
+
+    /**
+     * The cache and VMs for one key.
+     */
+    private static final class KeyMaterial {
+        final RandomXCache cache;
+        final RandomXVMPool pool;
+
+        KeyMaterial(RandomXCache cache, RandomXVMPool pool) {
+            this.cache = cache;
+            this.pool = pool;
+        }
+
+        void close() {
+            pool.close();
+            cache.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXAutoTuner class.
+ */
+public class RandomXAutoTunerTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that the first run benchmarks and persists usable flags and later runs reuse them.
+     */
+    @Test
+    void testTuneAndReuse() throws IOException {
+        Path file = tempDir.resolve("tuning.properties");
+        RandomXAutoTuner tuner = RandomXAutoTuner.builder().file(file).sampleMillis(200).datasetItems(1024).build();
+        Set<RandomXFlag> flags = tuner.tune();
+        assertFalse(flags.contains(RandomXFlag.FULL_MEM));
+        assertNotNull(tuner.getLastMeasurement());
+        assertTrue(tuner.getLastMeasurement().getHashesPerSecond() > 0);
+        assertTrue(Files.readString(file).contains(RandomXAutoTuner.hostId() + ".flags="));
+
+        // The tuned flags must be usable.
+        try (RandomXCache cache = new RandomXCache(flags)) {
+            cache.init("key".getBytes());
+            try (RandomXVM vm = new RandomXVM(flags, cache, null)) {
+                assertEquals(RandomXUtils.RANDOMX_HASH_SIZE, vm.calculateHash("input".getBytes()).length);
+            }
+        }
+
+        RandomXAutoTuner reloaded = RandomXAutoTuner.builder().file(file).build();
+        assertEquals(flags, reloaded.tune());
+        assertNull(reloaded.getLastMeasurement());
+
+        // A malformed entry is ignored rather than trusted.
+        Files.writeString(file, RandomXAutoTuner.hostId() + ".flags=JIT,BOGUS\n");
+        assertNull(reloaded.load());
+    }
+
+    /**
+     * Tests that a native memory budget too small for a dataset only skips the dataset measurement
+     * instead of making every candidate look unsupported.
+     */
+    @Test
+    void testBenchmarkUnderMemoryBudget() {
+        long base = RandomXNativeMemory.getUsed();
+        RandomXNativeMemory.setBudget(base + 1024L * 1024 * 1024, RandomXNativeMemory.BudgetPolicy.REJECT, 0, TimeUnit.SECONDS);
+        try {
+            RandomXAutoTuner tuner = RandomXAutoTuner.builder().file(tempDir.resolve("tuning.properties"))
+                    .sampleMillis(200).datasetItems(1024).build();
+            Set<RandomXFlag> flags = tuner.benchmark();
+            assertFalse(flags.isEmpty());
+            assertTrue(tuner.getLastMeasurement().getHashesPerSecond() > 0);
+            assertEquals(0, tuner.getLastMeasurement().getDatasetItemsPerSecond());
+        } finally {
+            RandomXNativeMemory.clearBudget();
+        }
+    }
+
+    /**
+     * Tests that a stored result is reused by a fresh JVM in which no native class has been loaded yet.
+     */
+    @Test
+    void testReuseInFreshJvm() throws Exception {
+        Path file = tempDir.resolve("tuning.properties");
+        Files.writeString(file, RandomXAutoTuner.hostId() + ".flags=JIT,HARD_AES\n");
+
+        Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                RandomXAutoTunerTest.class.getName(), file.toString())
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue(), output);
+        assertEquals(EnumSet.of(RandomXFlag.JIT, RandomXFlag.HARD_AES).toString(), output);
+    }
+
+    /**
+     * Entry point of the JVM forked by {@link #testReuseInFreshJvm()}: prints the flags tuned from the given file.
+     */
+    public static void main(String[] args) {
+        System.out.println(RandomXAutoTuner.builder().file(Path.of(args[0])).build().tune());
+    }
+}
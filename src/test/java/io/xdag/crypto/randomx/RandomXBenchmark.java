@@ -63,6 +63,20 @@ public class RandomXBenchmark {
             (byte)0x00, (byte)0x00, (byte)0x00
     };
 
+    /** Number of inputs hashed per invocation by the batch benchmarks. */
+    private static final int BATCH_SIZE = 8;
+
+    /** Copies of BLOCK_TEMPLATE differing only in their last (nonce) byte, hashed by the batch benchmarks. */
+    private static final List<byte[]> BATCH_INPUTS = new ArrayList<>(BATCH_SIZE);
+
+    static {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            byte[] input = Arrays.copyOf(BLOCK_TEMPLATE, BLOCK_TEMPLATE.length);
+            input[input.length - 1] = (byte) i;
+            BATCH_INPUTS.add(input);
+        }
+    }
+
     // Shared resources across all benchmark threads
     private Set<RandomXFlag> flags;
     private RandomXCache cache;
@@ -159,7 +173,8 @@ public class RandomXBenchmark {
         }
         
         dataset = new RandomXDataset(datasetAllocFlags); 
-        logger.info("Shared RandomXDataset allocated with specific dataset allocation flags: {}. It will be initialized by ThreadState if mining mode is used.", datasetAllocFlags);
+        dataset.init(cache);
+        logger.info("Shared RandomXDataset allocated and initialized with dataset allocation flags: {}. All mining templates use it.", datasetAllocFlags);
 
         logger.info("Shared resources setup completed for RandomXBenchmark.");
     }
@@ -184,13 +199,14 @@ public class RandomXBenchmark {
     }
 
     /**
-     * Benchmark mining mode with batch processing
+     * Benchmark mining mode with batch processing.
+     * Scores are per hash, not per batch.
      */
     @Benchmark
     @Group("miningBatch")
-    public byte[] miningModeBatchHash(ThreadState state) {
-        state.miningTemplate.calculateHashFirst(BLOCK_TEMPLATE);
-        return state.miningTemplate.calculateHashNext(BLOCK_TEMPLATE);
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<byte[]> miningModeBatchHash(ThreadState state) {
+        return state.miningTemplate.calculateHashBatch(BATCH_INPUTS);
     }
 
     /**
@@ -203,13 +219,14 @@ public class RandomXBenchmark {
     }
 
     /**
-     * Benchmark light mode with batch processing
+     * Benchmark light mode with batch processing.
+     * Scores are per hash, not per batch.
      */
     @Benchmark
     @Group("lightBatch")
-    public byte[] lightModeBatchHash(ThreadState state) {
-        state.lightTemplate.calculateHashFirst(BLOCK_TEMPLATE);
-        return state.lightTemplate.calculateHashNext(BLOCK_TEMPLATE);
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<byte[]> lightModeBatchHash(ThreadState state) {
+        return state.lightTemplate.calculateHashBatch(BATCH_INPUTS);
     }
 
     /**
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the JMH suite and writes one JSON result file per run, for comparison across library upgrades.
+ * <p>
+ * {@link RandomXInitBenchmark} runs single-threaded. {@link RandomXHashBenchmark} is swept over thread counts
+ * 1, 2, 4, ... up to the number of available processors (always including that number).
+ * <p>
+ * Arguments (all optional): {@code [resultDir] [maxThreads] [jmh include regex]}, defaulting to
+ * {@code target/jmh}, all processors and every benchmark of the suite. JMH {@code @Param} values can be
+ * narrowed with system properties of the form {@code -Djmh.param.<name>=v1,v2}, e.g.
+ * {@code -Djmh.param.mode=LIGHT -Djmh.param.inputSize=76}.
+ */
+public final class RandomXBenchmarkSuite {
+
+    private RandomXBenchmarkSuite() {}
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        Path resultDir = Path.of(args.length > 0 ? args[0] : "target/jmh");
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String include = args.length > 2 ? args[2] : null;
+        Files.createDirectories(resultDir);
+
+        run(options(RandomXInitBenchmark.class, include, resultDir.resolve("init.json")).threads(1));
+        for (int threads : threadCounts(maxThreads)) {
+            run(options(RandomXHashBenchmark.class, include, resultDir.resolve("hash-t" + threads + ".json"))
+                    .threads(threads));
+        }
+    }
+
+    /**
+     * @return 1, 2, 4, ... below {@code max}, followed by {@code max}.
+     */
+    static List<Integer> threadCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < max; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(Math.max(1, max));
+        return counts;
+    }
+
+    private static ChainedOptionsBuilder options(Class<?> benchmark, String include, Path result) {
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .include(benchmark.getSimpleName() + "\\." + (include != null ? include : ".*"))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString());
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("jmh.param."))
+                .forEach(name -> builder.param(name.substring("jmh.param.".length()),
+                        System.getProperty(name).split(",")));
+        return builder;
+    }
+
+    private static void run(ChainedOptionsBuilder builder) throws RunnerException {
+        if (new Runner(builder.build()).run().isEmpty()) {
+            System.err.println("No benchmarks matched " + builder.build().getIncludes());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Shared setup for the JMH benchmarks: flag selection and benchmark inputs.
+ */
+final class RandomXBenchmarkSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(RandomXBenchmarkSupport.class);
+
+    /** Key used to initialize benchmark caches. */
+    static final byte[] KEY = "RandomX benchmark key".getBytes();
+
+    /** Size of a block header, the smallest input hashed in practice. */
+    static final int HEADER_SIZE = 76;
+
+    private RandomXBenchmarkSupport() {}
+
+    /**
+     * Builds the flag set for a benchmark configuration from the flags the native library recommends.
+     * Whether JIT also needs SECURE (W^X platforms) is left to {@code randomx_get_flags()}, which reports it.
+     *
+     * @param jit        Whether to use the JIT compiler rather than the interpreter.
+     * @param fullMem    Whether VMs read from a dataset.
+     * @param largePages Whether to request large pages; allocations fall back if they are unavailable.
+     * @return The flags.
+     */
+    static Set<RandomXFlag> flags(boolean jit, boolean fullMem, boolean largePages) {
+        Set<RandomXFlag> flags = EnumSet.copyOf(RandomXUtils.getRecommendedFlags());
+        flags.remove(RandomXFlag.LARGE_PAGES);
+        if (jit) {
+            flags.add(RandomXFlag.JIT);
+        } else {
+            flags.remove(RandomXFlag.JIT);
+        }
+        if (fullMem) {
+            flags.add(RandomXFlag.FULL_MEM);
+        } else {
+            flags.remove(RandomXFlag.FULL_MEM);
+        }
+        if (largePages) {
+            flags.add(RandomXFlag.LARGE_PAGES);
+        }
+        return flags;
+    }
+
+    /**
+     * Logs where allocations ended up, so that large-page results are not mistaken for normal-page ones.
+     */
+    static void logLargePages(RandomXLargePages pages, boolean requested) {
+        if (requested) {
+            logger.info("Large pages: {}", pages.report());
+        }
+    }
+
+    /**
+     * @param size  Input length.
+     * @param index Distinguishes inputs of the same size.
+     * @return A deterministic input of the given size.
+     */
+    static byte[] input(int size, int index) {
+        byte[] input = new byte[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = (byte) (i * 31 + index);
+        }
+        return input;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolates the cost of the JNA binding from the cost of RandomX itself.
+ * <p>
+ * The binding benchmarks measure a native call that does no work ({@code randomx_dataset_item_count}),
+ * {@code randomx_get_flags} for reference, staging an input and reading a hash through reused and freshly
+ * allocated {@link Memory}, and resolving direct {@link ByteBuffer} addresses. The hash benchmarks run a
+ * light-mode JIT VM through each public input path and through the raw native call with pre-staged buffers.
+ * <p>
+ * {@link #main} runs everything and prints the binding overhead per hash of each input path, in ns and as a
+ * share of the raw hash time, which is the figure binding-level optimisations should be justified against.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RandomXBindingBenchmark {
+
+    @Param({"76", "1024", "65536"})
+    public int inputSize;
+
+    private byte[] input;
+    private byte[] output;
+    private Memory inputMemory;
+    private Memory outputMemory;
+    private ByteBuffer directInput;
+    private ByteBuffer directOutput;
+    private ByteBuffer heapInput;
+    private ByteBuffer heapOutput;
+
+    private RandomXCache cache;
+    private RandomXVM vm;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = RandomXBenchmarkSupport.input(inputSize, 0);
+        output = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        inputMemory = new Memory(inputSize);
+        inputMemory.write(0, input, 0, inputSize);
+        outputMemory = new Memory(RandomXUtils.RANDOMX_HASH_SIZE);
+        directInput = ByteBuffer.allocateDirect(inputSize).put(input).flip();
+        directOutput = ByteBuffer.allocateDirect(RandomXUtils.RANDOMX_HASH_SIZE);
+        heapInput = ByteBuffer.wrap(input);
+        heapOutput = ByteBuffer.allocate(RandomXUtils.RANDOMX_HASH_SIZE);
+
+        cache = new RandomXCache(RandomXBenchmarkSupport.flags(true, false, false));
+        cache.init(RandomXBenchmarkSupport.KEY);
+        vm = new RandomXVM(cache.getFlags(), cache, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (vm != null) vm.close();
+        if (cache != null) cache.close();
+        inputMemory.close();
+        outputMemory.close();
+    }
+
+    // ---- Binding cost only ----
+
+    /**
+     * A direct-mapped native call that returns a constant: the floor of any native call.
+     */
+    @Benchmark
+    public NativeLong nativeNoop() {
+        return RandomXNative.randomx_dataset_item_count();
+    }
+
+    /**
+     * {@code randomx_get_flags}, which also runs CPU feature detection.
+     */
+    @Benchmark
+    public int nativeGetFlags() {
+        return RandomXNative.randomx_get_flags();
+    }
+
+    /**
+     * Staging an input and reading a hash back through reused native buffers (the {@code byte[]} path).
+     */
+    @Benchmark
+    public byte[] marshalReused() {
+        inputMemory.write(0, input, 0, inputSize);
+        outputMemory.read(0, output, 0, RandomXUtils.RANDOMX_HASH_SIZE);
+        return output;
+    }
+
+    /**
+     * Staging an input and reading a hash through native buffers allocated per call.
+     */
+    @Benchmark
+    public byte[] marshalFresh() {
+        byte[] result = new byte[RandomXUtils.RANDOMX_HASH_SIZE];
+        try (Memory in = new Memory(inputSize); Memory out = new Memory(RandomXUtils.RANDOMX_HASH_SIZE)) {
+            in.write(0, input, 0, inputSize);
+            out.read(0, result, 0, RandomXUtils.RANDOMX_HASH_SIZE);
+        }
+        return result;
+    }
+
+    /**
+     * Resolving input and output addresses of direct buffers (the zero-copy {@link ByteBuffer} path).
+     */
+    @Benchmark
+    public Pointer directBufferAddresses() {
+        Native.getDirectBufferPointer(directInput).share(directInput.position());
+        return Native.getDirectBufferPointer(directOutput).share(directOutput.position());
+    }
+
+    // ---- Complete hashes ----
+
+    /**
+     * The native hash call on pre-staged buffers: RandomX cost plus the call floor.
+     */
+    @Benchmark
+    public Memory hashRaw() {
+        RandomXNative.randomx_calculate_hash(vm.getVmPointer(), inputMemory, inputSize, outputMemory);
+        return outputMemory;
+    }
+
+    /**
+     * {@link RandomXVM#calculateHash(byte[], int, int, byte[], int)}: caller-provided output, reused staging.
+     */
+    @Benchmark
+    public byte[] hashByteArray() {
+        vm.calculateHash(input, 0, inputSize, output, 0);
+        return output;
+    }
+
+    /**
+     * {@link RandomXVM#calculateHash(byte[])}: allocates the result array.
+     */
+    @Benchmark
+    public byte[] hashByteArrayAllocating() {
+        return vm.calculateHash(input);
+    }
+
+    /**
+     * {@link RandomXVM#calculateHash(ByteBuffer, ByteBuffer)} with direct buffers.
+     */
+    @Benchmark
+    public ByteBuffer hashDirectBuffer() {
+        directInput.rewind();
+        directOutput.clear();
+        vm.calculateHash(directInput, directOutput);
+        return directOutput;
+    }
+
+    /**
+     * {@link RandomXVM#calculateHash(ByteBuffer, ByteBuffer)} with heap buffers.
+     */
+    @Benchmark
+    public ByteBuffer hashHeapBuffer() {
+        heapInput.rewind();
+        heapOutput.clear();
+        vm.calculateHash(heapInput, heapOutput);
+        return heapOutput;
+    }
+
+    /**
+     * Runs the benchmarks and prints the binding overhead per hash for each input path.
+     * An optional argument restricts the input sizes, e.g. {@code 76,1024}.
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.include(RandomXBindingBenchmark.class.getSimpleName() + "\\.");
+        if (args.length > 0) {
+            builder.param("inputSize", args[0].split(","));
+        }
+        Collection<RunResult> results = new Runner(builder.build()).run();
+
+        Map<String, Map<String, Double>> scores = new HashMap<>();
+        for (RunResult result : results) {
+            String name = result.getParams().getBenchmark();
+            scores.computeIfAbsent(result.getParams().getParam("inputSize"), size -> new HashMap<>())
+                    .put(name.substring(name.lastIndexOf('.') + 1), result.getPrimaryResult().getScore());
+        }
+
+        System.out.println();
+        System.out.printf("%-10s %-26s %14s %10s%n", "inputSize", "path", "overhead ns", "of hash");
+        scores.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey((a, b) -> Integer.parseInt(a) - Integer.parseInt(b)))
+                .forEach(entry -> {
+                    Map<String, Double> ns = entry.getValue();
+                    double noop = ns.getOrDefault("nativeNoop", 0.0);
+                    double hash = ns.getOrDefault("hashRaw", Double.NaN);
+                    print(entry.getKey(), "byte[] (reused buffers)", noop + ns.getOrDefault("marshalReused", 0.0), hash);
+                    print(entry.getKey(), "byte[] (fresh buffers)", noop + ns.getOrDefault("marshalFresh", 0.0), hash);
+                    print(entry.getKey(), "direct ByteBuffer", noop + ns.getOrDefault("directBufferAddresses", 0.0), hash);
+                });
+    }
+
+    private static void print(String inputSize, String path, double overheadNanos, double hashNanos) {
+        System.out.printf("%-10s %-26s %14.1f %9.4f%%%n", inputSize, path, overheadNanos, 100 * overheadNanos / hashNanos);
+    }
+}
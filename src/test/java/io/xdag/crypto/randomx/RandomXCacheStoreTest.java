@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXCacheStore class.
+ */
+public class RandomXCacheStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] seed(long i) {
+        return ("seed " + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tests ordering, eviction, flag filtering and rejection of corrupted entries.
+     */
+    @Test
+    void testRecordAndEvict() throws IOException {
+        Set<RandomXFlag> flags = Set.of(RandomXFlag.DEFAULT, RandomXFlag.JIT);
+        RandomXCacheStore store = new RandomXCacheStore(tempDir, 2);
+        store.record(seed(1), flags);
+        store.record(seed(2), flags);
+        store.record(seed(1), flags);
+        store.record(seed(3), flags);
+
+        List<byte[]> seeds = store.recentSeeds(flags);
+        assertEquals(2, seeds.size());
+        assertArrayEquals(seed(3), seeds.get(0));
+        assertArrayEquals(seed(1), seeds.get(1));
+        assertTrue(store.recentSeeds(Set.of(RandomXFlag.DEFAULT)).isEmpty());
+
+        try (var files = Files.list(tempDir)) {
+            Path file = files.findFirst().orElseThrow();
+            Files.write(file, new byte[] {1, 2, 3});
+        }
+        assertEquals(1, new RandomXCacheStore(tempDir, 2).recentSeeds(flags).size());
+    }
+
+    /**
+     * Tests that a new epoch manager restores the caches recorded by a previous one.
+     */
+    @Test
+    void testEpochManagerRestore() throws IOException {
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+        RandomXEpochManager.RandomXEpochManagerBuilder builder = RandomXEpochManager.builder()
+                .epochLength(2048)
+                .epochLag(64)
+                .flags(flags)
+                .seedProvider(RandomXCacheStoreTest::seed)
+                .store(new RandomXCacheStore(tempDir, 0));
+
+        try (RandomXEpochManager manager = builder.build()) {
+            manager.acquire(3000).close();
+        }
+        try (RandomXEpochManager manager = builder.build()) {
+            manager.restore().join();
+            assertEquals(1, manager.getCachedCount());
+            manager.acquire(3000).close();
+            assertEquals(1, manager.getHitCount());
+        }
+    }
+}
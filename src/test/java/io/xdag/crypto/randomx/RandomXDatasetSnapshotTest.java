@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXDatasetSnapshot class.
+ */
+public class RandomXDatasetSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that a saved dataset loads back into a fresh allocation with other flags and hashes identically,
+     * and that snapshots for another key or with corrupted items are rejected.
+     */
+    @Test
+    void testSaveAndLoad() throws IOException {
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+        flags.add(RandomXFlag.FULL_MEM);
+        byte[] key = "test_key_for_dataset".getBytes(StandardCharsets.UTF_8);
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        Path file = tempDir.resolve("dataset.bin");
+
+        try (RandomXCache cache = new RandomXCache(flags)) {
+            cache.init(key);
+            byte[] expected;
+            try (RandomXDataset dataset = RandomXDatasetSnapshot.loadOrInit(flags, cache, key, file);
+                 RandomXVM vm = new RandomXVM(flags, cache, dataset)) {
+                expected = vm.calculateHash(input);
+            }
+
+            // Allocation flags do not change the dataset contents, so a dataset allocated with others still loads.
+            try (RandomXDataset dataset = new RandomXDataset(EnumSet.of(RandomXFlag.DEFAULT))) {
+                assertTrue(RandomXDatasetSnapshot.load(dataset, cache, key, file));
+                try (RandomXVM vm = new RandomXVM(flags, cache, dataset)) {
+                    assertArrayEquals(expected, vm.calculateHash(input));
+                }
+
+                assertFalse(RandomXDatasetSnapshot.load(dataset, cache, "another key".getBytes(StandardCharsets.UTF_8), file));
+
+                // Item 0 is always among the verified samples.
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.allocate(RandomXDataset.ITEM_SIZE), RandomXDatasetSnapshot.HEADER_SIZE);
+                }
+                assertFalse(RandomXDatasetSnapshot.load(dataset, cache, key, file));
+                assertFalse(RandomXDatasetSnapshot.load(dataset, cache, key, tempDir.resolve("missing.bin")));
+            }
+        }
+    }
+}
@@ -29,6 +29,10 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -104,6 +108,28 @@ public class RandomXDatasetTest {
         assertDoesNotThrow(() -> dataset.init(cache), "Dataset initialization should not throw an exception");
     }
 
+    /**
+     * Tests that asynchronous initialization reports progress and can be cancelled mid-way.
+     */
+    @Test
+    void testDatasetInitAsyncCancel() throws Exception {
+        CountDownLatch progressed = new CountDownLatch(1);
+        AtomicLong reported = new AtomicLong();
+        CompletableFuture<RandomXDataset> future = dataset.initAsync(cache, null, 2, (completed, total, eta) -> {
+            reported.set(completed);
+            assertTrue(completed <= total && eta >= 0);
+            progressed.countDown();
+        });
+
+        assertTrue(progressed.await(60, TimeUnit.SECONDS), "Progress should be reported");
+        dataset.cancelInit();
+        assertTrue(future.isCancelled());
+        long stoppedAt = reported.get();
+        assertTrue(stoppedAt > 0 && stoppedAt < RandomXDataset.getItemCount());
+        Thread.sleep(200);
+        assertEquals(stoppedAt, reported.get(), "Workers should have stopped");
+    }
+
     /**
      * Tests that initializing the dataset with a null cache throws an exception.
      */
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXEpochManager class.
+ * Uses light mode so that no dataset has to be built.
+ */
+public class RandomXEpochManagerTest {
+
+    private Set<RandomXFlag> flags;
+
+    @BeforeEach
+    void setUp() {
+        flags = RandomXUtils.getRecommendedFlags();
+        flags.remove(RandomXFlag.FULL_MEM);
+    }
+
+    private RandomXEpochManager.RandomXEpochManagerBuilder manager() {
+        return RandomXEpochManager.builder()
+                .epochLength(2048)
+                .epochLag(64)
+                .flags(flags)
+                .seedProvider(height -> ("seed " + height).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests the seed height schedule.
+     */
+    @Test
+    void testSeedHeight() {
+        RandomXEpochManager manager = manager().build();
+        assertEquals(0, manager.seedHeight(0));
+        assertEquals(0, manager.seedHeight(2048 + 64));
+        assertEquals(2048, manager.seedHeight(2048 + 64 + 1));
+        assertEquals(2048, manager.seedHeight(4096 + 64));
+        assertEquals(4096, manager.seedHeight(4096 + 64 + 1));
+        manager.close();
+    }
+
+    /**
+     * Tests that heights of the same epoch share one cache, that older epochs stay cached,
+     * and that an evicted cache remains usable while leased.
+     */
+    @Test
+    void testCacheReuseAndEviction() {
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        try (RandomXEpochManager manager = manager().maxCaches(2).build()) {
+            RandomXCacheLease first = manager.acquire(3000);
+            try (RandomXCacheLease same = manager.acquire(4000)) {
+                assertSame(first.getCache(), same.getCache());
+                assertEquals(2048, same.getSeedHeight());
+            }
+            assertEquals(1, manager.getMissCount());
+            assertEquals(1, manager.getHitCount());
+
+            manager.acquire(5000).close();
+            manager.acquire(7000).close();
+            assertEquals(1, manager.getEvictionCount());
+            assertEquals(2, manager.getCachedCount());
+
+            // The evicted cache is still alive for its lease holder.
+            try (RandomXVM vm = new RandomXVM(flags, first.getCache(), null)) {
+                byte[] expected;
+                try (RandomXCache reference = new RandomXCache(flags)) {
+                    reference.init("seed 2048".getBytes(StandardCharsets.UTF_8));
+                    try (RandomXVM referenceVm = new RandomXVM(flags, reference, null)) {
+                        expected = referenceVm.calculateHash(input);
+                    }
+                }
+                assertEquals(HexFormat.of().formatHex(expected), HexFormat.of().formatHex(vm.calculateHash(input)));
+            }
+            first.close();
+        }
+    }
+
+    /**
+     * Tests that the next epoch's cache is prefetched once its seed block exists.
+     */
+    @Test
+    void testPrefetchNextEpoch() {
+        try (RandomXEpochManager manager = manager().build()) {
+            manager.setChainHeight(2047).join();
+            assertEquals(0, manager.getCachedCount());
+
+            manager.setChainHeight(2048).join();
+            assertEquals(1, manager.getCachedCount());
+
+            try (RandomXCacheLease lease = manager.acquire(2048 + 64 + 1)) {
+                assertEquals(2048, lease.getSeedHeight());
+            }
+            assertEquals(1, manager.getHitCount());
+        }
+    }
+}
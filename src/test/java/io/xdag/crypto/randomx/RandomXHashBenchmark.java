@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing benchmarks over VMs that share one cache (and dataset in full mode), one VM per benchmark thread.
+ * Parameterised over light/full mode, JIT/interpreter, large pages and input size; reports throughput and
+ * latency percentiles. Run thread-count sweeps through {@link RandomXBenchmarkSuite}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class RandomXHashBenchmark {
+
+    /** Number of inputs hashed per invocation by the batch benchmark. */
+    static final int BATCH_SIZE = 8;
+
+    @Param({"LIGHT", "FULL"})
+    public String mode;
+
+    @Param({"true", "false"})
+    public boolean jit;
+
+    @Param({"false", "true"})
+    public boolean largePages;
+
+    @Param({"76", "1024", "65536"})
+    public int inputSize;
+
+    private Set<RandomXFlag> flags;
+    private RandomXLargePages pages;
+    private RandomXCache cache;
+    private RandomXDataset dataset;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        boolean fullMem = "FULL".equals(mode);
+        flags = RandomXBenchmarkSupport.flags(jit, fullMem, largePages);
+        pages = RandomXLargePages.probe();
+        cache = largePages ? pages.allocateCache(flags) : new RandomXCache(flags);
+        cache.init(RandomXBenchmarkSupport.KEY);
+        if (fullMem) {
+            dataset = largePages ? pages.allocateDataset(flags) : new RandomXDataset(flags);
+            dataset.init(cache);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RandomXBenchmarkSupport.logLargePages(pages, largePages);
+        if (dataset != null) dataset.close();
+        if (cache != null) cache.close();
+    }
+
+    /**
+     * Per-thread VM and inputs.
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        RandomXVM vm;
+        byte[] input;
+        byte[][] batch;
+        byte[] output;
+
+        @Setup(Level.Trial)
+        public void setup(RandomXHashBenchmark benchmark) {
+            vm = benchmark.largePages
+                    ? benchmark.pages.createVM(benchmark.flags, benchmark.cache, benchmark.dataset)
+                    : new RandomXVM(benchmark.flags, benchmark.cache, benchmark.dataset);
+            input = RandomXBenchmarkSupport.input(benchmark.inputSize, 0);
+            batch = new byte[BATCH_SIZE][];
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch[i] = RandomXBenchmarkSupport.input(benchmark.inputSize, i);
+            }
+            output = new byte[BATCH_SIZE * RandomXUtils.RANDOMX_HASH_SIZE];
+            vm.calculateHashFirst(input);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (vm != null) vm.close();
+        }
+    }
+
+    /**
+     * One hash into a reused output buffer.
+     */
+    @Benchmark
+    public byte[] hash(ThreadState state) {
+        state.vm.calculateHash(state.input, 0, state.input.length, state.output, 0);
+        return state.output;
+    }
+
+    /**
+     * Batch hashing. Scores are per hash, not per batch.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public byte[] hashBatch(ThreadState state) {
+        state.vm.calculateHashBatch(state.batch, state.output, 0);
+        return state.output;
+    }
+
+    /**
+     * Pipelined hashing with {@code calculate_hash_next}, as used when scanning nonces.
+     */
+    @Benchmark
+    public byte[] hashPipelined(ThreadState state) {
+        state.vm.calculateHashNext(state.input, 0, state.input.length, state.output, 0);
+        return state.output;
+    }
+
+    /**
+     * One hash followed by its commitment.
+     */
+    @Benchmark
+    public byte[] commitment(ThreadState state) {
+        state.vm.calculateCommitment(state.input, 0, state.input.length, state.output, 0);
+        return state.output;
+    }
+
+    /**
+     * Creating and releasing a VM against the shared cache or dataset.
+     */
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void createVm() {
+        (largePages ? pages.createVM(flags, cache, dataset) : new RandomXVM(flags, cache, dataset)).close();
+    }
+
+}
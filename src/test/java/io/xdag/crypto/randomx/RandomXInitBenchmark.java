@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the expensive setup operations: cache initialization, dataset initialization and key change.
+ * Parameterised over JIT/interpreter and large pages; reports average time and latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class RandomXInitBenchmark {
+
+    @Param({"true", "false"})
+    public boolean jit;
+
+    @Param({"false", "true"})
+    public boolean largePages;
+
+    private RandomXLargePages pages;
+    private RandomXCache cache;
+    private byte[] key;
+    private int keyIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        pages = RandomXLargePages.probe();
+        Set<RandomXFlag> flags = RandomXBenchmarkSupport.flags(jit, false, largePages);
+        cache = largePages ? pages.allocateCache(flags) : new RandomXCache(flags);
+        cache.init(RandomXBenchmarkSupport.KEY);
+        key = RandomXBenchmarkSupport.KEY.clone();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RandomXBenchmarkSupport.logLargePages(pages, largePages);
+        if (cache != null) cache.close();
+    }
+
+    /**
+     * Cache (Argon2) initialization. The key changes on every call because librandomx skips
+     * re-initialization with an unchanged key.
+     */
+    @Benchmark
+    public RandomXCache cacheInit() {
+        key[0] = (byte) ++keyIndex;
+        cache.init(key);
+        return cache;
+    }
+
+    /**
+     * Key change on a light-mode template, i.e. what a verifier pays at each seed rotation.
+     */
+    @Benchmark
+    public void changeKey(TemplateState state) {
+        key[0] = (byte) ++keyIndex;
+        state.template.changeKey(key);
+    }
+
+    /**
+     * Full dataset initialization using {@code initThreads} threads (0 for the default).
+     * Each measurement is a single cold run, since one run takes tens of seconds.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public RandomXDataset datasetInit(DatasetState state) {
+        return state.dataset.initAsync(cache, null, state.initThreads, null).join();
+    }
+
+    /**
+     * Light-mode template whose key is changed by {@link #changeKey}.
+     */
+    @State(Scope.Benchmark)
+    public static class TemplateState {
+        RandomXCache cache;
+        RandomXTemplate template;
+
+        @Setup(Level.Trial)
+        public void setup(RandomXInitBenchmark benchmark) {
+            Set<RandomXFlag> flags = RandomXBenchmarkSupport.flags(benchmark.jit, false, benchmark.largePages);
+            cache = benchmark.largePages ? benchmark.pages.allocateCache(flags) : new RandomXCache(flags);
+            template = RandomXTemplate.builder()
+                    .miningMode(false)
+                    .flags(cache.getFlags())
+                    .cache(cache)
+                    .build();
+            template.changeKey(RandomXBenchmarkSupport.KEY);
+            template.init();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (template != null) template.close();
+            if (cache != null) cache.close();
+        }
+    }
+
+    /**
+     * Dataset allocated once per trial and re-initialized by each {@link #datasetInit} call.
+     */
+    @State(Scope.Benchmark)
+    public static class DatasetState {
+        @Param({"0", "1"})
+        public int initThreads;
+
+        RandomXDataset dataset;
+
+        @Setup(Level.Trial)
+        public void setup(RandomXInitBenchmark benchmark) {
+            Set<RandomXFlag> flags = RandomXBenchmarkSupport.flags(benchmark.jit, true, benchmark.largePages);
+            dataset = benchmark.largePages ? benchmark.pages.allocateDataset(flags) : new RandomXDataset(flags);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (dataset != null) dataset.close();
+        }
+    }
+}
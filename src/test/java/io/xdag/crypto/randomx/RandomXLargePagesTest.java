@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXLargePages class.
+ */
+public class RandomXLargePagesTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests parsing of meminfo, per-size hugepage counters and the transparent hugepage setting.
+     */
+    @Test
+    void testProbe() throws IOException {
+        Path meminfo = Files.writeString(tempDir.resolve("meminfo"),
+                "MemTotal:       16384000 kB\nHugePages_Total:     256\nHugePages_Free:      200\nHugepagesize:       2048 kB\n");
+        Path thp = Files.writeString(tempDir.resolve("enabled"), "always [madvise] never\n");
+        Path sizes = Files.createDirectories(tempDir.resolve("hugepages").resolve("hugepages-2048kB"));
+        Files.writeString(sizes.resolve("free_hugepages"), "100\n");
+        // Gigantic pages cannot serve default-size allocations and must not be counted.
+        Path gigantic = Files.createDirectories(tempDir.resolve("hugepages").resolve("hugepages-1048576kB"));
+        Files.writeString(gigantic.resolve("free_hugepages"), "4\n");
+
+        RandomXLargePages pages = RandomXLargePages.probe(meminfo, tempDir.resolve("hugepages"), thp);
+        assertTrue(pages.isProbed());
+        assertEquals(2048L * 1024, pages.getPageSize());
+        assertEquals(256, pages.getTotalPages());
+        assertEquals(100L * 2048 * 1024, pages.getFreeBytes());
+        assertEquals("madvise", pages.getTransparentHugePages());
+
+        // Without per-size directories the meminfo counter is used.
+        pages = RandomXLargePages.probe(meminfo, tempDir.resolve("missing"), thp);
+        assertEquals(200L * 2048 * 1024, pages.getFreeBytes());
+
+        pages = RandomXLargePages.probe(tempDir.resolve("missing"), tempDir.resolve("missing"), tempDir.resolve("missing"));
+        assertFalse(pages.isProbed());
+        assertEquals(-1, pages.getFreeBytes());
+        assertNull(pages.getTransparentHugePages());
+    }
+
+    /**
+     * Tests that allocations fall back to normal pages and are reported, both when the probe rules large pages
+     * out and when the probe is inconclusive and the large-page attempt itself is made.
+     */
+    @Test
+    void testAllocationFallback() throws IOException {
+        Set<RandomXFlag> flags = Set.of(RandomXFlag.DEFAULT, RandomXFlag.LARGE_PAGES);
+        Path meminfo = Files.writeString(tempDir.resolve("meminfo"),
+                "HugePages_Total:       0\nHugePages_Free:        0\nHugepagesize:       2048 kB\n");
+        RandomXLargePages pages = RandomXLargePages.probe(meminfo, tempDir.resolve("missing"), tempDir.resolve("missing"));
+        try (RandomXCache cache = pages.allocateCache(flags)) {
+            assertFalse(cache.getFlags().contains(RandomXFlag.LARGE_PAGES));
+        }
+        assertEquals(1, pages.getNormalPageCount(RandomXLargePages.Structure.CACHE));
+        assertFalse(pages.isLargePages(RandomXLargePages.Structure.CACHE));
+        assertTrue(pages.report().contains("cache=normal, dataset=none, vm=none"), pages.report());
+
+        // Unknown host configuration: large pages are attempted and each allocation ends up somewhere.
+        pages = RandomXLargePages.probe(tempDir.resolve("missing"), tempDir.resolve("missing"), tempDir.resolve("missing"));
+        try (RandomXCache cache = pages.allocateCache(flags)) {
+            assertEquals(cache.getFlags().contains(RandomXFlag.LARGE_PAGES),
+                    pages.isLargePages(RandomXLargePages.Structure.CACHE));
+        }
+        assertEquals(1, pages.getLargePageCount(RandomXLargePages.Structure.CACHE)
+                + pages.getNormalPageCount(RandomXLargePages.Structure.CACHE));
+    }
+
+    /**
+     * Tests that a native memory budget failure propagates instead of being retried on normal pages,
+     * which would wait out the budget timeout a second time.
+     */
+    @Test
+    void testBudgetFailureNotRetried() {
+        RandomXLargePages pages = RandomXLargePages.probe(tempDir.resolve("missing"), tempDir.resolve("missing"), tempDir.resolve("missing"));
+        long base = RandomXNativeMemory.getUsed();
+        RandomXNativeMemory.setBudget(base + RandomXCache.MEMORY_BYTES + RandomXCache.MEMORY_BYTES / 2,
+                RandomXNativeMemory.BudgetPolicy.WAIT, 1500, TimeUnit.MILLISECONDS);
+        // Holding one cache leaves room for half of another, so the next allocation waits out the timeout.
+        RandomXCache held = new RandomXCache(Set.of(RandomXFlag.DEFAULT));
+        try {
+            long start = System.nanoTime();
+            assertThrows(IllegalStateException.class, () -> pages.allocateCache(Set.of(RandomXFlag.DEFAULT, RandomXFlag.LARGE_PAGES)));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2900), "The budget wait should happen once.");
+        } finally {
+            held.close();
+            RandomXNativeMemory.clearBudget();
+        }
+        assertEquals(0, pages.getLargePageCount(RandomXLargePages.Structure.CACHE)
+                + pages.getNormalPageCount(RandomXLargePages.Structure.CACHE));
+    }
+}
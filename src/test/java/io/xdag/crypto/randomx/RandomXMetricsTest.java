@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the metrics SPI, RandomXStatistics and RandomXMicrometerMetrics.
+ */
+public class RandomXMetricsTest {
+
+    private static final Set<RandomXFlag> FLAGS = RandomXUtils.getRecommendedFlags();
+
+    private static final byte[] KEY = "metrics key".getBytes(StandardCharsets.UTF_8);
+
+    @AfterEach
+    void uninstall() {
+        RandomXMetrics.install(null);
+    }
+
+    /**
+     * Tests that hashing, initialization, key changes, VM lifecycle, native memory and pool waits are reported.
+     */
+    @Test
+    void testStatistics() throws InterruptedException {
+        RandomXStatistics statistics = new RandomXStatistics();
+        RandomXMetrics.install(statistics);
+
+        RandomXCache cache = new RandomXCache(FLAGS);
+        assertEquals(RandomXCache.MEMORY_BYTES, statistics.getNativeMemory(RandomXMetricsListener.Resource.CACHE));
+        RandomXTemplate template = RandomXTemplate.builder().miningMode(false).flags(FLAGS).cache(cache).build();
+        template.changeKey(KEY);
+        template.init();
+        assertEquals(1, statistics.getCacheInit().getCount());
+        assertEquals(1, statistics.getKeyChangeStall().getCount());
+
+        template.calculateHash("a".getBytes(StandardCharsets.UTF_8));
+        template.calculateHashBatch(List.of(new byte[] {1}, new byte[] {2}, new byte[] {3}));
+        assertEquals(4, statistics.getHashCount());
+        assertEquals(4, statistics.getHashLatency().getCount());
+        assertEquals(List.of(4L), List.copyOf(statistics.getHashCountsByVm().values()));
+        assertTrue(statistics.getHashLatency().percentileNanos(0.5) > 0);
+        statistics.hashesComputed(-1, 0, 0);
+        assertEquals(4, statistics.getHashLatency().getCount(), "An empty batch must be ignored.");
+        assertEquals(1, statistics.getVmsCreated());
+        assertEquals(RandomXVM.NATIVE_BYTES, statistics.getNativeMemory(RandomXMetricsListener.Resource.VM));
+
+        try (RandomXVMPool pool = RandomXVMPool.builder().flags(FLAGS).cache(cache).size(1).build()) {
+            pool.release(pool.acquire());
+            assertEquals(1, statistics.getPoolWait().getCount());
+        }
+
+        template.close();
+        cache.close();
+        assertEquals(2, statistics.getVmsDestroyed());
+        assertEquals(0, statistics.getNativeMemory(RandomXMetricsListener.Resource.VM));
+        assertEquals(0, statistics.getNativeMemory(RandomXMetricsListener.Resource.CACHE));
+    }
+
+    /**
+     * Tests percentile bucketing of the histogram.
+     */
+    @Test
+    void testHistogram() {
+        RandomXStatistics.Histogram histogram = new RandomXStatistics().getHashLatency();
+        assertEquals(0, histogram.percentileNanos(0.99));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+        assertEquals(1023, histogram.percentileNanos(0.5));
+        assertEquals(1023, histogram.percentileNanos(0.99));
+        assertEquals((1L << 20) - 1, histogram.percentileNanos(1));
+        assertEquals(100, histogram.getCount());
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(1.5));
+    }
+
+    /**
+     * Tests that the Micrometer adapter publishes hashes and VM lifecycle.
+     */
+    @Test
+    void testMicrometer() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RandomXMetrics.install(new RandomXMicrometerMetrics(registry));
+        try (RandomXCache cache = new RandomXCache(FLAGS)) {
+            cache.init(KEY);
+            try (RandomXVM vm = new RandomXVM(FLAGS, cache, null)) {
+                vm.calculateHash(KEY);
+                assertEquals(1, registry.get("randomx.vm.hashes").tag("vm", Long.toString(vm.getId())).counter().count());
+            }
+        }
+        assertEquals(1, registry.get("randomx.hash").timer().count());
+        assertEquals(1, registry.get("randomx.hashes").functionCounter().count());
+
+        // A large batch is one timer sample at its average latency; an empty one is ignored.
+        double totalNanos = registry.get("randomx.hash").timer().totalTime(TimeUnit.NANOSECONDS);
+        RandomXMetrics.listener().hashesComputed(-1, 1_000_000, 1_000_000_000L);
+        RandomXMetrics.listener().hashesComputed(-1, 0, 0);
+        assertEquals(2, registry.get("randomx.hash").timer().count());
+        assertEquals(1_000_001, registry.get("randomx.hashes").functionCounter().count());
+        assertEquals(totalNanos + 1000, registry.get("randomx.hash").timer().totalTime(TimeUnit.NANOSECONDS));
+        assertEquals(1, registry.get("randomx.cache.init").timer().count());
+        assertEquals(1, registry.get("randomx.vm.destroyed").counter().count());
+        assertEquals(0, registry.get("randomx.native.memory").tag("resource", "cache").gauge().value());
+        assertTrue(registry.find("randomx.vm.hashes").counters().isEmpty());
+    }
+}
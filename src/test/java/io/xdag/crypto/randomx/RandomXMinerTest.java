@@ -0,0 +1,150 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXMiner and RandomXTarget classes.
+ * Uses a light-mode VM so that no dataset has to be built.
+ */
+public class RandomXMinerTest {
+
+    private static final byte[] TEMPLATE = "block template with a nonce here: ........".getBytes(StandardCharsets.UTF_8);
+    private static final int NONCE_OFFSET = TEMPLATE.length - 8;
+
+    private RandomXCache cache;
+    private RandomXVM vm;
+
+    @BeforeEach
+    void setUp() {
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+        flags.remove(RandomXFlag.FULL_MEM);
+        cache = new RandomXCache(flags);
+        cache.init("test key 000".getBytes(StandardCharsets.UTF_8));
+        vm = new RandomXVM(flags, cache, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        vm.close();
+        cache.close();
+    }
+
+    /**
+     * Tests that with the easiest target every nonce wins and each reported hash matches a plain hash
+     * of the template with that nonce written little-endian.
+     */
+    @Test
+    void testEveryNonceWinsWithMaxTarget() {
+        try (RandomXMiner miner = new RandomXMiner(vm)) {
+            List<MiningResult> results = miner.mine(TEMPLATE, NONCE_OFFSET, 4, 10, 3, RandomXTarget.MAX);
+            assertEquals(3, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                MiningResult result = results.get(i);
+                assertEquals(10 + i, result.getNonce());
+                byte[] input = Arrays.copyOf(TEMPLATE, TEMPLATE.length);
+                input[NONCE_OFFSET] = (byte) (10 + i);
+                input[NONCE_OFFSET + 1] = 0;
+                input[NONCE_OFFSET + 2] = 0;
+                input[NONCE_OFFSET + 3] = 0;
+                assertArrayEquals(vm.calculateHash(input), result.getHash(), "Hash for nonce " + result.getNonce());
+            }
+            assertEquals(3, miner.getHashCount());
+        }
+    }
+
+    /**
+     * Tests that only hashes meeting the target are reported.
+     */
+    @Test
+    void testOnlyWinningNoncesReported() {
+        try (RandomXMiner miner = new RandomXMiner(vm)) {
+            List<MiningResult> all = miner.mine(TEMPLATE, NONCE_OFFSET, 8, 0, 4, RandomXTarget.MAX);
+            // Use the second hash as the target: every reported hash must be at or below it.
+            RandomXTarget target = RandomXTarget.fromLittleEndian(all.get(1).getHash());
+            List<MiningResult> winners = miner.mine(TEMPLATE, NONCE_OFFSET, 8, 0, 4, target);
+            assertTrue(winners.stream().anyMatch(r -> r.getNonce() == 1));
+            for (MiningResult result : all) {
+                boolean reported = winners.stream().anyMatch(r -> r.getNonce() == result.getNonce());
+                assertEquals(target.isMetBy(result.getHash()), reported, "Nonce " + result.getNonce());
+            }
+            assertThrows(IllegalArgumentException.class,
+                    () -> miner.mine(TEMPLATE, NONCE_OFFSET, 1, 250, 10, RandomXTarget.MAX));
+        }
+    }
+
+    /**
+     * Tests that a nonce range overflowing 64 bits is rejected before any hashing, while a range ending
+     * at the top of the unsigned nonce space is accepted.
+     */
+    @Test
+    void testNonceRangeOverflow() {
+        try (RandomXMiner miner = new RandomXMiner(vm)) {
+            miner.setTemplate(TEMPLATE, NONCE_OFFSET, 8);
+            assertThrows(IllegalArgumentException.class,
+                    () -> miner.mine(0, 3, Long.MAX_VALUE, RandomXTarget.MAX, result -> {}));
+            assertThrows(IllegalArgumentException.class,
+                    () -> miner.mine(-2, 2, Long.MAX_VALUE, RandomXTarget.MAX, result -> {}));
+            assertThrows(IllegalArgumentException.class,
+                    () -> miner.mine(-1, 2, 1, RandomXTarget.MAX, result -> {}));
+            assertEquals(0, miner.getHashCount());
+
+            assertEquals(2, miner.mine(-2, 2, 1, RandomXTarget.MAX, result -> {}));
+        }
+    }
+
+    /**
+     * Tests little-endian target comparison and difficulty conversion.
+     */
+    @Test
+    void testTargetComparison() {
+        byte[] target = new byte[32];
+        target[31] = 0x10;
+        RandomXTarget t = RandomXTarget.fromLittleEndian(target);
+
+        byte[] hash = new byte[32];
+        hash[31] = 0x10;
+        assertTrue(t.isMetBy(hash), "Equal hash meets the target.");
+        hash[0] = 1;
+        assertFalse(t.isMetBy(hash), "Larger hash does not meet the target.");
+        hash[31] = 0x0f;
+        hash[0] = (byte) 0xff;
+        assertTrue(t.isMetBy(hash), "Smaller most significant byte meets the target.");
+
+        assertEquals(RandomXTarget.MAX, RandomXTarget.fromDifficulty(1));
+        byte[] half = RandomXTarget.fromDifficulty(2).toLittleEndian();
+        assertEquals(0x7f, half[31]);
+        assertEquals((byte) 0xff, half[0]);
+    }
+}
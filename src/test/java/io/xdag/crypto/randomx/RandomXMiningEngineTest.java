@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXMiningEngine class.
+ * Uses light-mode workers so that no dataset has to be built.
+ */
+public class RandomXMiningEngineTest {
+
+    private static final byte[] TEMPLATE = "engine template, nonce at the end: .".getBytes(StandardCharsets.UTF_8);
+
+    private Set<RandomXFlag> flags;
+    private RandomXCache cache;
+
+    @BeforeEach
+    void setUp() {
+        flags = RandomXUtils.getRecommendedFlags();
+        cache = new RandomXCache(flags);
+        cache.init("test key 000".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    /**
+     * Tests that the workers together cover a one-byte nonce space exactly once and report
+     * per-thread and aggregate hash counts.
+     */
+    @ParameterizedTest
+    @EnumSource(RandomXMiningEngine.NoncePartitioning.class)
+    void testNonceSpaceCoveredOnce(RandomXMiningEngine.NoncePartitioning partitioning) throws Exception {
+        Map<Long, Integer> found = new ConcurrentHashMap<>();
+        try (RandomXMiningEngine engine = RandomXMiningEngine.builder()
+                .flags(flags)
+                .cache(cache)
+                .lightMode(true)
+                .threadCount(3)
+                .partitioning(partitioning)
+                .batchSize(8)
+                .resultListener(result -> found.merge(result.getNonce(), 1, Integer::sum))
+                .build()) {
+            engine.start();
+            engine.submitJob(MiningJob.builder()
+                    .jobId("job-1")
+                    .template(TEMPLATE)
+                    .nonceOffset(TEMPLATE.length - 1)
+                    .nonceWidth(1)
+                    .target(RandomXTarget.MAX)
+                    .build());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+            while (engine.getTotalHashes() < 256 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(256, engine.getTotalHashes(), "Every nonce should be hashed exactly once.");
+            assertEquals(3, engine.getThreadHashrates().length);
+            assertTrue(engine.getHashrate() > 0);
+        }
+        assertEquals(256, found.size());
+        assertTrue(found.values().stream().allMatch(count -> count == 1), "No nonce should be reported twice.");
+    }
+
+    /**
+     * Tests that a result listener that throws neither stops the workers nor loses later results.
+     */
+    @Test
+    void testListenerFailureDoesNotStopMining() throws Exception {
+        Set<Long> found = ConcurrentHashMap.newKeySet();
+        try (RandomXMiningEngine engine = RandomXMiningEngine.builder()
+                .flags(flags)
+                .cache(cache)
+                .lightMode(true)
+                .threadCount(2)
+                .batchSize(4)
+                .resultListener(result -> {
+                    found.add(result.getNonce());
+                    throw new IllegalStateException("Listener failure for nonce " + result.getNonce());
+                })
+                .build()) {
+            engine.start();
+            engine.submitJob(MiningJob.builder().jobId("job-1").template(TEMPLATE).nonceOffset(TEMPLATE.length - 1)
+                    .nonceWidth(1).target(RandomXTarget.MAX).build());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+            while (found.size() < 256 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(256, found.size(), "Every nonce should still be reported.");
+            assertEquals(256, engine.getTotalHashes());
+        }
+    }
+
+    /**
+     * Tests that a job with a different, prepared seed switches every worker to the new key and that
+     * results are tagged with the job they were found for.
+     */
+    @Test
+    void testSeedChangeSwitchesKey() throws Exception {
+        byte[] seed1 = "test key 000".getBytes(StandardCharsets.UTF_8);
+        byte[] seed2 = "test key 001".getBytes(StandardCharsets.UTF_8);
+        BlockingQueue<MiningResult> results = new LinkedBlockingQueue<>();
+
+        try (RandomXMiningEngine engine = RandomXMiningEngine.builder()
+                .flags(flags)
+                .cache(cache)
+                .seed(seed1)
+                .lightMode(true)
+                .threadCount(2)
+                .batchSize(2)
+                .resultListener(results::add)
+                .build()) {
+            engine.start();
+            engine.submitJob(MiningJob.builder().jobId("a").template(TEMPLATE).nonceOffset(TEMPLATE.length - 1)
+                    .nonceWidth(1).target(RandomXTarget.MAX).seed(seed1).build());
+            MiningResult first = results.poll(60, TimeUnit.SECONDS);
+            assertNotNull(first);
+            assertEquals("a", first.getJobId());
+
+            engine.prepareSeed(seed2).get(60, TimeUnit.SECONDS);
+            engine.submitJob(MiningJob.builder().jobId("b").template(TEMPLATE).nonceOffset(TEMPLATE.length - 1)
+                    .nonceWidth(1).target(RandomXTarget.MAX).seed(seed2).build());
+            assertTrue(engine.isCurrentJob("b"));
+            assertFalse(engine.isCurrentJob("a"));
+
+            MiningResult switched;
+            do {
+                switched = results.poll(60, TimeUnit.SECONDS);
+                assertNotNull(switched, "Workers should produce results for the new job.");
+            } while (!"b".equals(switched.getJobId()));
+
+            byte[] input = TEMPLATE.clone();
+            input[input.length - 1] = (byte) switched.getNonce();
+            Set<RandomXFlag> lightFlags = EnumSet.copyOf(flags);
+            lightFlags.remove(RandomXFlag.FULL_MEM);
+            try (RandomXCache referenceCache = new RandomXCache(lightFlags)) {
+                referenceCache.init(seed2);
+                try (RandomXVM referenceVm = new RandomXVM(lightFlags, referenceCache, null)) {
+                    assertArrayEquals(referenceVm.calculateHash(input), switched.getHash(),
+                            "Results for the new job should be hashed with the new key.");
+                }
+            }
+
+            // A second close, here followed by the one from try-with-resources, must not release anything twice.
+            engine.close();
+            assertThrows(IllegalStateException.class, engine::start);
+        }
+    }
+}
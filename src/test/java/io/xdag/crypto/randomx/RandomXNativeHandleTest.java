@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXNativeHandle class and the close semantics of the native wrappers.
+ */
+public class RandomXNativeHandleTest {
+
+    private static final byte[] KEY = "RandomXNativeHandleTest key".getBytes();
+
+    /**
+     * Tests that closing twice is harmless and that use after close fails instead of touching freed memory.
+     */
+    @Test
+    void testCloseIsIdempotent() {
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+        long base = RandomXNativeMemory.getUsed();
+
+        RandomXCache cache = new RandomXCache(flags);
+        cache.init(KEY);
+        RandomXVM vm = new RandomXVM(flags, cache, null);
+        assertNotNull(vm.calculateHash("input".getBytes()));
+
+        vm.close();
+        vm.close();
+        assertTrue(vm.isClosed());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> vm.calculateHash("input".getBytes()));
+        assertEquals("VM is closed.", e.getMessage());
+        assertThrows(IllegalStateException.class, vm::getVmPointer);
+
+        cache.close();
+        cache.close();
+        assertTrue(cache.isClosed());
+        assertThrows(IllegalStateException.class, () -> cache.init(KEY));
+        assertThrows(IllegalStateException.class, cache::getCachePointer);
+
+        assertEquals(base, RandomXNativeMemory.getUsed());
+    }
+
+    /**
+     * Tests that a cache dropped without being closed is freed by the safety net and counted as a leak.
+     */
+    @Test
+    void testLeakedCacheIsFreed() throws InterruptedException {
+        long base = RandomXNativeMemory.getUsed();
+        long leaked = RandomXNativeMemory.getLeakedCount(RandomXMetricsListener.Resource.CACHE);
+
+        allocateAndDrop();
+        assertEquals(base + RandomXCache.MEMORY_BYTES, RandomXNativeMemory.getUsed());
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (RandomXNativeMemory.getUsed() != base && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(base, RandomXNativeMemory.getUsed());
+        assertEquals(leaked + 1, RandomXNativeMemory.getLeakedCount(RandomXMetricsListener.Resource.CACHE));
+    }
+
+    private static void allocateAndDrop() {
+        new RandomXCache(RandomXUtils.getRecommendedFlags()).init(KEY);
+    }
+}
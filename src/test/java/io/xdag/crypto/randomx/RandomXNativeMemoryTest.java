@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXNativeMemory class.
+ */
+public class RandomXNativeMemoryTest {
+
+    private static final long MIB = 1024 * 1024;
+
+    @AfterEach
+    void clearBudget() {
+        RandomXNativeMemory.clearBudget();
+    }
+
+    /**
+     * Tests accounting of real allocations and rejection of one that would exceed the budget.
+     */
+    @Test
+    void testRejectOverBudget() {
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+        long base = RandomXNativeMemory.getUsed();
+        RandomXNativeMemory.setBudget(base + RandomXCache.MEMORY_BYTES + 8 * MIB,
+                RandomXNativeMemory.BudgetPolicy.REJECT, 0, TimeUnit.MILLISECONDS);
+
+        try (RandomXCache cache = new RandomXCache(flags)) {
+            assertEquals(base + RandomXCache.MEMORY_BYTES, RandomXNativeMemory.getUsed());
+            assertTrue(RandomXNativeMemory.getPeak() >= RandomXNativeMemory.getUsed());
+            assertThrows(IllegalStateException.class, () -> new RandomXCache(flags));
+            assertEquals(base + RandomXCache.MEMORY_BYTES, RandomXNativeMemory.getUsed());
+
+            cache.init("key".getBytes());
+            try (RandomXVM vm = new RandomXVM(flags, cache, null)) {
+                assertEquals(base + RandomXCache.MEMORY_BYTES + RandomXVM.NATIVE_BYTES, RandomXNativeMemory.getUsed());
+            }
+        }
+        assertEquals(base, RandomXNativeMemory.getUsed());
+    }
+
+    /**
+     * Tests that a waiting allocation proceeds once memory is released, and that releasing twice is harmless.
+     */
+    @Test
+    void testWaitForRelease() throws Exception {
+        long base = RandomXNativeMemory.getUsed();
+        RandomXNativeMemory.setBudget(base + 300 * MIB, RandomXNativeMemory.BudgetPolicy.WAIT, 10, TimeUnit.SECONDS);
+
+        RandomXNativeMemory.Reservation first = RandomXNativeMemory.reserve(RandomXMetricsListener.Resource.CACHE, 200 * MIB);
+        CompletableFuture<RandomXNativeMemory.Reservation> second = CompletableFuture.supplyAsync(
+                () -> RandomXNativeMemory.reserve(RandomXMetricsListener.Resource.CACHE, 200 * MIB));
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+
+        first.release();
+        first.release();
+        second.get(10, TimeUnit.SECONDS).release();
+        assertEquals(base, RandomXNativeMemory.getUsed());
+
+        // Larger than the whole budget: rejected instead of waiting forever.
+        assertThrows(IllegalStateException.class,
+                () -> RandomXNativeMemory.reserve(RandomXMetricsListener.Resource.DATASET, 400 * MIB));
+    }
+
+    /**
+     * Tests parsing of budget values.
+     */
+    @Test
+    void testParseBytes() {
+        assertEquals(1536, RandomXNativeMemory.parseBytes("1536"));
+        assertEquals(4L << 30, RandomXNativeMemory.parseBytes(" 4G "));
+        assertEquals(512L << 20, RandomXNativeMemory.parseBytes("512m"));
+        assertThrows(NumberFormatException.class, () -> RandomXNativeMemory.parseBytes("-1k"));
+        assertThrows(NumberFormatException.class, () -> RandomXNativeMemory.parseBytes("lots"));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXNumaTopology class.
+ */
+public class RandomXNumaTopologyTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests parsing of kernel CPU lists.
+     */
+    @Test
+    void testParseCpuList() {
+        BitSet expected = new BitSet();
+        expected.set(0, 4);
+        expected.set(8);
+        expected.set(10, 12);
+        assertEquals(expected, RandomXNumaTopology.parseCpuList("0-3,8,10-11\n"));
+        assertTrue(RandomXNumaTopology.parseCpuList("\n").isEmpty());
+        assertThrows(NumberFormatException.class, () -> RandomXNumaTopology.parseCpuList("0-x"));
+    }
+
+    /**
+     * Tests reading a two-node layout with an additional memory-only node, and rejection of a broken tree.
+     */
+    @Test
+    void testReadSysfs() throws IOException {
+        writeNode(0, "0-1,4-5");
+        writeNode(1, "2-3,6-7");
+        writeNode(2, "");
+        Files.writeString(tempDir.resolve("online"), "0-2\n");
+
+        RandomXNumaTopology topology = RandomXNumaTopology.read(tempDir);
+        assertNotNull(topology);
+        assertTrue(topology.isMultiNode());
+        assertEquals(2, topology.getNodeCount());
+        assertEquals(1, topology.getNodeId(1));
+        assertEquals(RandomXNumaTopology.parseCpuList("2-3,6-7"), topology.getCpus(1));
+
+        // Returned CPU sets are copies.
+        topology.getCpus(0).clear();
+        assertEquals(4, topology.getCpus(0).cardinality());
+
+        Files.writeString(tempDir.resolve("online"), "0-3\n");
+        assertNull(RandomXNumaTopology.read(tempDir));
+    }
+
+    /**
+     * Tests that detection always yields a usable topology.
+     */
+    @Test
+    void testDetectFallback() {
+        assertNull(RandomXNumaTopology.read(tempDir.resolve("missing")));
+        RandomXNumaTopology single = RandomXNumaTopology.singleNode();
+        assertFalse(single.isMultiNode());
+        assertEquals(Runtime.getRuntime().availableProcessors(), single.getCpus(0).cardinality());
+        assertTrue(RandomXNumaTopology.detect().getNodeCount() >= 1);
+    }
+
+    private void writeNode(int node, String cpulist) throws IOException {
+        Path dir = Files.createDirectories(tempDir.resolve("node" + node));
+        Files.writeString(dir.resolve("cpulist"), cpulist + "\n");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXResourceRegistry class.
+ * Uses light mode so that no dataset has to be built.
+ */
+public class RandomXResourceRegistryTest {
+
+    private static final byte[] KEY1 = "hello xdagj-native-randomx".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] KEY2 = "world xdagj-native-randomx".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Tests that leases on the same key share one cache that is released with the last lease.
+     */
+    @Test
+    void testCacheSharing() {
+        RandomXResourceRegistry registry = new RandomXResourceRegistry();
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+
+        RandomXCacheLease first = registry.acquireCache(KEY1, flags);
+        RandomXCacheLease second = registry.acquireCache(KEY1, flags);
+        assertSame(first.getCache(), second.getCache());
+        assertEquals(1, registry.getCacheCount());
+
+        first.close();
+        first.close(); // Idempotent
+        assertEquals(1, registry.getCacheCount());
+        second.close();
+        assertEquals(0, registry.getCacheCount());
+    }
+
+    /**
+     * Tests that templates on the same key share the registry cache and release it on key change and close.
+     */
+    @Test
+    void testTemplatesShareCache() {
+        RandomXResourceRegistry registry = new RandomXResourceRegistry();
+        Set<RandomXFlag> flags = RandomXUtils.getRecommendedFlags();
+        HexFormat hex = HexFormat.of();
+
+        try (RandomXTemplate template1 = RandomXTemplate.builder().flags(flags).registry(registry).build();
+             RandomXTemplate template2 = RandomXTemplate.builder().flags(flags).registry(registry).build()) {
+            assertThrows(IllegalStateException.class, template1::init);
+            template1.changeKey(KEY1);
+            template1.init();
+            template2.changeKey(KEY1);
+            template2.init();
+            assertSame(template1.getCache(), template2.getCache());
+            assertEquals(1, registry.getCacheCount());
+            assertEquals("5d4155322b69284bf45fa8ac182384490a87c55a6af47b7e72558cafa8832bd9",
+                    hex.formatHex(template2.calculateHash(KEY1)));
+
+            template1.changeKey(KEY2);
+            assertEquals(2, registry.getCacheCount());
+            assertEquals("3910d7b054df9ba920e2f7e103aa2c1fc4597b13d1793f1ab08c1c9c922709c0",
+                    hex.formatHex(template1.calculateHash(KEY2)));
+
+            template2.changeKey(KEY2);
+            assertEquals(1, registry.getCacheCount(), "The cache for the first key should be released");
+        }
+        assertEquals(0, registry.getCacheCount());
+    }
+}
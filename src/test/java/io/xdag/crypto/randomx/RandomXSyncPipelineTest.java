@@ -0,0 +1,114 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXSyncPipeline class.
+ */
+public class RandomXSyncPipelineTest {
+
+    /**
+     * Tests that a stream spanning several epochs is verified correctly and delivered in submission order,
+     * with back-pressure limiting the producer to two items in flight.
+     */
+    @Test
+    void testOrderedResultsAcrossEpochs() throws InterruptedException {
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        byte[] key1 = "test key 000".getBytes(StandardCharsets.UTF_8);
+        byte[] key2 = "test key 001".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = HexFormat.of().parseHex("639183aae1bf4c9a35884cb46b09cad9175f04efd7684e7262a0ac1c2f0b4e3f");
+        byte[] wrong = expected.clone();
+        wrong[31] ^= 1;
+
+        List<RandomXSyncPipeline.Result> results = Collections.synchronizedList(new ArrayList<>());
+        try (RandomXSyncPipeline pipeline = RandomXSyncPipeline.builder()
+                .flags(RandomXUtils.getRecommendedFlags())
+                .threads(2)
+                .maxPending(2)
+                .registry(new RandomXResourceRegistry())
+                .sink(results::add)
+                .build()) {
+            pipeline.submit(1, new RandomXVerifier.Check(key1, input, expected, null));
+            pipeline.submit(2, new RandomXVerifier.Check(key1, input, wrong, null));
+            pipeline.submit(3, new RandomXVerifier.Check(key1, input, expected, RandomXTarget.MAX));
+            pipeline.submit(4, new RandomXVerifier.Check(key2, input, RandomXTarget.MAX));
+            pipeline.submit(5, new RandomXVerifier.Check(key2, input, expected, null));
+            pipeline.submit(6, new RandomXVerifier.Check(key1, input, RandomXTarget.fromLittleEndian(expected)));
+            pipeline.flush();
+
+            assertEquals(6, results.size());
+            assertEquals(3, pipeline.getEpochCount());
+            assertEquals(0, pipeline.getFailureCount());
+        }
+
+        boolean[] valid = {true, false, true, true, false, true};
+        for (int i = 0; i < valid.length; i++) {
+            assertEquals(i + 1, results.get(i).getHeight());
+            assertEquals(valid[i], results.get(i).isValid(), "height " + (i + 1));
+            assertNull(results.get(i).getError());
+        }
+    }
+
+    /**
+     * Tests that an Error thrown while delivering a result still frees room for the producer.
+     */
+    @Test
+    void testErrorDoesNotStallPipeline() {
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        byte[] key = "test key 000".getBytes(StandardCharsets.UTF_8);
+
+        List<RandomXSyncPipeline.Result> results = Collections.synchronizedList(new ArrayList<>());
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            try (RandomXSyncPipeline pipeline = RandomXSyncPipeline.builder()
+                    .flags(RandomXUtils.getRecommendedFlags())
+                    .threads(1)
+                    .maxPending(1)
+                    .registry(new RandomXResourceRegistry())
+                    .sink(result -> {
+                        if (result.getHeight() == 1) {
+                            throw new AssertionError("sink failure");
+                        }
+                        results.add(result);
+                    })
+                    .build()) {
+                pipeline.submit(1, new RandomXVerifier.Check(key, input, RandomXTarget.MAX));
+                pipeline.submit(2, new RandomXVerifier.Check(key, input, RandomXTarget.MAX));
+                pipeline.flush();
+            }
+        });
+        assertEquals(1, results.size());
+        assertEquals(2, results.get(0).getHeight());
+    }
+}
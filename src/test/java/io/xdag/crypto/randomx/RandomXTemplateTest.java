@@ -28,6 +28,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.charset.StandardCharsets;
 import java.util.HexFormat;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -114,4 +115,68 @@ public class RandomXTemplateTest {
         assertEquals("3910d7b054df9ba920e2f7e103aa2c1fc4597b13d1793f1ab08c1c9c922709c0", hex.formatHex(hash));
     }
 
+    @Test
+    public void testPrepareNextKey() throws Exception {
+        byte[] key1Bytes = "hello xdagj-native-randomx".getBytes(StandardCharsets.UTF_8);
+        byte[] key2Bytes = "world xdagj-native-randomx".getBytes(StandardCharsets.UTF_8);
+
+        Set<RandomXFlag> flagSet = RandomXUtils.getRecommendedFlags();
+        HexFormat hex = HexFormat.of();
+
+        try (RandomXCache cache = new RandomXCache(flagSet);
+             RandomXTemplate template = RandomXTemplate.builder()
+                     .cache(cache)
+                     .miningMode(false)
+                     .flags(flagSet)
+                     .build()) {
+            template.changeKey(key1Bytes);
+            template.init();
+
+            template.prepareNextKey(key2Bytes).get(60, TimeUnit.SECONDS);
+            // The current key keeps serving while the next one is prepared.
+            assertEquals("5d4155322b69284bf45fa8ac182384490a87c55a6af47b7e72558cafa8832bd9",
+                    hex.formatHex(template.calculateHash(key1Bytes)));
+
+            template.changeKey(key2Bytes);
+            assertNotSame(cache, template.getCache(), "The prepared cache should replace the original one.");
+            assertEquals("3910d7b054df9ba920e2f7e103aa2c1fc4597b13d1793f1ab08c1c9c922709c0",
+                    hex.formatHex(template.calculateHash(key2Bytes)));
+
+            // Switching back without preparation re-initializes the template-owned cache in place.
+            template.changeKey(key1Bytes);
+            assertEquals("5d4155322b69284bf45fa8ac182384490a87c55a6af47b7e72558cafa8832bd9",
+                    hex.formatHex(template.calculateHash(key1Bytes)));
+        }
+    }
+
+    @Test
+    public void testHybridMode() throws Exception {
+        byte[] key1Bytes = "hello xdagj-native-randomx".getBytes(StandardCharsets.UTF_8);
+        String expected = "5d4155322b69284bf45fa8ac182384490a87c55a6af47b7e72558cafa8832bd9";
+
+        Set<RandomXFlag> flagSet = RandomXUtils.getRecommendedFlags();
+        HexFormat hex = HexFormat.of();
+
+        try (RandomXCache cache = new RandomXCache(flagSet);
+             RandomXTemplate template = RandomXTemplate.builder()
+                     .cache(cache)
+                     .miningMode(true)
+                     .hybridMode(true)
+                     .flags(flagSet)
+                     .build()) {
+            template.changeKey(key1Bytes);
+            template.init();
+
+            // Hashes are served by the light VM while the dataset builds.
+            assertFalse(template.isDatasetReady());
+            assertFalse(template.getVm().getFlags().contains(RandomXFlag.FULL_MEM));
+            assertEquals(expected, hex.formatHex(template.calculateHash(key1Bytes)));
+
+            template.datasetReady().get(600, TimeUnit.SECONDS);
+            assertEquals(expected, hex.formatHex(template.calculateHash(key1Bytes)));
+            assertTrue(template.isDatasetReady());
+            assertTrue(template.getVm().getFlags().contains(RandomXFlag.FULL_MEM));
+        }
+    }
+
 }
@@ -34,6 +34,7 @@ import java.util.HexFormat;
 import java.util.Set;
 import java.util.EnumSet;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -169,4 +170,38 @@ public class RandomXTests {
         assertEquals("c36d4ed4191e617309867ed66a443be4075014e2b061bcdaf9ce7b721d2b77a8", hex.formatHex(hash3));
     }
 
+    /**
+     * Tests the pipelined batch hash API for both the list and the contiguous-array variants.
+     */
+    @Test
+    void testCalculateHashBatch() {
+        template.changeKey("test key 000".getBytes(StandardCharsets.UTF_8));
+
+        byte[][] inputs = {
+                "This is a test".getBytes(StandardCharsets.UTF_8),
+                "Lorem ipsum dolor sit amet".getBytes(StandardCharsets.UTF_8),
+                "sed do eiusmod tempor incididunt ut labore et dolore magna aliqua".getBytes(StandardCharsets.UTF_8)
+        };
+        String[] expected = {
+                "639183aae1bf4c9a35884cb46b09cad9175f04efd7684e7262a0ac1c2f0b4e3f",
+                "300a0adb47603dedb42228ccb2b211104f4da45af709cd7547cd049e9489c969",
+                "c36d4ed4191e617309867ed66a443be4075014e2b061bcdaf9ce7b721d2b77a8"
+        };
+
+        List<byte[]> hashes = template.calculateHashBatch(Arrays.asList(inputs));
+        assertEquals(expected.length, hashes.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], hex.formatHex(hashes.get(i)));
+        }
+
+        byte[] output = new byte[4 + 32 * inputs.length];
+        template.getVm().calculateHashBatch(inputs, output, 4);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], hex.formatHex(output, 4 + 32 * i, 4 + 32 * (i + 1)));
+        }
+
+        assertEquals(expected[0], hex.formatHex(template.calculateHashBatch(List.of(inputs[0])).get(0)));
+        assertTrue(template.calculateHashBatch(List.of()).isEmpty());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXVMPool class.
+ * Uses light mode so that no dataset has to be built.
+ */
+public class RandomXVMPoolTest {
+
+    private Set<RandomXFlag> flags;
+    private RandomXCache cache;
+
+    @BeforeEach
+    void setUp() {
+        flags = RandomXUtils.getRecommendedFlags();
+        flags.remove(RandomXFlag.FULL_MEM);
+        cache = new RandomXCache(flags);
+        cache.init("test key 000".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.close();
+            cache = null;
+        }
+    }
+
+    /**
+     * Tests that concurrent hashing through the pool yields the reference hash.
+     */
+    @Test
+    void testConcurrentHash() throws Exception {
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        String expected = "639183aae1bf4c9a35884cb46b09cad9175f04efd7684e7262a0ac1c2f0b4e3f";
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (RandomXVMPool pool = RandomXVMPool.builder().flags(flags).cache(cache).size(2).build()) {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> pool.hash(input)));
+            }
+            for (Future<byte[]> future : futures) {
+                assertEquals(expected, HexFormat.of().formatHex(future.get()));
+            }
+            assertEquals(8, pool.getAcquireCount());
+            assertEquals(0, pool.getInUseCount(), "All VMs should have been returned.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests fail-fast acquisition, utilisation reporting when the pool is exhausted, and double release.
+     */
+    @Test
+    void testFailFastWhenExhausted() {
+        try (RandomXVMPool pool = RandomXVMPool.builder().flags(flags).cache(cache).size(1).failFast(true).build()) {
+            RandomXVM vm = pool.tryAcquire();
+            assertNotNull(vm);
+            assertEquals(1.0, pool.getUtilization());
+            assertNull(pool.tryAcquire(), "No VM should be available while the only one is borrowed.");
+            assertThrows(IllegalStateException.class, () -> pool.hash(new byte[8]));
+            assertEquals(2, pool.getRejectedCount());
+            assertNull(pool.poll());
+            assertEquals(2, pool.getRejectedCount(), "An opportunistic poll is not a rejection.");
+
+            pool.release(vm);
+            assertEquals(0.0, pool.getUtilization());
+            assertThrows(IllegalArgumentException.class, () -> pool.release(vm), "A VM must not be released twice.");
+            assertEquals(1, pool.getIdleCount());
+            assertNotNull(pool.hash(new byte[8]));
+        }
+    }
+
+    /**
+     * Tests that closing the pool wakes a caller blocked waiting for a VM.
+     */
+    @Test
+    void testCloseWakesWaiters() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RandomXVMPool pool = RandomXVMPool.builder().flags(flags).cache(cache).size(1).build();
+            RandomXVM vm = pool.acquire();
+            Future<RandomXVM> waiter = executor.submit(pool::acquire);
+            Thread.sleep(100);
+            assertFalse(waiter.isDone());
+
+            pool.close();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            pool.release(vm);
+            assertTrue(vm.isClosed());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that concurrent cache swaps do not split the pool's VMs between them and deadlock.
+     */
+    @Test
+    void testConcurrentSetCache() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (RandomXVMPool pool = RandomXVMPool.builder().flags(flags).cache(cache).size(3).build()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    pool.setCache(cache);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(3, pool.getIdleCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that VMs drained by a cache swap are not reported as borrowed.
+     */
+    @Test
+    void testInUseCountDuringSwap() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (RandomXVMPool pool = RandomXVMPool.builder().flags(flags).cache(cache).size(2).build()) {
+            RandomXVM vm = pool.acquire();
+            Future<?> swap = executor.submit(() -> {
+                pool.setCache(cache);
+                return null;
+            });
+            // The swap drains the idle VM, then waits for the borrowed one.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (pool.getIdleCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(1, pool.getInUseCount());
+            assertEquals(0.5, pool.getUtilization());
+
+            pool.release(vm);
+            swap.get(30, TimeUnit.SECONDS);
+            assertEquals(0, pool.getInUseCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -26,7 +26,9 @@ package io.xdag.crypto.randomx;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Disabled;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 
@@ -118,6 +120,89 @@ public class RandomXVMTest {
         }
     }
 
+    /**
+     * Tests that the allocation-free overloads write the same hash as the allocating ones,
+     * honour offsets, and grow the reusable input buffer for large inputs.
+     */
+    @Test
+    void testVMHashIntoCallerBuffer() {
+        Set<RandomXFlag> testFlags = RandomXUtils.getRecommendedFlags();
+        testFlags.remove(RandomXFlag.FULL_MEM);
+
+        byte[] input = "test_input_for_hash".getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[input.length + 7];
+        System.arraycopy(input, 0, padded, 3, input.length);
+        byte[] largeInput = new byte[RandomXVM.DEFAULT_INPUT_CAPACITY * 4 + 1];
+        Arrays.fill(largeInput, (byte) 0x5a);
+
+        try (RandomXCache localCache = new RandomXCache(testFlags)) {
+            localCache.init("test_key_hash_into".getBytes(StandardCharsets.UTF_8));
+            try (RandomXVM vm = new RandomXVM(testFlags, localCache, null)) {
+                byte[] expected = vm.calculateHash(input);
+
+                byte[] output = new byte[40];
+                vm.calculateHash(padded, 3, input.length, output, 8);
+                assertArrayEquals(expected, Arrays.copyOfRange(output, 8, 40),
+                        "Hash written at an offset should match the allocating overload.");
+
+                byte[] largeHash = vm.calculateHash(largeInput);
+                byte[] largeOut = new byte[32];
+                vm.calculateHash(largeInput, 0, largeInput.length, largeOut, 0);
+                assertArrayEquals(largeHash, largeOut, "Hashes of inputs larger than the initial buffer should match.");
+
+                vm.calculateHashFirst(padded, 3, input.length);
+                vm.calculateHashLast(output, 0);
+                assertArrayEquals(expected, Arrays.copyOfRange(output, 0, 32),
+                        "Multi-part hash should match the single hash.");
+
+                byte[] commitment = new byte[32];
+                vm.calculateCommitment(input, 0, input.length, commitment, 0);
+                assertArrayEquals(vm.calculateCommitment(input, expected), commitment,
+                        "Commitment computed in native memory should match the two-step commitment.");
+
+                assertThrows(IndexOutOfBoundsException.class, () -> vm.calculateHash(input, 0, input.length, new byte[31], 0));
+            }
+        }
+    }
+
+    /**
+     * Tests hashing from direct and heap ByteBuffers, including buffer positions and read-only inputs.
+     */
+    @Test
+    void testVMHashByteBuffer() {
+        Set<RandomXFlag> testFlags = RandomXUtils.getRecommendedFlags();
+        testFlags.remove(RandomXFlag.FULL_MEM);
+
+        byte[] input = "test_input_for_hash".getBytes(StandardCharsets.UTF_8);
+
+        try (RandomXCache localCache = new RandomXCache(testFlags)) {
+            localCache.init("test_key_byte_buffer".getBytes(StandardCharsets.UTF_8));
+            try (RandomXVM vm = new RandomXVM(testFlags, localCache, null)) {
+                byte[] expected = vm.calculateHash(input);
+
+                ByteBuffer directIn = ByteBuffer.allocateDirect(input.length + 4);
+                directIn.position(4);
+                directIn.put(input).flip().position(4);
+                ByteBuffer directOut = ByteBuffer.allocateDirect(36);
+                directOut.position(4);
+                vm.calculateHash(directIn, directOut);
+                assertFalse(directIn.hasRemaining(), "Input should be fully consumed.");
+                assertEquals(36, directOut.position(), "Output position should advance by the hash size.");
+                byte[] directHash = new byte[32];
+                directOut.position(4);
+                directOut.get(directHash);
+                assertArrayEquals(expected, directHash, "Direct buffer hash should match the byte[] hash.");
+
+                ByteBuffer heapOut = ByteBuffer.allocate(32);
+                vm.calculateHash(ByteBuffer.wrap(input).asReadOnlyBuffer(), heapOut);
+                assertArrayEquals(expected, heapOut.array(), "Heap buffer hash should match the byte[] hash.");
+
+                assertThrows(IllegalArgumentException.class,
+                        () -> vm.calculateHash(ByteBuffer.wrap(input), ByteBuffer.allocate(16)));
+            }
+        }
+    }
+
     /**
      * Tests changing the cache in an existing VM.
      */
@@ -142,7 +227,7 @@ public class RandomXVMTest {
                 
                 assertNotNull(hash1, "Hash1 should not be null.");
                 assertNotNull(hash2, "Hash2 should not be null.");
-                assertFalse(java.util.Arrays.equals(hash1, hash2), 
+                assertFalse(Arrays.equals(hash1, hash2),
                     "Hashes from VMs with different caches (different keys) should differ.");
             }
         }
@@ -190,7 +275,7 @@ public class RandomXVMTest {
                 byte[] hash2 = vm.calculateHash(inputBytes);
                 assertNotNull(hash2, "Hash2 should not be null.");
 
-                assertFalse(java.util.Arrays.equals(hash1, hash2),
+                assertFalse(Arrays.equals(hash1, hash2),
                         "Hashes from VMs with different datasets (and their associated caches) should differ.");
             }
         }
@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2022-2030 The XdagJ Developers
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.xdag.crypto.randomx;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the RandomXVerifier class.
+ */
+public class RandomXVerifierTest {
+
+    /**
+     * Tests that a mixed-key stream hashes correctly, reuses recently seen keys and evicts beyond the limit.
+     */
+    @Test
+    void testMixedKeyStream() {
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        byte[] key1 = "test key 000".getBytes(StandardCharsets.UTF_8);
+        byte[] key2 = "test key 001".getBytes(StandardCharsets.UTF_8);
+        byte[] key3 = "test key 002".getBytes(StandardCharsets.UTF_8);
+        String expected = "639183aae1bf4c9a35884cb46b09cad9175f04efd7684e7262a0ac1c2f0b4e3f";
+
+        try (RandomXVerifier verifier = RandomXVerifier.builder()
+                .flags(RandomXUtils.getRecommendedFlags())
+                .maxCaches(2)
+                .vmsPerKey(1)
+                .build()) {
+            assertEquals(expected, HexFormat.of().formatHex(verifier.hash(key1, input)));
+            byte[] hash2 = verifier.hash(key2, input);
+            assertEquals(expected, HexFormat.of().formatHex(verifier.hash(key1, input)));
+            assertArrayEquals(hash2, verifier.hash(key2, input));
+            assertEquals(2, verifier.getMissCount());
+            assertEquals(2, verifier.getHitCount());
+            assertEquals(0, verifier.getEvictionCount());
+
+            verifier.hash(key3, input);
+            assertEquals(1, verifier.getEvictionCount());
+            assertEquals(2, verifier.getCachedCount());
+
+            // key1 was least recently used and must be re-initialized.
+            assertEquals(expected, HexFormat.of().formatHex(verifier.hash(key1, input)));
+            assertEquals(4, verifier.getMissCount());
+        }
+    }
+
+    /**
+     * Tests that the memory budget bounds the number of caches.
+     */
+    @Test
+    void testMemoryBudget() {
+        try (RandomXVerifier verifier = RandomXVerifier.builder()
+                .flags(RandomXUtils.getRecommendedFlags())
+                .maxCaches(8)
+                .memoryBudget(2 * RandomXVerifier.CACHE_MEMORY_BYTES)
+                .build()) {
+            assertEquals(2, verifier.getMaxCaches());
+            assertFalse(verifier.getFlags().contains(RandomXFlag.FULL_MEM));
+        }
+    }
+
+    /**
+     * Tests single and batch verification against expected hashes and targets, including early rejection.
+     */
+    @Test
+    void testVerify() {
+        byte[] input = "This is a test".getBytes(StandardCharsets.UTF_8);
+        byte[] key1 = "test key 000".getBytes(StandardCharsets.UTF_8);
+        byte[] key2 = "test key 001".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = HexFormat.of().parseHex("639183aae1bf4c9a35884cb46b09cad9175f04efd7684e7262a0ac1c2f0b4e3f");
+        byte[] wrong = expected.clone();
+        wrong[0] ^= 1;
+        RandomXTarget exact = RandomXTarget.fromLittleEndian(expected);
+        RandomXTarget tooHard = RandomXTarget.fromLittleEndian(new byte[RandomXUtils.RANDOMX_HASH_SIZE]);
+
+        try (RandomXVerifier verifier = RandomXVerifier.builder()
+                .flags(RandomXUtils.getRecommendedFlags())
+                .vmsPerKey(2)
+                .build()) {
+            assertTrue(verifier.verify(key1, input, expected));
+            assertFalse(verifier.verify(key1, input, wrong));
+            assertTrue(verifier.meetsTarget(key1, input, exact));
+            assertFalse(verifier.meetsTarget(key1, input, tooHard));
+
+            byte[] hash2 = verifier.hash(key2, input);
+            boolean[] results = verifier.verifyBatch(List.of(
+                    new RandomXVerifier.Check(key1, input, expected, RandomXTarget.MAX),
+                    new RandomXVerifier.Check(key2, input, hash2, null),
+                    new RandomXVerifier.Check(key1, input, wrong, null),
+                    new RandomXVerifier.Check(key2, input, RandomXTarget.MAX),
+                    new RandomXVerifier.Check(key1, input, expected, tooHard),
+                    new RandomXVerifier.Check(key2, input, tooHard)));
+            assertArrayEquals(new boolean[]{true, true, false, true, false, false}, results);
+            assertEquals(1, verifier.getRejectionCount());
+        }
+    }
+}